@@ -0,0 +1,261 @@
+package com.noel.coursesearch.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.engine.TextAnalyzer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Synthetic course catalogs with the skew of a real one: a few categories hold
+ * most courses, title and description terms follow a Zipf distribution over a
+ * vocabulary seeded from {@code sample-courses.json}, prices are log-normal and
+ * sessions cluster in the coming weeks with a tail of past ones.
+ * <p>
+ * Course {@code n} depends only on the seed, {@code n} and the reference date,
+ * so any slice of a catalog can be regenerated on its own. Run it to write a
+ * catalog the application can ingest:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.noel.coursesearch.benchmark.CatalogGenerator \
+ *     --size=1000000 --seed=42 --out=catalog.json
+ * </pre>
+ */
+public final class CatalogGenerator {
+
+    // Ordered by share of the catalog, most common first
+    static final List<String> CATEGORIES = List.of("Art", "Science", "Math", "Technology", "Language", "Music",
+            "Life Skills", "Literature", "History", "Communication", "Business", "Strategy", "Sports", "Health");
+
+    private static final double TERM_SKEW = 1.07;
+    private static final double CATEGORY_SKEW = 0.9;
+    private static final String[] SYLLABLES = {"ba", "co", "di", "fe", "ga", "hi", "jo", "ku", "la", "me", "ni", "po",
+            "ra", "si", "tu", "ve", "wo", "xa", "yu", "ze", "ar", "en", "is", "on", "um"};
+    private static final Set<String> STOP_WORDS = Set.of("and", "the", "for", "with", "through", "from", "into",
+            "your", "you", "all", "their", "its", "are", "this", "that");
+
+    private final long seed;
+    private final OffsetDateTime from;
+    private final List<String> vocabulary;
+    private final Zipf terms;
+    private final Zipf categories;
+
+    /**
+     * @param vocabularySize distinct title and description terms
+     * @param from           reference date sessions are spread around
+     */
+    public CatalogGenerator(long seed, int vocabularySize, OffsetDateTime from) {
+        this.seed = seed;
+        this.from = from;
+        this.vocabulary = vocabulary(vocabularySize, seed);
+        this.terms = new Zipf(vocabulary.size(), TERM_SKEW);
+        this.categories = new Zipf(CATEGORIES.size(), CATEGORY_SKEW);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = new Options(args);
+        long size = options.getLong("size", 100_000);
+        Path out = Path.of(options.get("out", "catalog.json"));
+        CatalogGenerator generator = new CatalogGenerator(options.getLong("seed", 42),
+                options.getInt("vocabulary", 20_000), referenceDate(options.get("from", null)));
+
+        long start = System.nanoTime();
+        try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(out), 1 << 16)) {
+            generator.write(size, stream);
+        }
+        System.out.printf("Wrote %d courses to %s in %d ms%n", size, out, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Midnight UTC of {@code date}, or of today when it is null.
+     */
+    public static OffsetDateTime referenceDate(String date) {
+        LocalDate day = date == null ? LocalDate.now(ZoneOffset.UTC) : LocalDate.parse(date);
+        return day.atStartOfDay().atOffset(ZoneOffset.UTC);
+    }
+
+    /**
+     * Writes courses {@code 1..size} as a JSON array, one course at a time.
+     */
+    public void write(long size, OutputStream out) throws IOException {
+        try (JsonGenerator json = Catalogs.OBJECT_MAPPER.getFactory().createGenerator(out)) {
+            json.writeStartArray();
+            for (long n = 1; n <= size; n++) {
+                Catalogs.OBJECT_MAPPER.writeValue(json, course(n));
+            }
+            json.writeEndArray();
+        }
+    }
+
+    public List<CourseDocument> courses(int size) {
+        List<CourseDocument> courses = new ArrayList<>(size);
+        for (int n = 1; n <= size; n++) {
+            courses.add(course(n));
+        }
+        return courses;
+    }
+
+    public CourseDocument course(long n) {
+        RandomGenerator random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + n);
+        String category = category(random);
+
+        CourseDocument.CourseType type;
+        double kind = random.nextDouble();
+        if (kind < 0.68) {
+            type = CourseDocument.CourseType.COURSE;
+        } else if (kind < 0.88) {
+            type = CourseDocument.CourseType.CLUB;
+        } else {
+            type = CourseDocument.CourseType.ONE_TIME;
+        }
+
+        // Grades K..12, weighted towards middle school
+        int firstGrade = (int) Math.round(Math.max(0, Math.min(11, 6 + random.nextGaussian() * 2.5)));
+        int lastGrade = Math.min(12, firstGrade + 1 + random.nextInt(5));
+
+        List<String> titleTerms = terms(random, 2 + random.nextInt(4));
+        String title = capitalize(String.join(" ", titleTerms));
+        List<String> suggest = new ArrayList<>(titleTerms);
+        suggest.add(category.toLowerCase());
+
+        return new CourseDocument(
+                String.valueOf(n),
+                title,
+                suggest,
+                capitalize(String.join(" ", terms(random, 8 + random.nextInt(13)))) + ".",
+                category,
+                type,
+                grade(firstGrade) + "-" + grade(lastGrade),
+                firstGrade + 5,
+                lastGrade + 6,
+                price(random, type),
+                sessionDate(random));
+    }
+
+    /**
+     * A term drawn with the same skew as catalog titles, for building queries.
+     */
+    public String term(RandomGenerator random) {
+        return vocabulary.get(terms.sample(random));
+    }
+
+    public String category(RandomGenerator random) {
+        return CATEGORIES.get(categories.sample(random));
+    }
+
+    private List<String> terms(RandomGenerator random, int count) {
+        List<String> drawn = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            drawn.add(term(random));
+        }
+        return drawn;
+    }
+
+    private static double price(RandomGenerator random, CourseDocument.CourseType type) {
+        double factor = switch (type) {
+            case COURSE -> 1.0;
+            case CLUB -> 0.4;
+            case ONE_TIME -> 0.3;
+        };
+        double price = Math.exp(Math.log(180) + random.nextGaussian() * 0.6) * factor;
+        // Priced like a storefront: 149.99 rather than 150.37
+        return Math.max(9, Math.floor(price)) + 0.99;
+    }
+
+    private OffsetDateTime sessionDate(RandomGenerator random) {
+        long minutes;
+        if (random.nextDouble() < 0.1) {
+            minutes = -random.nextLong(60L * 24 * 60);
+        } else {
+            minutes = Math.min(365L * 24 * 60, (long) (-Math.log(1 - random.nextDouble()) * 45 * 24 * 60));
+        }
+        // Sessions start on the half hour
+        return from.plusMinutes(minutes - minutes % 30);
+    }
+
+    private static String grade(int grade) {
+        if (grade == 0) {
+            return "K";
+        }
+        String suffix = switch (grade) {
+            case 1 -> "st";
+            case 2 -> "nd";
+            case 3 -> "rd";
+            default -> "th";
+        };
+        return grade + suffix;
+    }
+
+    private static String capitalize(String text) {
+        return text.isEmpty() ? text : Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+
+    /**
+     * The sample catalog's words by frequency, padded with pronounceable
+     * made-up words up to {@code size}.
+     */
+    private static List<String> vocabulary(int size, long seed) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (CourseDocument course : Catalogs.sample()) {
+            for (String token : TextAnalyzer.tokenize(course.getTitle() + " " + course.getDescription())) {
+                if (token.length() > 2 && !STOP_WORDS.contains(token)) {
+                    counts.merge(token, 1, Integer::sum);
+                }
+            }
+        }
+        List<String> words = new ArrayList<>(counts.keySet());
+        words.sort((a, b) -> counts.get(b) - counts.get(a));
+
+        Set<String> seen = new HashSet<>(words);
+        SplittableRandom random = new SplittableRandom(seed);
+        while (words.size() < size) {
+            StringBuilder word = new StringBuilder();
+            for (int i = 2 + random.nextInt(3); i > 0; i--) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            if (seen.add(word.toString())) {
+                words.add(word.toString());
+            }
+        }
+        return List.copyOf(words.subList(0, size));
+    }
+
+    /**
+     * Ranks {@code 0..n-1} with probability proportional to {@code 1 / (rank + 1)^s}.
+     */
+    private static final class Zipf {
+        private final double[] cumulative;
+
+        private Zipf(int n, double s) {
+            cumulative = new double[n];
+            double total = 0;
+            for (int rank = 0; rank < n; rank++) {
+                total += 1 / Math.pow(rank + 1, s);
+                cumulative[rank] = total;
+            }
+            for (int rank = 0; rank < n; rank++) {
+                cumulative[rank] /= total;
+            }
+        }
+
+        private int sample(RandomGenerator random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+        }
+    }
+}
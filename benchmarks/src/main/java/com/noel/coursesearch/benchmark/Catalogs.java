@@ -0,0 +1,121 @@
+package com.noel.coursesearch.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.noel.coursesearch.document.CourseDocument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark data shaped like {@code sample-courses.json}: the sample courses,
+ * cycled under fresh ids with jittered prices and session dates. Seeded, so
+ * every run sees the same catalog.
+ */
+public final class Catalogs {
+
+    /**
+     * Configured like the application's mapper.
+     */
+    public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final List<CourseDocument> SAMPLE = loadSample();
+
+    private Catalogs() {
+    }
+
+    public static List<CourseDocument> sample() {
+        return SAMPLE;
+    }
+
+    public static List<CourseDocument> scaled(int size) {
+        Random random = new Random(42);
+        List<CourseDocument> courses = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            courses.add(variant(SAMPLE.get(i % SAMPLE.size()), i, random));
+        }
+        return courses;
+    }
+
+    /**
+     * A JSON array of {@code size} courses, generated while it is read so a
+     * million-course catalog never has to sit in memory.
+     */
+    public static InputStream scaledJson(int size) {
+        return new InputStream() {
+            private final Random random = new Random(42);
+            private byte[] chunk = "[".getBytes(StandardCharsets.UTF_8);
+            private int position;
+            private int next;
+
+            @Override
+            public int read() {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (position == chunk.length && !advance()) {
+                    return -1;
+                }
+                int count = Math.min(length, chunk.length - position);
+                System.arraycopy(chunk, position, buffer, offset, count);
+                position += count;
+                return count;
+            }
+
+            private boolean advance() {
+                if (next > size) {
+                    return false;
+                }
+                if (next == size) {
+                    chunk = "]".getBytes(StandardCharsets.UTF_8);
+                } else {
+                    try {
+                        CourseDocument course = variant(SAMPLE.get(next % SAMPLE.size()), next, random);
+                        String separator = next == 0 ? "" : ",";
+                        chunk = (separator + OBJECT_MAPPER.writeValueAsString(course)).getBytes(StandardCharsets.UTF_8);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                next++;
+                position = 0;
+                return true;
+            }
+        };
+    }
+
+    private static CourseDocument variant(CourseDocument sample, int index, Random random) {
+        return new CourseDocument(
+                String.valueOf(index + 1),
+                sample.getTitle(),
+                sample.getSuggest(),
+                sample.getDescription(),
+                sample.getCategory(),
+                sample.getType(),
+                sample.getGradeRange(),
+                sample.getMinAge(),
+                sample.getMaxAge(),
+                sample.getPrice() == null ? null : Math.round(sample.getPrice() * (0.5 + random.nextDouble()) * 100) / 100.0,
+                sample.getNextSessionDate() == null ? null : sample.getNextSessionDate().plusHours(random.nextInt(24 * 365)));
+    }
+
+    private static List<CourseDocument> loadSample() {
+        try (InputStream in = Catalogs.class.getResourceAsStream("/sample-courses.json")) {
+            return List.of(OBJECT_MAPPER.readValue(in, CourseDocument[].class));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
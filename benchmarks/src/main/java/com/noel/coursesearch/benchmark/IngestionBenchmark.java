@@ -0,0 +1,68 @@
+package com.noel.coursesearch.benchmark;
+
+import com.noel.coursesearch.backend.BulkResult;
+import com.noel.coursesearch.backend.BulkSink;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.service.CourseIngestionPipeline;
+import com.noel.coursesearch.service.IngestionReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the ingestion pipeline (streaming parse, batching and the
+ * worker hand-off) on catalogs shaped like {@code sample-courses.json},
+ * scaled up to a million courses. The sink discards what it receives, so the
+ * numbers are the pipeline's own ceiling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class IngestionBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int courses;
+
+    private CourseIngestionPipeline pipeline;
+
+    @Setup
+    public void setUp() {
+        pipeline = new CourseIngestionPipeline(null, Catalogs.OBJECT_MAPPER, new DefaultResourceLoader(),
+                new CourseSearchProperties());
+    }
+
+    @Benchmark
+    public IngestionReport ingest() throws Exception {
+        try (InputStream in = Catalogs.scaledJson(courses)) {
+            return pipeline.ingest(in, new DiscardingSink());
+        }
+    }
+
+    private static final class DiscardingSink implements BulkSink {
+        @Override
+        public BulkResult write(List<CourseDocument> batch) {
+            return BulkResult.success(batch.size());
+        }
+
+        @Override
+        public void complete() {
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.noel.coursesearch.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.dto.SearchResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson cost of a page of hits: writing a {@link SearchResponse} as the API
+ * does, and reading the same courses back as Elasticsearch hits are read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonMappingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int hits;
+
+    private final ObjectWriter writer = Catalogs.OBJECT_MAPPER.writerFor(SearchResponse.class);
+    private final ObjectReader reader = Catalogs.OBJECT_MAPPER.readerFor(CourseDocument[].class);
+
+    private SearchResponse response;
+    private byte[] coursesJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<CourseDocument> courses = Catalogs.scaled(hits);
+        response = SearchResponse.of(hits, courses, 0, hits);
+        coursesJson = Catalogs.OBJECT_MAPPER.writeValueAsBytes(courses);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() throws Exception {
+        return writer.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public CourseDocument[] deserializeCourses() throws Exception {
+        return reader.readValue(coursesJson);
+    }
+}
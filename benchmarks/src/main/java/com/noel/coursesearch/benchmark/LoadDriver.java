@@ -0,0 +1,257 @@
+package com.noel.coursesearch.benchmark;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.random.RandomGenerator;
+
+/**
+ * Replays a weighted mix of {@link QueryShape}s against {@code /api/search} and
+ * reports throughput and an HDR latency histogram, overall and per shape.
+ * <ul>
+ *     <li>{@code --mode=closed}: {@code concurrency} workers each send the next
+ *     request as soon as the previous one is answered. Finds peak throughput.</li>
+ *     <li>{@code --mode=open}: requests start at a fixed {@code rate} whether or
+ *     not earlier ones have been answered, and latency is measured from when a
+ *     request was due, so a stalled server shows up in the percentiles instead
+ *     of silently lowering the load.</li>
+ * </ul>
+ * Requests started during {@code warmup} are sent but not recorded. Query
+ * terms come from a {@link CatalogGenerator} with the same {@code seed} and
+ * {@code vocabulary} as the catalog under test.
+ */
+public final class LoadDriver {
+
+    private static final String DEFAULT_MIX =
+            "text:30,two-terms:10,category:15,text-category:15,price:10,age:10,facets:5,deep-page:5";
+
+    private final HttpClient client;
+    private final String searchUrl;
+    private final CatalogGenerator catalog;
+    private final QueryShape[] shapes;
+    private final int[] cumulativeWeights;
+    private final Map<QueryShape, Recorder> recorders = new EnumMap<>(QueryShape.class);
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final Duration timeout;
+    private volatile long measureFrom;
+
+    private LoadDriver(HttpClient client, String baseUrl, CatalogGenerator catalog, String mix, Duration timeout) {
+        this.client = client;
+        this.searchUrl = baseUrl + "/api/search?";
+        this.catalog = catalog;
+        this.timeout = timeout;
+
+        List<QueryShape> parsedShapes = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        int total = 0;
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split(":");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            if (weight > 0) {
+                parsedShapes.add(QueryShape.fromLabel(parts[0]));
+                total += weight;
+                weights.add(total);
+            }
+        }
+        if (parsedShapes.isEmpty()) {
+            throw new IllegalArgumentException("--mix selects no query shapes: " + mix);
+        }
+        this.shapes = parsedShapes.toArray(QueryShape[]::new);
+        this.cumulativeWeights = weights.stream().mapToInt(Integer::intValue).toArray();
+        for (QueryShape shape : shapes) {
+            recorders.putIfAbsent(shape, new Recorder(3));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        String mode = options.get("mode", "closed");
+        int concurrency = options.getInt("concurrency", 16);
+        int rate = options.getInt("rate", 500);
+        Duration warmup = options.getDuration("warmup", Duration.ofSeconds(10));
+        Duration duration = options.getDuration("duration", Duration.ofSeconds(60));
+        long seed = options.getLong("seed", 42);
+
+        ExecutorService httpExecutor = Executors.newFixedThreadPool(concurrency, daemonThreads("load-http"));
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(httpExecutor)
+                .build();
+        CatalogGenerator catalog = new CatalogGenerator(seed, options.getInt("vocabulary", 20_000),
+                CatalogGenerator.referenceDate(null));
+        LoadDriver driver = new LoadDriver(client, options.get("url", "http://localhost:8080"), catalog,
+                options.get("mix", DEFAULT_MIX), options.getDuration("timeout", Duration.ofSeconds(10)));
+
+        String description;
+        if ("open".equals(mode)) {
+            description = "open loop at " + rate + " req/s";
+            driver.runOpen(rate, warmup, duration, new SplittableRandom(seed));
+        } else if ("closed".equals(mode)) {
+            description = "closed loop with " + concurrency + " workers";
+            driver.runClosed(concurrency, warmup, duration, new SplittableRandom(seed));
+        } else {
+            throw new IllegalArgumentException("--mode must be open or closed, not " + mode);
+        }
+        httpExecutor.shutdownNow();
+
+        Histogram total = driver.report(System.out, description, duration);
+        String hgrm = options.get("hgrm", null);
+        if (hgrm != null) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(Path.of(hgrm)))) {
+                total.outputPercentileDistribution(out, 1_000_000.0);
+            }
+            System.out.println("Latency distribution (ms) written to " + hgrm);
+        }
+    }
+
+    private void runClosed(int concurrency, Duration warmup, Duration duration, SplittableRandom seeds)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, daemonThreads("load-worker"));
+        for (int i = 0; i < concurrency; i++) {
+            RandomGenerator random = seeds.split();
+            workers.execute(() -> {
+                while (System.nanoTime() < end) {
+                    QueryShape shape = nextShape(random);
+                    HttpRequest request = request(shape, random);
+                    long sent = System.nanoTime();
+                    int status;
+                    try {
+                        status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (IOException e) {
+                        status = 0;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    record(shape, sent, System.nanoTime(), status);
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(end - start + timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void runOpen(int rate, Duration warmup, Duration duration, RandomGenerator random)
+            throws InterruptedException {
+        long interval = 1_000_000_000L / rate;
+        long start = System.nanoTime();
+        measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        Phaser inFlight = new Phaser(1);
+        for (long due = start; due < end; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long intended = due;
+            QueryShape shape = nextShape(random);
+            inFlight.register();
+            client.sendAsync(request(shape, random), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        record(shape, intended, System.nanoTime(), error == null ? response.statusCode() : 0);
+                        inFlight.arriveAndDeregister();
+                    });
+        }
+        try {
+            inFlight.awaitAdvanceInterruptibly(inFlight.arrive(), timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            System.err.println(inFlight.getUnarrivedParties() + " requests still unanswered, not recorded");
+        }
+    }
+
+    private QueryShape nextShape(RandomGenerator random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; ; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return shapes[i];
+            }
+        }
+    }
+
+    private HttpRequest request(QueryShape shape, RandomGenerator random) {
+        String query = QueryShape.toQueryString(shape.create(catalog, random));
+        return HttpRequest.newBuilder(URI.create(searchUrl + query)).timeout(timeout).GET().build();
+    }
+
+    private void record(QueryShape shape, long started, long finished, int status) {
+        if (started < measureFrom) {
+            return;
+        }
+        recorders.get(shape).recordValue(finished - started);
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    private Histogram report(PrintStream out, String description, Duration duration) {
+        Histogram total = new Histogram(3);
+        Map<QueryShape, Histogram> byShape = new EnumMap<>(QueryShape.class);
+        recorders.forEach((shape, recorder) -> {
+            Histogram histogram = recorder.getIntervalHistogram();
+            byShape.put(shape, histogram);
+            total.add(histogram);
+        });
+
+        double seconds = duration.toNanos() / 1e9;
+        out.printf("%s, %.0f s measured%n", description, seconds);
+        out.printf("requests  %d (%.1f/s)%n", total.getTotalCount(), total.getTotalCount() / seconds);
+        StringBuilder statusLine = new StringBuilder("status   ");
+        new TreeMap<>(statuses).forEach((status, count) ->
+                statusLine.append(' ').append(status == 0 ? "io-error" : status).append('=').append(count.sum()));
+        out.println(statusLine);
+        out.println();
+        out.printf("%-14s %9s %9s %9s %9s %9s %9s%n", "latency ms", "count", "p50", "p90", "p99", "p99.9", "max");
+        printRow(out, "all", total);
+        byShape.forEach((shape, histogram) -> printRow(out, shape.label(), histogram));
+        return total;
+    }
+
+    private static void printRow(PrintStream out, String label, Histogram histogram) {
+        out.printf("%-14s %9d %9.2f %9.2f %9.2f %9.2f %9.2f%n", label, histogram.getTotalCount(),
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
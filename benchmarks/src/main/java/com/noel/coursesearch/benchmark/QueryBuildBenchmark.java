@@ -0,0 +1,107 @@
+package com.noel.coursesearch.benchmark;
+
+import com.noel.coursesearch.backend.ElasticsearchCourseSearchBackend;
+import com.noel.coursesearch.backend.SearchMetrics;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.dto.SearchRequest;
+import com.noel.coursesearch.dto.SearchResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsImpl;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+
+import java.lang.reflect.Proxy;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the Elasticsearch query and sort of a search, for each filter
+ * combination and sort. Runs the backend's {@code search} against operations
+ * that answer every search with no hits, so nothing here talks to a cluster
+ * and the mapping of an empty result is all that is measured on top.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBuildBenchmark {
+
+    private static final SearchHits<?> NO_HITS =
+            new SearchHitsImpl<>(0, TotalHitsRelation.EQUAL_TO, 0, null, null, List.of(), null, null);
+
+    /**
+     * Bit set of the criteria present: 1 text, 2 age, 4 category, 8 type,
+     * 16 price, 32 start date.
+     */
+    @Param({"1", "2", "4", "8", "16", "32", "6", "21", "63"})
+    public int criteria;
+
+    @Param({"false", "true"})
+    public boolean facets;
+
+    @Param({"upcoming", "relevance", "priceAsc"})
+    public String sort;
+
+    private ElasticsearchCourseSearchBackend backend;
+    private SearchRequest request;
+
+    @Setup
+    public void setUp() {
+        CourseSearchProperties properties = new CourseSearchProperties();
+        ElasticsearchOperations operations = (ElasticsearchOperations) Proxy.newProxyInstance(
+                ElasticsearchOperations.class.getClassLoader(), new Class<?>[]{ElasticsearchOperations.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "search" -> NO_HITS;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "no-hits operations";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        backend = new ElasticsearchCourseSearchBackend(operations, null, null, null, null, properties,
+                new SearchMetrics(new SimpleMeterRegistry(), properties));
+
+        request = new SearchRequest();
+        if ((criteria & 1) != 0) {
+            request.setQ("intro to algebra");
+        }
+        if ((criteria & 2) != 0) {
+            request.setMinAge(8);
+            request.setMaxAge(12);
+        }
+        if ((criteria & 4) != 0) {
+            request.setCategory("Math");
+        }
+        if ((criteria & 8) != 0) {
+            request.setType("COURSE");
+        }
+        if ((criteria & 16) != 0) {
+            request.setMinPrice(20.0);
+            request.setMaxPrice(200.0);
+        }
+        if ((criteria & 32) != 0) {
+            request.setStartDate(OffsetDateTime.parse("2025-06-01T00:00:00Z"));
+        }
+        request.setFacets(facets);
+        request.setSort(sort);
+    }
+
+    @Benchmark
+    public SearchResponse buildSearchQuery() {
+        return backend.search(request);
+    }
+}
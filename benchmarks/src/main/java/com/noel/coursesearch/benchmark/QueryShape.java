@@ -0,0 +1,137 @@
+package com.noel.coursesearch.benchmark;
+
+import com.noel.coursesearch.dto.SearchRequest;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * Kinds of {@code /api/search} request the load driver sends. Terms and
+ * categories are drawn with the catalog's own skew, so popular queries repeat
+ * the way they do in production.
+ */
+enum QueryShape {
+
+    TEXT {
+        @Override
+        SearchRequest create(CatalogGenerator catalog, RandomGenerator random) {
+            SearchRequest request = new SearchRequest();
+            request.setQ(catalog.term(random));
+            request.setSort("relevance");
+            return request;
+        }
+    },
+    TWO_TERMS {
+        @Override
+        SearchRequest create(CatalogGenerator catalog, RandomGenerator random) {
+            SearchRequest request = new SearchRequest();
+            request.setQ(catalog.term(random) + " " + catalog.term(random));
+            request.setSort("relevance");
+            return request;
+        }
+    },
+    CATEGORY {
+        @Override
+        SearchRequest create(CatalogGenerator catalog, RandomGenerator random) {
+            SearchRequest request = new SearchRequest();
+            request.setCategory(catalog.category(random));
+            return request;
+        }
+    },
+    TEXT_CATEGORY {
+        @Override
+        SearchRequest create(CatalogGenerator catalog, RandomGenerator random) {
+            SearchRequest request = new SearchRequest();
+            request.setQ(catalog.term(random));
+            request.setCategory(catalog.category(random));
+            return request;
+        }
+    },
+    PRICE {
+        @Override
+        SearchRequest create(CatalogGenerator catalog, RandomGenerator random) {
+            SearchRequest request = new SearchRequest();
+            double min = 25.0 * random.nextInt(8);
+            request.setMinPrice(min);
+            request.setMaxPrice(min + 50 + 25.0 * random.nextInt(8));
+            request.setSort(random.nextBoolean() ? "priceAsc" : "priceDesc");
+            return request;
+        }
+    },
+    AGE {
+        @Override
+        SearchRequest create(CatalogGenerator catalog, RandomGenerator random) {
+            SearchRequest request = new SearchRequest();
+            int age = 6 + random.nextInt(12);
+            request.setMinAge(age);
+            request.setMaxAge(age);
+            request.setCategory(random.nextBoolean() ? catalog.category(random) : null);
+            return request;
+        }
+    },
+    FACETS {
+        @Override
+        SearchRequest create(CatalogGenerator catalog, RandomGenerator random) {
+            SearchRequest request = new SearchRequest();
+            request.setQ(catalog.term(random));
+            request.setFacets(true);
+            return request;
+        }
+    },
+    DEEP_PAGE {
+        @Override
+        SearchRequest create(CatalogGenerator catalog, RandomGenerator random) {
+            SearchRequest request = new SearchRequest();
+            request.setCategory(catalog.category(random));
+            request.setPage(5 + random.nextInt(20));
+            return request;
+        }
+    };
+
+    abstract SearchRequest create(CatalogGenerator catalog, RandomGenerator random);
+
+    /**
+     * Shape name as used in {@code --mix}, e.g. {@code text-category}.
+     */
+    String label() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+    static QueryShape fromLabel(String label) {
+        return valueOf(label.trim().toUpperCase().replace('-', '_'));
+    }
+
+    /**
+     * Query string for {@code /api/search} carrying every field that is set.
+     */
+    static String toQueryString(SearchRequest request) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("q", request.getQ());
+        params.put("minAge", request.getMinAge());
+        params.put("maxAge", request.getMaxAge());
+        params.put("category", request.getCategory());
+        params.put("type", request.getType());
+        params.put("minPrice", request.getMinPrice());
+        params.put("maxPrice", request.getMaxPrice());
+        params.put("startDate", request.getStartDate());
+        params.put("sort", request.getSort());
+        params.put("page", request.getPage());
+        params.put("size", request.getSize());
+        params.put("facets", request.isFacets() ? true : null);
+        params.put("totalHits", request.getTotalHits());
+        params.put("fields", request.getFields());
+
+        List<String> pairs = new ArrayList<>();
+        params.forEach((name, value) -> {
+            if (value != null) {
+                pairs.add(name + "=" + URLEncoder.encode(value.toString(), StandardCharsets.UTF_8));
+            }
+        });
+        return String.join("&", pairs);
+    }
+}
@@ -0,0 +1,109 @@
+package com.noel.coursesearch.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.noel.coursesearch.backend.EmbeddedCourseSearchBackend;
+import com.noel.coursesearch.backend.IndexGeneration;
+import com.noel.coursesearch.backend.SearchMetrics;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.controller.CourseSearchController;
+import com.noel.coursesearch.dto.SearchResponse;
+import com.noel.coursesearch.service.CourseSearchService;
+import com.noel.coursesearch.service.SearchCoalescer;
+import com.noel.coursesearch.service.SearchExecutor;
+import com.noel.coursesearch.service.SearchResultCache;
+import com.noel.coursesearch.service.SuggestService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole {@code /api/search} path short of HTTP: controller, service, result
+ * cache and the embedded engine, then JSON serialization of the response.
+ * Searches run on the calling thread ({@code execution.mode=direct}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchPathBenchmark {
+
+    @Param({"10000"})
+    public int catalogSize;
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    private final ObjectWriter writer = Catalogs.OBJECT_MAPPER.writerFor(SearchResponse.class);
+
+    private SearchExecutor searchExecutor;
+    private CourseSearchController controller;
+
+    @Setup
+    public void setUp() {
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.setBackend("embedded");
+        properties.getCache().setEnabled(cache);
+        properties.getExecution().setMode("direct");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SearchMetrics searchMetrics = new SearchMetrics(meterRegistry, properties);
+        IndexGeneration indexGeneration = new IndexGeneration(event -> {
+        });
+
+        EmbeddedCourseSearchBackend backend = new EmbeddedCourseSearchBackend(indexGeneration, properties, searchMetrics);
+        backend.indexAll(Catalogs.scaled(catalogSize));
+        CourseSearchService service = new CourseSearchService(backend,
+                new SearchResultCache(indexGeneration, properties, meterRegistry),
+                new SearchCoalescer(indexGeneration, properties, meterRegistry), properties, searchMetrics);
+        searchExecutor = new SearchExecutor(properties);
+        controller = new CourseSearchController(service, new SuggestService(backend, properties), searchExecutor, properties);
+    }
+
+    @Setup(Level.Invocation)
+    public void bindRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        searchExecutor.shutdown();
+    }
+
+    @Benchmark
+    public byte[] textQuery() throws Exception {
+        return search("algebra", null, null, "relevance");
+    }
+
+    @Benchmark
+    public byte[] categoryAndPrice() throws Exception {
+        return search(null, "Math", 100.0, "upcoming");
+    }
+
+    @Benchmark
+    public byte[] textAndCategoryByPrice() throws Exception {
+        return search("introduction", "Science", null, "priceAsc");
+    }
+
+    private byte[] search(String q, String category, Double maxPrice, String sort) throws Exception {
+        SearchResponse response = controller.searchCourses(q, null, null, category, null, null, maxPrice, null,
+                sort, 0, 10, null, false, null, null).join().getBody();
+        return writer.writeValueAsBytes(response);
+    }
+}
@@ -2,8 +2,12 @@ package com.noel.coursesearch;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.elasticsearch.ElasticsearchRepositoriesAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
-@SpringBootApplication
+// Repositories are enabled by ElasticsearchConfig, and only when Elasticsearch is the backend
+@SpringBootApplication(exclude = ElasticsearchRepositoriesAutoConfiguration.class)
+@ConfigurationPropertiesScan
 public class CourseSearchApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,26 @@
+package com.noel.coursesearch.backend;
+
+import com.noel.coursesearch.document.CourseDocument;
+
+import java.util.List;
+
+/**
+ * Outcome of one {@link BulkSink#write} call.
+ */
+public record BulkResult(int succeeded, List<Failure> failures) {
+
+    public static BulkResult success(int count) {
+        return new BulkResult(count, List.of());
+    }
+
+    public record Failure(CourseDocument course, Integer status, String reason) {
+
+        /**
+         * Whether the engine rejected the document for capacity reasons
+         * (429 Too Many Requests, 503 Unavailable), so that retrying may succeed.
+         */
+        public boolean retryable() {
+            return status != null && (status == 429 || status == 503);
+        }
+    }
+}
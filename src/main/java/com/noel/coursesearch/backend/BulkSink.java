@@ -0,0 +1,30 @@
+package com.noel.coursesearch.backend;
+
+import com.noel.coursesearch.document.CourseDocument;
+
+import java.util.List;
+
+/**
+ * Write side of a bulk load. Batches may be written concurrently from several
+ * threads; nothing is guaranteed to be searchable until {@link #complete()}.
+ */
+public interface BulkSink {
+
+    /**
+     * Indexes one batch. Per-document failures are reported in the result rather
+     * than thrown, so callers can retry just the rejected documents.
+     */
+    BulkResult write(List<CourseDocument> batch);
+
+    /**
+     * Makes everything written so far searchable.
+     */
+    void complete();
+
+    /**
+     * Gives up on the load. Whatever was written may or may not remain visible,
+     * depending on the sink.
+     */
+    default void abort() {
+    }
+}
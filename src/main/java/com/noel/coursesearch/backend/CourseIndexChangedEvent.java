@@ -0,0 +1,18 @@
+package com.noel.coursesearch.backend;
+
+import com.noel.coursesearch.document.CourseDocument;
+
+import java.util.List;
+
+/**
+ * Published after the courses index moves to a new {@link IndexGeneration}.
+ * When {@code rebuilt} is set the change is too large (or unknown) to describe
+ * document by document and listeners should re-read the whole catalog;
+ * otherwise {@code upserted} and {@code deletedIds} list exactly what changed.
+ */
+public record CourseIndexChangedEvent(
+        long generation,
+        boolean rebuilt,
+        List<CourseDocument> upserted,
+        List<String> deletedIds) {
+}
@@ -0,0 +1,103 @@
+package com.noel.coursesearch.backend;
+
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.dto.SearchRequest;
+import com.noel.coursesearch.dto.SearchResponse;
+import com.noel.coursesearch.dto.SuggestRequest;
+import com.noel.coursesearch.dto.SuggestResponse;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Engine that stores courses and answers search requests. Selected with the
+ * {@code coursesearch.backend} property.
+ */
+public interface CourseSearchBackend {
+
+    /**
+     * Runs a search. Callers have already rejected requests without any criteria.
+     */
+    SearchResponse search(SearchRequest request);
+
+    /**
+     * Runs several searches, answering entry {@code i} with result {@code i}. A
+     * search that fails only fails its own future. By default the searches run in
+     * parallel on the common pool, which suits engines that search in-process.
+     */
+    default List<CompletableFuture<SearchResponse>> searchAll(List<SearchRequest> requests) {
+        List<CompletableFuture<SearchResponse>> results = new ArrayList<>(requests.size());
+        for (SearchRequest request : requests) {
+            results.add(CompletableFuture.supplyAsync(() -> search(request)));
+        }
+        return results;
+    }
+
+    /**
+     * Exact number of courses matching the criteria of {@code request}, without
+     * fetching any of them. A request without criteria counts every course.
+     */
+    long count(SearchRequest request);
+
+    /**
+     * Completions served by the engine itself, used while the in-memory suggest
+     * index is not available. Engines without a completion structure return none.
+     */
+    default List<SuggestResponse.Suggestion> suggest(SuggestRequest request) {
+        return List.of();
+    }
+
+    /**
+     * Every searchable course, in no particular order. The stream may hold
+     * engine resources and must be closed.
+     */
+    Stream<CourseDocument> streamAll();
+
+    /**
+     * Number of courses currently searchable.
+     */
+    long count();
+
+    /**
+     * Starts a bulk load into the live index.
+     */
+    BulkSink openBulkSink();
+
+    /**
+     * Starts a full rebuild. Nothing written to the returned sink is visible until
+     * it completes, at which point the new catalog replaces the current one in a
+     * single step.
+     */
+    BulkSink openReindexSink();
+
+    /**
+     * Applies upserts and deletes in order, each checked against the version
+     * stored for its course, and answers write {@code i} with result {@code i}.
+     * Unless {@code refresh} is {@link RefreshMode#ASYNC} the changes are
+     * searchable when this returns.
+     */
+    List<WriteResult> write(List<CourseWrite> writes, RefreshMode refresh);
+
+    /**
+     * Removes every course whose next session is before {@code cutoff} and
+     * returns how many were removed. Courses without a session date are kept.
+     */
+    long retire(Instant cutoff);
+
+    /**
+     * Adds or replaces the given courses, keyed by id, and makes them searchable.
+     */
+    default void indexAll(List<CourseDocument> courses) {
+        BulkSink sink = openBulkSink();
+        BulkResult result = sink.write(courses);
+        sink.complete();
+        if (!result.failures().isEmpty()) {
+            BulkResult.Failure first = result.failures().get(0);
+            throw new IllegalStateException("Failed to index " + result.failures().size() + " courses, first failure: "
+                    + first.course().getId() + " - " + first.reason());
+        }
+    }
+}
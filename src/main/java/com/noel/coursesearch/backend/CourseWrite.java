@@ -0,0 +1,24 @@
+package com.noel.coursesearch.backend;
+
+import com.noel.coursesearch.document.CourseDocument;
+
+/**
+ * One change to a course: an upsert of {@code course}, or a delete when it is
+ * null. With a {@code version} the change only applies if that version is
+ * higher than the one stored for the course, like Elasticsearch's external
+ * versioning; without one it always applies.
+ */
+public record CourseWrite(String id, CourseDocument course, Long version) {
+
+    public static CourseWrite upsert(CourseDocument course, Long version) {
+        return new CourseWrite(course.getId(), course, version);
+    }
+
+    public static CourseWrite delete(String id, Long version) {
+        return new CourseWrite(id, null, version);
+    }
+
+    public boolean isDelete() {
+        return course == null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.noel.coursesearch.backend;
+
+import com.noel.coursesearch.document.CourseDocument;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends each batch as one {@code _bulk} request to a fixed index. Refresh is left
+ * to the index settings until {@link #complete()}.
+ */
+class ElasticsearchBulkSink implements BulkSink {
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final IndexCoordinates index;
+    private final Runnable onComplete;
+    private final Runnable onAbort;
+
+    ElasticsearchBulkSink(ElasticsearchOperations elasticsearchOperations, IndexCoordinates index, Runnable onComplete) {
+        this(elasticsearchOperations, index, onComplete, () -> {
+        });
+    }
+
+    ElasticsearchBulkSink(ElasticsearchOperations elasticsearchOperations, IndexCoordinates index,
+                          Runnable onComplete, Runnable onAbort) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.index = index;
+        this.onComplete = onComplete;
+        this.onAbort = onAbort;
+    }
+
+    @Override
+    public BulkResult write(List<CourseDocument> batch) {
+        List<IndexQuery> queries = new ArrayList<>(batch.size());
+        for (CourseDocument course : batch) {
+            queries.add(new IndexQueryBuilder()
+                    .withId(course.getId())
+                    .withObject(course)
+                    .build());
+        }
+
+        try {
+            elasticsearchOperations.bulkIndex(queries, index);
+            return BulkResult.success(batch.size());
+        } catch (BulkFailureException e) {
+            Map<String, CourseDocument> byId = new HashMap<>();
+            for (CourseDocument course : batch) {
+                byId.put(course.getId(), course);
+            }
+            List<BulkResult.Failure> failures = new ArrayList<>();
+            e.getFailedDocuments().forEach((id, details) ->
+                    failures.add(new BulkResult.Failure(byId.get(id), details.status(), details.errorMessage())));
+            return new BulkResult(batch.size() - failures.size(), failures);
+        }
+    }
+
+    @Override
+    public void complete() {
+        elasticsearchOperations.indexOps(index).refresh();
+        onComplete.run();
+    }
+
+    @Override
+    public void abort() {
+        onAbort.run();
+    }
+}
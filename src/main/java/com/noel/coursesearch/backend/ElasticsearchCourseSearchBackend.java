@@ -0,0 +1,761 @@
+package com.noel.coursesearch.backend;
+
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.document.CourseField;
+import com.noel.coursesearch.document.CourseProjection;
+import com.noel.coursesearch.document.CourseView;
+import com.noel.coursesearch.dto.SearchFacets;
+import com.noel.coursesearch.dto.SearchRequest;
+import com.noel.coursesearch.dto.SearchResponse;
+import com.noel.coursesearch.dto.SuggestRequest;
+import com.noel.coursesearch.dto.SuggestResponse;
+import com.noel.coursesearch.engine.FacetSpec;
+import com.noel.coursesearch.repository.CourseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.data.elasticsearch.core.suggest.response.CompletionSuggestion;
+import org.springframework.data.elasticsearch.core.suggest.response.Suggest;
+import org.springframework.stereotype.Component;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.VersionType;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.Buckets;
+import co.elastic.clients.elasticsearch._types.aggregations.FiltersBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.HistogramBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionBoostMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionScoreQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.MatchQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.MultiMatchQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermQuery;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.search.Suggester;
+import co.elastic.clients.json.JsonData;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+@Component
+@ConditionalOnProperty(prefix = "coursesearch", name = "backend", havingValue = "elasticsearch", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class ElasticsearchCourseSearchBackend implements CourseSearchBackend {
+
+    private static final IndexCoordinates COURSES_INDEX = IndexCoordinates.of("courses");
+    private static final String COMPLETION = "course-completion";
+    // The suggest field has no category context, so category is filtered on the
+    // returned documents; over-fetch to still fill the limit
+    private static final int CATEGORY_OVERFETCH = 4;
+    private static final String FACET_VALUES = "values";
+    // Rounded to the minute, so the filter stays cacheable for that long
+    private static final String UPCOMING_ORIGIN = "now/m";
+
+    private enum Facet {
+        CATEGORY, TYPE, PRICE, AGE
+    }
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ElasticsearchClient elasticsearchClient;
+    private final CourseRepository courseRepository;
+    private final IndexGeneration indexGeneration;
+    private final ElasticsearchIndexManager indexManager;
+    private final CourseSearchProperties properties;
+    private final SearchMetrics searchMetrics;
+
+    @Override
+    public SearchResponse search(SearchRequest request) {
+        if (request.getCursor() != null) {
+            return searchAfter(request);
+        }
+
+        long start = System.nanoTime();
+        NativeQuery query = buildSearchQuery(request);
+        long built = System.nanoTime();
+        searchMetrics.record(SearchMetrics.Stage.BUILD, request, built - start);
+
+        // Execute search
+        SearchHits<?> searchHits = elasticsearchOperations.search(query, hitType(request), COURSES_INDEX);
+        long fetched = System.nanoTime();
+        searchMetrics.record(SearchMetrics.Stage.BACKEND, request, fetched - built);
+
+        SearchResponse response = toResponse(request, searchHits);
+        searchMetrics.record(SearchMetrics.Stage.MAPPING, request, System.nanoTime() - fetched);
+        return response;
+    }
+
+    /**
+     * Sends the searches as a single _msearch. Cursor walks manage their own
+     * point-in-time and run one by one. If the _msearch as a whole fails, its
+     * searches are retried individually so only the failing ones report errors.
+     */
+    @Override
+    public List<CompletableFuture<SearchResponse>> searchAll(List<SearchRequest> requests) {
+        List<CompletableFuture<SearchResponse>> results = new ArrayList<>(requests.size());
+        List<SearchRequest> batched = new ArrayList<>();
+        List<CompletableFuture<SearchResponse>> batchedResults = new ArrayList<>();
+        for (SearchRequest request : requests) {
+            CompletableFuture<SearchResponse> result = new CompletableFuture<>();
+            results.add(result);
+            if (request.getCursor() != null) {
+                complete(result, request);
+            } else {
+                batched.add(request);
+                batchedResults.add(result);
+            }
+        }
+        if (batched.isEmpty()) {
+            return results;
+        }
+
+        List<NativeQuery> queries = new ArrayList<>(batched.size());
+        List<Class<?>> types = new ArrayList<>(batched.size());
+        try {
+            for (SearchRequest request : batched) {
+                queries.add(buildSearchQuery(request));
+                types.add(hitType(request));
+            }
+            List<SearchHits<?>> responses = elasticsearchOperations.multiSearch(queries, types, COURSES_INDEX);
+            for (int i = 0; i < batched.size(); i++) {
+                batchedResults.get(i).complete(toResponse(batched.get(i), responses.get(i)));
+            }
+        } catch (RuntimeException e) {
+            log.debug("Multi-search of {} queries failed, running them one by one", batched.size(), e);
+            for (int i = 0; i < batched.size(); i++) {
+                complete(batchedResults.get(i), batched.get(i));
+            }
+        }
+        return results;
+    }
+
+    private void complete(CompletableFuture<SearchResponse> result, SearchRequest request) {
+        try {
+            result.complete(search(request));
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Query of a page-numbered search, with the _source filter of its field
+     * projection if it has one.
+     */
+    private NativeQuery buildSearchQuery(SearchRequest request) {
+        NativeQueryBuilder queryBuilder = NativeQuery.builder();
+        applyQuery(queryBuilder, request);
+
+        // Sorting
+        Sort sort = buildSort(sortMode(request));
+
+        // Pagination
+        Pageable pageable = PageRequest.of(request.getPage(), request.getSize(), sort);
+        queryBuilder.withPageable(pageable);
+        applyTotalHits(queryBuilder, TotalHitsMode.from(request.getTotalHits()));
+        applySourceFilter(queryBuilder, request);
+        return queryBuilder.build();
+    }
+
+    private SearchResponse toResponse(SearchRequest request, SearchHits<?> searchHits) {
+        // Extract results
+        List<CourseView> courses = searchHits.stream()
+                .map(hit -> (CourseView) hit.getContent())
+                .collect(Collectors.toList());
+
+        TotalHitsMode.Total total = total(searchHits, TotalHitsMode.from(request.getTotalHits()),
+                (long) request.getPage() * request.getSize(), request.getSize());
+        SearchResponse response = SearchResponse.of(total.value(), total.relation(), courses, request.getPage(), request.getSize());
+        response.setFacets(readFacets(searchHits));
+        return response;
+    }
+
+    /**
+     * One page of a cursor walk. The walk reads from a point-in-time opened on
+     * its first page and resumes each page with search_after on the sort values
+     * of the previous page's last hit, with {@code id} as the tiebreaker, so deep
+     * pages cost the same as the first one and never hit max_result_window.
+     */
+    private SearchResponse searchAfter(SearchRequest request) {
+        Duration keepAlive = properties.getCursor().getKeepAlive();
+        String pointInTime;
+        List<Object> after = null;
+        if (SearchCursor.isStart(request.getCursor())) {
+            pointInTime = elasticsearchOperations.openPointInTime(COURSES_INDEX, keepAlive);
+        } else {
+            SearchCursor cursor = SearchCursor.decode(request.getCursor(), request);
+            pointInTime = cursor.pointInTime();
+            after = cursor.searchAfter();
+        }
+
+        SortMode sortMode = sortMode(request);
+        Sort sort = sortMode.isScored() ? Sort.by(Sort.Direction.DESC, "_score") : buildSort(sortMode);
+        NativeQueryBuilder queryBuilder = NativeQuery.builder()
+                .withPointInTime(new Query.PointInTime(pointInTime, keepAlive))
+                .withPageable(PageRequest.of(0, request.getSize(), sort.and(Sort.by(Sort.Direction.ASC, "id"))));
+        applyQuery(queryBuilder, request);
+        TotalHitsMode totalHitsMode = TotalHitsMode.from(request.getTotalHits());
+        applyTotalHits(queryBuilder, totalHitsMode);
+        if (after != null) {
+            queryBuilder.withSearchAfter(after);
+        }
+        applySourceFilter(queryBuilder, request);
+        SearchHits<?> searchHits = elasticsearchOperations.search(queryBuilder.build(), hitType(request), COURSES_INDEX);
+
+        List<CourseView> courses = searchHits.stream()
+                .map(hit -> (CourseView) hit.getContent())
+                .collect(Collectors.toList());
+        // Elasticsearch may hand back a new id for the same point-in-time
+        String nextPointInTime = searchHits.getPointInTimeId() != null ? searchHits.getPointInTimeId() : pointInTime;
+
+        TotalHitsMode.Total total = total(searchHits, totalHitsMode, 0, request.getSize());
+        SearchResponse response = SearchResponse.of(total.value(), total.relation(), courses, 0, request.getSize());
+        response.setFacets(readFacets(searchHits));
+        if (courses.size() < request.getSize()) {
+            elasticsearchOperations.closePointInTime(nextPointInTime);
+        } else {
+            List<Object> sortValues = searchHits.getSearchHit(searchHits.getSearchHits().size() - 1).getSortValues();
+            response.setNextCursor(SearchCursor.of(nextPointInTime, sortValues, request).encode());
+        }
+        return response;
+    }
+
+    /**
+     * With a field projection, only the selected fields of {@code _source} are
+     * fetched, and read into lightweight projections (see {@link #hitType}).
+     */
+    private static void applySourceFilter(NativeQueryBuilder queryBuilder, SearchRequest request) {
+        Set<CourseField> fields = CourseField.parse(request.getFields());
+        if (fields != null) {
+            String[] includes = fields.stream().map(CourseField::fieldName).toArray(String[]::new);
+            queryBuilder.withSourceFilter(new FetchSourceFilter(includes, null));
+        }
+    }
+
+    private static Class<? extends CourseView> hitType(SearchRequest request) {
+        return CourseField.parse(request.getFields()) == null ? CourseDocument.class : CourseProjection.class;
+    }
+
+    /**
+     * Only counts matches as far as the mode needs, which lets Elasticsearch
+     * stop collecting once the page and the count are settled.
+     */
+    private static void applyTotalHits(NativeQueryBuilder queryBuilder, TotalHitsMode mode) {
+        if (mode.isExact()) {
+            queryBuilder.withTrackTotalHits(true);
+        } else if (mode.isNone()) {
+            queryBuilder.withTrackTotalHits(false);
+        } else {
+            queryBuilder.withTrackTotalHitsUpTo(mode.limit());
+        }
+    }
+
+    private static TotalHitsMode.Total total(SearchHits<?> searchHits, TotalHitsMode mode, long from, int size) {
+        if (mode.isNone() || searchHits.getTotalHitsRelation() == TotalHitsRelation.OFF) {
+            return TotalHitsMode.lowerBound(from, searchHits.getSearchHits().size(), size);
+        }
+        String relation = searchHits.getTotalHitsRelation() == TotalHitsRelation.EQUAL_TO
+                ? TotalHitsMode.Total.EQUAL_TO
+                : TotalHitsMode.Total.GREATER_THAN_OR_EQUAL_TO;
+        return new TotalHitsMode.Total(searchHits.getTotalHits(), relation);
+    }
+
+    private BoolQuery buildQuery(SearchRequest request) {
+        // Build the boolean query
+        BoolQuery.Builder boolQueryBuilder = new BoolQuery.Builder();
+        addTextQuery(boolQueryBuilder, request);
+        addAgeFilters(boolQueryBuilder, request);
+        addCategoryFilter(boolQueryBuilder, request);
+        addTypeFilter(boolQueryBuilder, request);
+        addPriceFilters(boolQueryBuilder, request);
+        addDateFilter(boolQueryBuilder, request);
+        return boolQueryBuilder.build();
+    }
+
+    /**
+     * Sets the query, and when facets are requested, splits it so the faceted
+     * filters become a post_filter: hits are filtered by all of them, while each
+     * facet's aggregation applies every faceted filter but its own.
+     */
+    private void applyQuery(NativeQueryBuilder queryBuilder, SearchRequest request) {
+        if (!request.isFacets()) {
+            queryBuilder.withQuery(rank(buildQuery(request), request));
+            return;
+        }
+
+        BoolQuery.Builder boolQueryBuilder = new BoolQuery.Builder();
+        addTextQuery(boolQueryBuilder, request);
+        addDateFilter(boolQueryBuilder, request);
+        queryBuilder.withQuery(rank(boolQueryBuilder.build(), request));
+        queryBuilder.withFilter(facetFilters(request, null)._toQuery());
+
+        FacetSpec spec = facetSpec();
+        Map<String, co.elastic.clients.elasticsearch._types.query_dsl.Query> ageBands = new LinkedHashMap<>();
+        for (FacetSpec.AgeBand band : spec.ageBands()) {
+            ageBands.put(band.key(), BoolQuery.of(b -> b
+                    .filter(RangeQuery.of(r -> r.field("maxAge").gte(JsonData.of(band.from())))._toQuery())
+                    .filter(RangeQuery.of(r -> r.field("minAge").lte(JsonData.of(band.to())))._toQuery()))._toQuery());
+        }
+
+        queryBuilder.withAggregation(Facet.CATEGORY.name(), facetAggregation(request, Facet.CATEGORY,
+                Aggregation.of(a -> a.terms(t -> t.field("category").size(spec.maxTerms())))));
+        queryBuilder.withAggregation(Facet.TYPE.name(), facetAggregation(request, Facet.TYPE,
+                Aggregation.of(a -> a.terms(t -> t.field("type").size(spec.maxTerms())))));
+        queryBuilder.withAggregation(Facet.PRICE.name(), facetAggregation(request, Facet.PRICE,
+                Aggregation.of(a -> a.histogram(h -> h.field("price").interval(spec.priceInterval())))));
+        queryBuilder.withAggregation(Facet.AGE.name(), facetAggregation(request, Facet.AGE,
+                Aggregation.of(a -> a.filters(f -> f.filters(Buckets.of(b -> b.keyed(ageBands)))))));
+    }
+
+    /**
+     * For relevanceUpcoming, multiplies the BM25 score by a gauss decay on the
+     * next session date. Sorting by that score alone leaves Elasticsearch free
+     * to collect just the top {@code from + size} hits per shard.
+     */
+    private co.elastic.clients.elasticsearch._types.query_dsl.Query rank(BoolQuery query, SearchRequest request) {
+        if (sortMode(request) != SortMode.RELEVANCE_UPCOMING) {
+            return query._toQuery();
+        }
+        CourseSearchProperties.Ranking ranking = properties.getRanking();
+        return FunctionScoreQuery.of(f -> f
+                .query(query._toQuery())
+                .functions(fn -> fn.gauss(g -> g
+                        .field("nextSessionDate")
+                        .placement(p -> p
+                                .origin(JsonData.of(UPCOMING_ORIGIN))
+                                .scale(JsonData.of(ranking.getUpcomingScale().toMillis() + "ms"))
+                                .offset(JsonData.of(ranking.getUpcomingOffset().toMillis() + "ms"))
+                                .decay(ranking.getUpcomingDecay()))))
+                .boostMode(FunctionBoostMode.Multiply))._toQuery();
+    }
+
+    /**
+     * Sort mode of the request. Without text there is no relevance to decay, and
+     * the decay alone orders by session date, so relevanceUpcoming sorts as upcoming.
+     */
+    private static SortMode sortMode(SearchRequest request) {
+        SortMode sortMode = SortMode.from(request.getSort());
+        boolean hasText = request.getQ() != null && !request.getQ().trim().isEmpty();
+        return sortMode == SortMode.RELEVANCE_UPCOMING && !hasText ? SortMode.UPCOMING : sortMode;
+    }
+
+    private FacetSpec facetSpec() {
+        CourseSearchProperties.Facets config = properties.getFacets();
+        return FacetSpec.of(config.getMaxTerms(), config.getPriceInterval(), config.getAgeBands());
+    }
+
+    private Aggregation facetAggregation(SearchRequest request, Facet facet, Aggregation values) {
+        return Aggregation.of(a -> a
+                .filter(facetFilters(request, facet)._toQuery())
+                .aggregations(FACET_VALUES, values));
+    }
+
+    /**
+     * The faceted filters of {@code request}, leaving out {@code excluded}.
+     */
+    private BoolQuery facetFilters(SearchRequest request, Facet excluded) {
+        BoolQuery.Builder boolQueryBuilder = new BoolQuery.Builder();
+        if (excluded != Facet.CATEGORY) {
+            addCategoryFilter(boolQueryBuilder, request);
+        }
+        if (excluded != Facet.TYPE) {
+            addTypeFilter(boolQueryBuilder, request);
+        }
+        if (excluded != Facet.PRICE) {
+            addPriceFilters(boolQueryBuilder, request);
+        }
+        if (excluded != Facet.AGE) {
+            addAgeFilters(boolQueryBuilder, request);
+        }
+        return boolQueryBuilder.build();
+    }
+
+    private SearchFacets readFacets(SearchHits<?> searchHits) {
+        ElasticsearchAggregations aggregations = (ElasticsearchAggregations) searchHits.getAggregations();
+        if (aggregations == null) {
+            return null;
+        }
+
+        FacetSpec spec = facetSpec();
+        List<SearchFacets.Bucket> price = new ArrayList<>();
+        for (HistogramBucket bucket : facetValues(aggregations, Facet.PRICE).histogram().buckets().array()) {
+            price.add(SearchFacets.Bucket.of(bucket.key(), bucket.key() + spec.priceInterval(), bucket.docCount()));
+        }
+        List<SearchFacets.Bucket> age = new ArrayList<>();
+        Map<String, FiltersBucket> ageBuckets = facetValues(aggregations, Facet.AGE).filters().buckets().keyed();
+        for (FacetSpec.AgeBand band : spec.ageBands()) {
+            FiltersBucket bucket = ageBuckets.get(band.key());
+            age.add(SearchFacets.Bucket.of(band.from(), band.to(), bucket == null ? 0 : bucket.docCount()));
+        }
+        return new SearchFacets(terms(aggregations, Facet.CATEGORY), terms(aggregations, Facet.TYPE), price, age);
+    }
+
+    private static Map<String, Long> terms(ElasticsearchAggregations aggregations, Facet facet) {
+        Map<String, Long> terms = new LinkedHashMap<>();
+        for (StringTermsBucket bucket : facetValues(aggregations, facet).sterms().buckets().array()) {
+            terms.put(bucket.key().stringValue(), bucket.docCount());
+        }
+        return terms;
+    }
+
+    private static Aggregate facetValues(ElasticsearchAggregations aggregations, Facet facet) {
+        return aggregations.get(facet.name()).aggregation().getAggregate().filter().aggregations().get(FACET_VALUES);
+    }
+
+    /**
+     * Full-text search on title and description, where the search analyzer adds
+     * synonyms and {@code coursesearch.matching.*} sets how far a term may be
+     * misspelled. Matches on the start of title words ({@code title.prefix})
+     * count as well, and add to the score of full-word matches.
+     */
+    private void addTextQuery(BoolQuery.Builder boolQueryBuilder, SearchRequest request) {
+        if (request.getQ() != null && !request.getQ().trim().isEmpty()) {
+            CourseSearchProperties.Matching matching = properties.getMatching();
+            MultiMatchQuery multiMatchQuery = MultiMatchQuery.of(m -> {
+                m.query(request.getQ()).fields("title^2.0", "description^1.0");
+                if (!"0".equals(matching.getFuzziness().trim())) {
+                    m.fuzziness(matching.getFuzziness())
+                            .prefixLength(matching.getPrefixLength())
+                            .maxExpansions(matching.getMaxExpansions());
+                }
+                return m;
+            });
+            if (!matching.isTitlePrefixes()) {
+                boolQueryBuilder.must(multiMatchQuery._toQuery());
+                return;
+            }
+            MatchQuery prefixQuery = MatchQuery.of(m -> m.field("title.prefix").query(request.getQ()));
+            boolQueryBuilder.must(BoolQuery.of(b -> b
+                    .should(multiMatchQuery._toQuery(), prefixQuery._toQuery())
+                    .minimumShouldMatch("1"))._toQuery());
+        }
+    }
+
+    private static void addAgeFilters(BoolQuery.Builder boolQueryBuilder, SearchRequest request) {
+        // Age range filters
+        if (request.getMinAge() != null) {
+            RangeQuery maxAgeRange = RangeQuery.of(r -> r
+                    .field("maxAge")
+                    .gte(JsonData.of(request.getMinAge())));
+            boolQueryBuilder.filter(maxAgeRange._toQuery());
+        }
+        if (request.getMaxAge() != null) {
+            RangeQuery minAgeRange = RangeQuery.of(r -> r
+                    .field("minAge")
+                    .lte(JsonData.of(request.getMaxAge())));
+            boolQueryBuilder.filter(minAgeRange._toQuery());
+        }
+    }
+
+    private static void addCategoryFilter(BoolQuery.Builder boolQueryBuilder, SearchRequest request) {
+        // Category filter
+        if (request.getCategory() != null && !request.getCategory().trim().isEmpty()) {
+            TermQuery categoryTerm = TermQuery.of(t -> t
+                    .field("category")
+                    .value(request.getCategory()));
+            boolQueryBuilder.filter(categoryTerm._toQuery());
+        }
+    }
+
+    private static void addTypeFilter(BoolQuery.Builder boolQueryBuilder, SearchRequest request) {
+        // Type filter
+        if (request.getType() != null && !request.getType().trim().isEmpty()) {
+            TermQuery typeTerm = TermQuery.of(t -> t
+                    .field("type")
+                    .value(request.getType()));
+            boolQueryBuilder.filter(typeTerm._toQuery());
+        }
+    }
+
+    private static void addPriceFilters(BoolQuery.Builder boolQueryBuilder, SearchRequest request) {
+        // Price range filters
+        if (request.getMinPrice() != null) {
+            RangeQuery minPriceRange = RangeQuery.of(r -> r
+                    .field("price")
+                    .gte(JsonData.of(request.getMinPrice())));
+            boolQueryBuilder.filter(minPriceRange._toQuery());
+        }
+        if (request.getMaxPrice() != null) {
+            RangeQuery maxPriceRange = RangeQuery.of(r -> r
+                    .field("price")
+                    .lte(JsonData.of(request.getMaxPrice())));
+            boolQueryBuilder.filter(maxPriceRange._toQuery());
+        }
+    }
+
+    private static void addDateFilter(BoolQuery.Builder boolQueryBuilder, SearchRequest request) {
+        // Date filter - only show courses on or after the given date
+        if (request.getStartDate() != null) {
+            RangeQuery dateRange = RangeQuery.of(r -> r
+                    .field("nextSessionDate")
+                    .gte(JsonData.of(request.getStartDate().toString())));
+            boolQueryBuilder.filter(dateRange._toQuery());
+        }
+        // Ranking by upcoming sessions leaves out the ones already past
+        if (SortMode.from(request.getSort()) == SortMode.RELEVANCE_UPCOMING) {
+            RangeQuery upcoming = RangeQuery.of(r -> r
+                    .field("nextSessionDate")
+                    .gte(JsonData.of(UPCOMING_ORIGIN)));
+            boolQueryBuilder.filter(upcoming._toQuery());
+        }
+    }
+
+    /**
+     * Runs Elasticsearch's completion suggester on the {@code suggest} field, with
+     * {@code AUTO} fuzziness when requested.
+     */
+    @Override
+    public List<SuggestResponse.Suggestion> suggest(SuggestRequest request) {
+        boolean byCategory = request.getCategory() != null && !request.getCategory().isBlank();
+        int size = byCategory ? request.getLimit() * CATEGORY_OVERFETCH : request.getLimit();
+        Suggester suggester = Suggester.of(s -> s.suggesters(COMPLETION, f -> f
+                .prefix(request.getPrefix())
+                .completion(c -> {
+                    c.field("suggest").size(size).skipDuplicates(true);
+                    if (request.isFuzzy()) {
+                        c.fuzzy(z -> z.fuzziness("AUTO"));
+                    }
+                    return c;
+                })));
+        Query query = NativeQuery.builder()
+                .withSuggester(suggester)
+                .withMaxResults(0)
+                .build();
+
+        Suggest suggest = elasticsearchOperations.search(query, CourseDocument.class).getSuggest();
+        List<SuggestResponse.Suggestion> suggestions = new ArrayList<>();
+        if (suggest == null || suggest.getSuggestion(COMPLETION) == null) {
+            return suggestions;
+        }
+        for (Suggest.Suggestion.Entry<? extends Suggest.Suggestion.Entry.Option> entry : suggest.getSuggestion(COMPLETION).getEntries()) {
+            for (Suggest.Suggestion.Entry.Option option : entry.getOptions()) {
+                if (suggestions.size() >= request.getLimit()) {
+                    break;
+                }
+                if (byCategory && !request.getCategory().equals(categoryOf(option))) {
+                    continue;
+                }
+                int weight = option.getScore() == null ? 0 : option.getScore().intValue();
+                suggestions.add(new SuggestResponse.Suggestion(option.getText(), weight));
+            }
+        }
+        return suggestions;
+    }
+
+    @Override
+    public Stream<CourseDocument> streamAll() {
+        if (!elasticsearchOperations.indexOps(COURSES_INDEX).exists()) {
+            return Stream.empty();
+        }
+        SearchHitsIterator<CourseDocument> hits = elasticsearchOperations.searchForStream(
+                Query.findAll(), CourseDocument.class, COURSES_INDEX);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(hits, Spliterator.ORDERED), false)
+                .map(SearchHit::getContent)
+                .onClose(hits::close);
+    }
+
+    /**
+     * Runs the search's bool query through the count path, which asks for no
+     * hits and no _source but an exact total.
+     */
+    @Override
+    public long count(SearchRequest request) {
+        if (!elasticsearchOperations.indexOps(COURSES_INDEX).exists()) {
+            return 0;
+        }
+        Query query = NativeQuery.builder()
+                .withQuery(buildQuery(request)._toQuery())
+                .build();
+        return elasticsearchOperations.count(query, CourseDocument.class);
+    }
+
+    @Override
+    public long count() {
+        if (!elasticsearchOperations.indexOps(COURSES_INDEX).exists()) {
+            return 0;
+        }
+        return courseRepository.count();
+    }
+
+    @Override
+    public BulkSink openBulkSink() {
+        ensureIndex();
+        // The sink refreshes before completing, so the new generation is already searchable
+        return new ElasticsearchBulkSink(elasticsearchOperations, COURSES_INDEX, indexGeneration::increment);
+    }
+
+    @Override
+    public BulkSink openReindexSink() {
+        String index = indexManager.createNextVersion();
+        return new ElasticsearchBulkSink(elasticsearchOperations, IndexCoordinates.of(index),
+                () -> {
+                    indexManager.promote(index);
+                    indexGeneration.increment();
+                },
+                () -> indexManager.discard(index));
+    }
+
+    /**
+     * Sends the writes as one _bulk request. Versioned writes use external
+     * versioning, so Elasticsearch itself rejects stale ones with a 409.
+     * <p>
+     * An {@link RefreshMode#ASYNC} bulk is sent with {@code refresh=wait_for}
+     * too: its callers were answered when the write was buffered, and only the
+     * flush thread waits for the refresh. The index generation then moves once
+     * the writes are searchable, so results cached under the old generation
+     * are never stale, and results cached under the new one never predate them.
+     */
+    @Override
+    public List<WriteResult> write(List<CourseWrite> writes, RefreshMode refresh) {
+        ensureIndex();
+        List<BulkOperation> operations = new ArrayList<>(writes.size());
+        for (CourseWrite write : writes) {
+            if (write.isDelete()) {
+                operations.add(BulkOperation.of(op -> op.delete(delete -> {
+                    delete.id(write.id());
+                    if (write.version() != null) {
+                        delete.version(write.version()).versionType(VersionType.External);
+                    }
+                    return delete;
+                })));
+            } else {
+                // Mapped like Spring Data maps entities, so dates keep their @Field format
+                Document source = elasticsearchOperations.getElasticsearchConverter().mapObject(write.course());
+                operations.add(BulkOperation.of(op -> op.index(index -> {
+                    index.id(write.id()).document(source);
+                    if (write.version() != null) {
+                        index.version(write.version()).versionType(VersionType.External);
+                    }
+                    return index;
+                })));
+            }
+        }
+
+        BulkResponse response;
+        try {
+            response = elasticsearchClient.bulk(bulk -> bulk
+                    .index(COURSES_INDEX.getIndexName())
+                    .refresh(refresh == RefreshMode.IMMEDIATE ? Refresh.True : Refresh.WaitFor)
+                    .operations(operations));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + writes.size() + " courses", e);
+        }
+
+        List<WriteResult> results = new ArrayList<>(writes.size());
+        List<CourseDocument> upserted = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        for (int i = 0; i < writes.size(); i++) {
+            CourseWrite write = writes.get(i);
+            BulkResponseItem item = response.items().get(i);
+            if (item.error() != null) {
+                results.add(item.status() == 409
+                        ? new WriteResult(write.id(), WriteResult.Result.CONFLICT, null, item.error().reason())
+                        : WriteResult.failed(write.id(), item.error().reason()));
+            } else if (write.isDelete()) {
+                boolean found = !"not_found".equals(item.result());
+                if (found) {
+                    deleted.add(write.id());
+                }
+                results.add(WriteResult.of(write.id(), found ? WriteResult.Result.DELETED : WriteResult.Result.NOT_FOUND, item.version()));
+            } else {
+                upserted.add(write.course());
+                results.add(WriteResult.of(write.id(),
+                        "created".equals(item.result()) ? WriteResult.Result.CREATED : WriteResult.Result.UPDATED, item.version()));
+            }
+        }
+
+        if (!upserted.isEmpty() || !deleted.isEmpty()) {
+            indexGeneration.increment(upserted, deleted);
+        }
+        return results;
+    }
+
+    /**
+     * Deletes by a range query on {@code nextSessionDate}; with the index sorted
+     * on that field the expired courses sit together at the start of every
+     * segment. A course rewritten while this runs is left alone.
+     */
+    @Override
+    public long retire(Instant cutoff) {
+        if (!elasticsearchOperations.indexOps(COURSES_INDEX).exists()) {
+            return 0;
+        }
+        long retired;
+        try {
+            Long deleted = elasticsearchClient.deleteByQuery(d -> d
+                    .index(COURSES_INDEX.getIndexName())
+                    .query(RangeQuery.of(r -> r.field("nextSessionDate").lt(JsonData.of(cutoff.toString())))._toQuery())
+                    .conflicts(Conflicts.Proceed)
+                    .refresh(true)).deleted();
+            retired = deleted == null ? 0 : deleted;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to retire courses before " + cutoff, e);
+        }
+        if (retired > 0) {
+            // The ids are not known here, so derived state is rebuilt
+            indexGeneration.increment();
+        }
+        return retired;
+    }
+
+    private void ensureIndex() {
+        // Create index if it doesn't exist; "courses" may also be the alias of a versioned index
+        if (!elasticsearchOperations.indexOps(COURSES_INDEX).exists()) {
+            elasticsearchOperations.indexOps(CourseDocument.class).createWithMapping();
+            log.info("Created courses index");
+        }
+    }
+
+    private static String categoryOf(Suggest.Suggestion.Entry.Option option) {
+        if (option instanceof CompletionSuggestion.Entry.Option<?> completion
+                && completion.getSearchHit() != null
+                && completion.getSearchHit().getContent() instanceof CourseDocument course) {
+            return course.getCategory();
+        }
+        return null;
+    }
+
+    private static Sort buildSort(SortMode sortMode) {
+        return switch (sortMode) {
+            case PRICE_ASC -> Sort.by(Sort.Direction.ASC, "price");
+            case PRICE_DESC -> Sort.by(Sort.Direction.DESC, "price");
+            case RELEVANCE, RELEVANCE_UPCOMING -> Sort.unsorted();
+            case UPCOMING -> Sort.by(Sort.Direction.ASC, "nextSessionDate");
+        };
+    }
+}
@@ -0,0 +1,157 @@
+package com.noel.coursesearch.backend;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.document.CourseDocument;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds versioned {@code courses_v{n}} indices behind the {@code courses} alias.
+ * A new version is created with refresh disabled and no replicas, bulk loaded,
+ * then given its serving settings, force-merged and swapped in with a single
+ * atomic alias update, so readers only ever see a complete catalog.
+ */
+@Component
+@ConditionalOnProperty(prefix = "coursesearch", name = "backend", havingValue = "elasticsearch", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class ElasticsearchIndexManager {
+
+    static final String ALIAS = "courses";
+    private static final Pattern VERSIONED_INDEX = Pattern.compile(ALIAS + "_v(\\d+)");
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ElasticsearchClient elasticsearchClient;
+    private final CourseSearchProperties properties;
+
+    /**
+     * Creates the next {@code courses_v{n}} index, tuned for bulk loading.
+     */
+    public String createNextVersion() {
+        String index = ALIAS + "_v" + (latestVersion() + 1);
+
+        IndexOperations entityOps = elasticsearchOperations.indexOps(CourseDocument.class);
+        Settings settings = entityOps.createSettings();
+        settings.put("index.refresh_interval", "-1");
+        settings.put("index.number_of_replicas", 0);
+        elasticsearchOperations.indexOps(IndexCoordinates.of(index)).create(settings, entityOps.createMapping());
+
+        log.info("Created {} for bulk loading", index);
+        return index;
+    }
+
+    /**
+     * Restores serving settings on {@code index}, force-merges it and atomically
+     * points the alias at it. A concrete index still named {@code courses} (from
+     * before aliases were used) is removed in the same update.
+     */
+    public void promote(String index) {
+        CourseSearchProperties.Reindex config = properties.getReindex();
+        try {
+            elasticsearchClient.indices().putSettings(p -> p
+                    .index(index)
+                    .settings(s -> s
+                            .refreshInterval(t -> t.time(config.getRefreshInterval().toMillis() + "ms"))
+                            .numberOfReplicas(String.valueOf(config.getReplicas()))));
+            elasticsearchClient.indices().forcemerge(f -> f
+                    .index(index)
+                    .maxNumSegments((long) config.getMaxNumSegments()));
+
+            List<Action> actions = new ArrayList<>();
+            actions.add(Action.of(a -> a.add(add -> add.index(index).alias(ALIAS))));
+            for (String previous : aliasTargets()) {
+                actions.add(Action.of(a -> a.remove(remove -> remove.index(previous).alias(ALIAS))));
+            }
+            if (isConcreteIndex(ALIAS)) {
+                actions.add(Action.of(a -> a.removeIndex(remove -> remove.index(ALIAS))));
+            }
+            elasticsearchClient.indices().updateAliases(u -> u.actions(actions));
+            log.info("Alias {} now points at {}", ALIAS, index);
+
+            deleteOldVersions(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to promote " + index, e);
+        }
+    }
+
+    /**
+     * Drops a version that never went live, e.g. after a failed load.
+     */
+    public void discard(String index) {
+        elasticsearchOperations.indexOps(IndexCoordinates.of(index)).delete();
+        log.info("Discarded {}", index);
+    }
+
+    private void deleteOldVersions(String current) throws IOException {
+        List<String> versions = versionedIndices();
+        versions.remove(current);
+        versions.sort(Comparator.comparingInt(ElasticsearchIndexManager::version).reversed());
+        for (String old : versions.subList(Math.min(versions.size(), properties.getReindex().getRetainPrevious()), versions.size())) {
+            elasticsearchClient.indices().delete(d -> d.index(old));
+            log.info("Deleted old index {}", old);
+        }
+    }
+
+    private int latestVersion() {
+        try {
+            return versionedIndices().stream()
+                    .mapToInt(ElasticsearchIndexManager::version)
+                    .max()
+                    .orElse(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<String> versionedIndices() throws IOException {
+        List<String> versions = new ArrayList<>();
+        for (String index : elasticsearchClient.indices().get(g -> g.index(ALIAS + "_v*")).result().keySet()) {
+            if (VERSIONED_INDEX.matcher(index).matches()) {
+                versions.add(index);
+            }
+        }
+        return versions;
+    }
+
+    private Set<String> aliasTargets() throws IOException {
+        try {
+            return elasticsearchClient.indices().getAlias(g -> g.name(ALIAS)).result().keySet();
+        } catch (ElasticsearchException e) {
+            if (e.status() == 404) {
+                return Set.of();
+            }
+            throw e;
+        }
+    }
+
+    private boolean isConcreteIndex(String name) throws IOException {
+        return elasticsearchClient.indices().exists(e -> e.index(name)).value() && !aliasExists(name);
+    }
+
+    private boolean aliasExists(String name) throws IOException {
+        return elasticsearchClient.indices().existsAlias(e -> e.name(name)).value();
+    }
+
+    private static int version(String index) {
+        Matcher matcher = VERSIONED_INDEX.matcher(index);
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+}
@@ -0,0 +1,474 @@
+package com.noel.coursesearch.backend;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.document.CourseField;
+import com.noel.coursesearch.document.CourseIndexSettings;
+import com.noel.coursesearch.document.CourseView;
+import com.noel.coursesearch.dto.ProjectedCourse;
+import com.noel.coursesearch.dto.SearchRequest;
+import com.noel.coursesearch.dto.SearchResponse;
+import com.noel.coursesearch.engine.CourseFilter;
+import com.noel.coursesearch.engine.CourseHits;
+import com.noel.coursesearch.engine.CourseIndex;
+import com.noel.coursesearch.engine.CourseSearcher;
+import com.noel.coursesearch.engine.FacetSpec;
+import com.noel.coursesearch.engine.IndexSnapshot;
+import com.noel.coursesearch.engine.QueryExpansion;
+import com.noel.coursesearch.engine.TimeDecay;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Serves searches from an in-process {@link CourseIndex}. Writes rebuild the
+ * index and publish it with a single volatile write, so readers always see a
+ * complete catalog and never take a lock.
+ * <p>
+ * A rebuild, and the snapshot rewrite below, cost O(catalog) however few
+ * courses changed. Course API writes reach this backend through
+ * {@code CourseWriteService}, which sends one batch per flush and spaces
+ * immediate flushes, so that cost is paid a bounded number
+ * of times per second rather than once per write.
+ * <p>
+ * Because a published index never changes, a point-in-time is simply a
+ * reference to the index a cursor walk started on, kept alive between pages.
+ * Totals come from bitset cardinality, except that a filter-only search in a
+ * field order that does not need an exact total walks that order and stops once
+ * its page and the {@link TotalHitsMode} limit are reached. A field
+ * projection never copies documents: hits become {@link ProjectedCourse}s that
+ * are written field by field with Jackson's streaming generator.
+ * <p>
+ * {@link SortMode#RELEVANCE_UPCOMING} measures session dates from the current
+ * minute, as Elasticsearch's {@code now/m}; a cursor walk keeps the minute it
+ * started in, so its pages rank against the same origin.
+ * <p>
+ * With {@code coursesearch.snapshot.path} set, every change to the catalog (bulk
+ * loads, reindexes, course API writes and retirements) also writes an
+ * {@link IndexSnapshot}, and startup maps the last one instead of ingesting
+ * again. The snapshot records the size and modification time of the ingest
+ * source it was loaded from; if the source has changed since, the snapshot is
+ * ignored and the catalog is loaded afresh.
+ */
+@Component
+@ConditionalOnProperty(prefix = "coursesearch", name = "backend", havingValue = "embedded")
+@Slf4j
+public class EmbeddedCourseSearchBackend implements CourseSearchBackend {
+
+    private static final ResourceLoader RESOURCES = new DefaultResourceLoader();
+
+    private final IndexGeneration indexGeneration;
+
+    // Source of truth for rebuilds, guarded by this; only filled from the index
+    // once a change needs it when the catalog was opened from a snapshot
+    private final Map<String, CourseDocument> courses = new LinkedHashMap<>();
+    private boolean coursesLoaded = true;
+    // Versions of courses written through the course API, deleted ones included
+    // so a late write cannot bring them back; guarded by this
+    private final Map<String, Long> versions = new HashMap<>();
+    // System.nanoTime() each deleted course's version was kept from, oldest
+    // first; it is dropped after the tombstone retention. Guarded by this
+    private final Map<String, Long> tombstones = new LinkedHashMap<>();
+    private final long tombstoneRetention;
+
+    private final Cache<String, PointInTime> pointsInTime;
+    private final FacetSpec facetSpec;
+    private final CourseSearchProperties.Ranking ranking;
+    private final QueryExpansion queryExpansion;
+    private final SearchMetrics searchMetrics;
+    private final Path snapshotPath;
+    private final String source;
+    // Fingerprint of the source the catalog was loaded from, guarded by this
+    private long loadedSource = IndexSnapshot.UNKNOWN_SOURCE;
+
+    private volatile CourseIndex index = CourseIndex.empty();
+
+    public EmbeddedCourseSearchBackend(IndexGeneration indexGeneration, CourseSearchProperties properties,
+                                       SearchMetrics searchMetrics) {
+        this.indexGeneration = indexGeneration;
+        this.searchMetrics = searchMetrics;
+        this.pointsInTime = Caffeine.newBuilder()
+                .expireAfterAccess(properties.getCursor().getKeepAlive())
+                // Each walk may pin a whole index generation
+                .maximumSize(properties.getCursor().getMaxOpen())
+                .build();
+        CourseSearchProperties.Facets facets = properties.getFacets();
+        this.facetSpec = FacetSpec.of(facets.getMaxTerms(), facets.getPriceInterval(), facets.getAgeBands());
+        this.ranking = properties.getRanking();
+        CourseSearchProperties.Matching matching = properties.getMatching();
+        this.queryExpansion = QueryExpansion.of(CourseIndexSettings.synonyms(), matching.getFuzziness(),
+                matching.getPrefixLength(), matching.getMaxExpansions(), matching.isTitlePrefixes());
+        this.tombstoneRetention = properties.getWrite().getTombstoneRetention().toNanos();
+        this.source = properties.getIngest().getSource();
+        this.snapshotPath = properties.getSnapshot().getPath() == null ? null : Path.of(properties.getSnapshot().getPath());
+        if (snapshotPath != null && Files.exists(snapshotPath)) {
+            openSnapshot();
+        }
+    }
+
+    private void openSnapshot() {
+        long start = System.nanoTime();
+        try {
+            long current = sourceFingerprint();
+            long recorded = IndexSnapshot.source(snapshotPath);
+            if (current != IndexSnapshot.UNKNOWN_SOURCE && current != recorded) {
+                log.info("Ignoring embedded course index snapshot {}: {} has changed since it was written",
+                        snapshotPath, source);
+                return;
+            }
+            index = IndexSnapshot.open(snapshotPath);
+            loadedSource = recorded;
+            coursesLoaded = false;
+            log.info("Opened embedded course index snapshot {} with {} courses in {} ms",
+                    snapshotPath, index.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            log.warn("Ignoring embedded course index snapshot {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    private void writeSnapshot() {
+        long start = System.nanoTime();
+        try {
+            IndexSnapshot.write(index, loadedSource, snapshotPath);
+            log.debug("Wrote embedded course index snapshot {} in {} ms", snapshotPath, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            log.warn("Failed to write embedded course index snapshot {}", snapshotPath, e);
+        }
+    }
+
+    /**
+     * Size and modification time of the ingest source, or
+     * {@link IndexSnapshot#UNKNOWN_SOURCE} if it cannot be read.
+     */
+    private long sourceFingerprint() {
+        Resource resource = RESOURCES.getResource(source);
+        try {
+            long fingerprint = 31L * source.hashCode() + resource.contentLength();
+            return 31 * fingerprint + resource.lastModified();
+        } catch (IOException e) {
+            return IndexSnapshot.UNKNOWN_SOURCE;
+        }
+    }
+
+    /**
+     * Fills the catalog from an index opened from a snapshot, before the first
+     * change rebuilds it.
+     */
+    private void loadCourses() {
+        if (coursesLoaded) {
+            return;
+        }
+        CourseIndex current = index;
+        for (int doc = 0; doc < current.size(); doc++) {
+            CourseDocument course = current.document(doc);
+            courses.put(course.getId(), course);
+        }
+        coursesLoaded = true;
+    }
+
+    @Override
+    public SearchResponse search(SearchRequest request) {
+        if (request.getCursor() != null) {
+            return searchAfter(request);
+        }
+
+        long start = System.nanoTime();
+        CourseIndex current = index;
+        long now = now();
+        CourseSearcher searcher = searcher(current, now);
+        SortMode sortMode = SortMode.from(request.getSort());
+        CourseFilter filter = CourseFilter.from(request, now);
+        long built = System.nanoTime();
+        searchMetrics.record(SearchMetrics.Stage.BUILD, request, built - start);
+
+        TotalHitsMode totalHitsMode = TotalHitsMode.from(request.getTotalHits());
+        long from = (long) request.getPage() * request.getSize();
+        // No search matches more than the whole catalog, so a page past it is empty
+        CourseHits hits = searcher.search(
+                request.getQ(),
+                filter,
+                sortMode,
+                (int) Math.min(from, current.size()),
+                request.getSize(),
+                totalHitsMode);
+        long fetched = System.nanoTime();
+        searchMetrics.record(SearchMetrics.Stage.BACKEND, request, fetched - built);
+
+        List<CourseView> page = page(current, hits, CourseField.parse(request.getFields()));
+        TotalHitsMode.Total total = totalHitsMode
+                .of(hits.total(), from, page.size(), request.getSize());
+        SearchResponse response = SearchResponse.of(total.value(), total.relation(), page, request.getPage(), request.getSize());
+        if (request.isFacets()) {
+            response.setFacets(searcher.facets(request.getQ(), filter, facetSpec));
+        }
+        searchMetrics.record(SearchMetrics.Stage.MAPPING, request, System.nanoTime() - fetched);
+        return response;
+    }
+
+    private SearchResponse searchAfter(SearchRequest request) {
+        String pointInTime;
+        long after;
+        PointInTime snapshot;
+        if (SearchCursor.isStart(request.getCursor())) {
+            pointInTime = UUID.randomUUID().toString();
+            after = CourseSearcher.FIRST_PAGE;
+            snapshot = new PointInTime(index, now());
+            pointsInTime.put(pointInTime, snapshot);
+        } else {
+            SearchCursor cursor = SearchCursor.decode(request.getCursor(), request);
+            pointInTime = cursor.pointInTime();
+            after = cursor.searchAfterKey();
+            snapshot = pointsInTime.getIfPresent(pointInTime);
+            if (snapshot == null) {
+                throw new InvalidCursorException("Cursor has expired");
+            }
+        }
+
+        CourseSearcher searcher = searcher(snapshot.index(), snapshot.now());
+        SortMode sortMode = SortMode.from(request.getSort());
+        CourseFilter filter = CourseFilter.from(request, snapshot.now());
+        CourseHits hits = searcher.searchAfter(request.getQ(), filter, sortMode, after, request.getSize());
+
+        List<CourseView> page = page(snapshot.index(), hits, CourseField.parse(request.getFields()));
+        TotalHitsMode.Total total = TotalHitsMode.from(request.getTotalHits())
+                .of(hits.total(), 0, page.size(), request.getSize());
+        SearchResponse response = SearchResponse.of(total.value(), total.relation(), page, 0, request.getSize());
+        if (request.isFacets()) {
+            response.setFacets(searcher.facets(request.getQ(), filter, facetSpec));
+        }
+        if (hits.docs().length < request.getSize()) {
+            // Last page, release the snapshot
+            pointsInTime.invalidate(pointInTime);
+        } else {
+            response.setNextCursor(SearchCursor.of(pointInTime, List.of(hits.lastSortKey()), request).encode());
+        }
+        return response;
+    }
+
+    /**
+     * The hits as the indexed documents themselves, or as projections that
+     * reference them and stream only the selected fields when serialized.
+     */
+    private static List<CourseView> page(CourseIndex index, CourseHits hits, Set<CourseField> fields) {
+        List<CourseView> page = new ArrayList<>(hits.docs().length);
+        for (int doc : hits.docs()) {
+            CourseDocument course = index.document(doc);
+            page.add(fields == null ? course : new ProjectedCourse(course, fields));
+        }
+        return page;
+    }
+
+    @Override
+    public long count(SearchRequest request) {
+        long now = now();
+        return searcher(index, now).count(request.getQ(), CourseFilter.from(request, now));
+    }
+
+    private CourseSearcher searcher(CourseIndex index, long now) {
+        return new CourseSearcher(index, TimeDecay.gauss(now, ranking.getUpcomingScale(), ranking.getUpcomingOffset(),
+                ranking.getUpcomingDecay()), queryExpansion);
+    }
+
+    private static long now() {
+        return SortMode.upcomingOrigin();
+    }
+
+    @Override
+    public Stream<CourseDocument> streamAll() {
+        CourseIndex current = index;
+        return IntStream.range(0, current.size()).mapToObj(current::document);
+    }
+
+    @Override
+    public long count() {
+        return index.size();
+    }
+
+    @Override
+    public BulkSink openBulkSink() {
+        return new StagingSink(false);
+    }
+
+    @Override
+    public BulkSink openReindexSink() {
+        return new StagingSink(true);
+    }
+
+    /**
+     * Applies the writes to the catalog and publishes one rebuilt index for all
+     * of them. The index is always current when this returns, whatever the
+     * refresh mode.
+     */
+    @Override
+    public synchronized List<WriteResult> write(List<CourseWrite> writes, RefreshMode refresh) {
+        loadCourses();
+        long now = System.nanoTime();
+        pruneTombstones(now);
+        List<WriteResult> results = new ArrayList<>(writes.size());
+        List<CourseDocument> upserted = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        for (CourseWrite write : writes) {
+            Long stored = versions.get(write.id());
+            if (write.version() != null && stored != null && write.version() <= stored) {
+                results.add(WriteResult.conflict(write.id(), write.version(), stored));
+                continue;
+            }
+            long version = write.version() != null ? write.version() : stored == null ? 1 : stored + 1;
+            versions.put(write.id(), version);
+            tombstones.remove(write.id());
+            if (write.isDelete()) {
+                tombstones.put(write.id(), now);
+                if (courses.remove(write.id()) == null) {
+                    results.add(WriteResult.of(write.id(), WriteResult.Result.NOT_FOUND, version));
+                } else {
+                    deleted.add(write.id());
+                    results.add(WriteResult.of(write.id(), WriteResult.Result.DELETED, version));
+                }
+            } else {
+                boolean existed = courses.put(write.id(), write.course()) != null;
+                upserted.add(write.course());
+                results.add(WriteResult.of(write.id(), existed ? WriteResult.Result.UPDATED : WriteResult.Result.CREATED, version));
+            }
+        }
+
+        if (!upserted.isEmpty() || !deleted.isEmpty()) {
+            long start = System.nanoTime();
+            index = CourseIndex.build(courses.values());
+            indexGeneration.increment(upserted, deleted);
+            log.debug("Applied {} upserts and {} deletes to the embedded course index in {} ms",
+                    upserted.size(), deleted.size(), (System.nanoTime() - start) / 1_000_000);
+            if (snapshotPath != null) {
+                writeSnapshot();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Versions of courses deleted more than the retention ago, which a late
+     * write can no longer be expected to race with.
+     */
+    private void pruneTombstones(long now) {
+        Iterator<Map.Entry<String, Long>> oldest = tombstones.entrySet().iterator();
+        while (oldest.hasNext()) {
+            Map.Entry<String, Long> tombstone = oldest.next();
+            if (now - tombstone.getValue() < tombstoneRetention) {
+                break;
+            }
+            versions.remove(tombstone.getKey());
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Retired courses keep their version for the tombstone retention, like
+     * deleted ones.
+     */
+    @Override
+    public synchronized long retire(Instant cutoff) {
+        loadCourses();
+        long now = System.nanoTime();
+        pruneTombstones(now);
+        List<String> retired = new ArrayList<>();
+        courses.values().removeIf(course -> {
+            boolean expired = course.getNextSessionDate() != null && course.getNextSessionDate().toInstant().isBefore(cutoff);
+            if (expired) {
+                retired.add(course.getId());
+            }
+            return expired;
+        });
+        for (String id : retired) {
+            if (versions.containsKey(id)) {
+                tombstones.remove(id);
+                tombstones.put(id, now);
+            }
+        }
+        if (!retired.isEmpty()) {
+            index = CourseIndex.build(courses.values());
+            indexGeneration.increment(List.of(), retired);
+            if (snapshotPath != null) {
+                writeSnapshot();
+            }
+        }
+        return retired.size();
+    }
+
+    /**
+     * Merges {@code newCourses} into the catalog, or replaces the catalog with
+     * them, and publishes a rebuilt index. Staging a whole bulk load first keeps
+     * this to one rebuild per load.
+     */
+    private synchronized void apply(List<CourseDocument> newCourses, boolean replace) {
+        if (replace) {
+            courses.clear();
+            versions.clear();
+            tombstones.clear();
+            coursesLoaded = true;
+        } else {
+            loadCourses();
+        }
+        for (CourseDocument course : newCourses) {
+            courses.put(course.getId(), course);
+        }
+        long start = System.nanoTime();
+        index = CourseIndex.build(courses.values());
+        if (replace) {
+            indexGeneration.increment();
+        } else {
+            indexGeneration.increment(newCourses, List.of());
+        }
+        log.debug("Rebuilt embedded course index with {} courses in {} ms", courses.size(), (System.nanoTime() - start) / 1_000_000);
+        if (snapshotPath != null) {
+            loadedSource = sourceFingerprint();
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Index a cursor walk pages through, and the minute it started in.
+     */
+    private record PointInTime(CourseIndex index, long now) {
+    }
+
+    private final class StagingSink implements BulkSink {
+        // Batches arrive from several ingestion workers
+        private final List<CourseDocument> staged = Collections.synchronizedList(new ArrayList<>());
+        private final boolean replace;
+
+        private StagingSink(boolean replace) {
+            this.replace = replace;
+        }
+
+        @Override
+        public BulkResult write(List<CourseDocument> batch) {
+            staged.addAll(batch);
+            return BulkResult.success(batch.size());
+        }
+
+        @Override
+        public void complete() {
+            apply(staged, replace);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.noel.coursesearch.backend;
+
+import com.noel.coursesearch.document.CourseDocument;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic counter of changes to the courses index. Every write path bumps it
+ * once its changes are searchable, which lets anything derived from search
+ * results tell whether it is still current. Each bump is also announced as a
+ * {@link CourseIndexChangedEvent}.
+ */
+@Component
+public class IndexGeneration {
+
+    private final AtomicLong generation = new AtomicLong();
+    private final ApplicationEventPublisher eventPublisher;
+
+    public IndexGeneration(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    public long current() {
+        return generation.get();
+    }
+
+    /**
+     * Records a change that replaced or bulk loaded the catalog.
+     */
+    public long increment() {
+        long next = generation.incrementAndGet();
+        eventPublisher.publishEvent(new CourseIndexChangedEvent(next, true, List.of(), List.of()));
+        return next;
+    }
+
+    /**
+     * Records a change limited to the given documents.
+     */
+    public long increment(List<CourseDocument> upserted, List<String> deletedIds) {
+        long next = generation.incrementAndGet();
+        eventPublisher.publishEvent(new CourseIndexChangedEvent(next, false, List.copyOf(upserted), List.copyOf(deletedIds)));
+        return next;
+    }
+}
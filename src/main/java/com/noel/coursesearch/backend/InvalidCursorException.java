@@ -0,0 +1,16 @@
+package com.noel.coursesearch.backend;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A search cursor that cannot be resumed: malformed, issued for another query,
+ * or past its keep-alive.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
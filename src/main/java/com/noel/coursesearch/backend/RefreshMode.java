@@ -0,0 +1,39 @@
+package com.noel.coursesearch.backend;
+
+/**
+ * When a write through the course API becomes searchable, relative to the
+ * response. Mirrors Elasticsearch's {@code refresh} parameter. Declared
+ * strictest first.
+ */
+public enum RefreshMode {
+    /**
+     * Flush the write buffer and refresh right away, answering once the change is visible.
+     */
+    IMMEDIATE,
+    /**
+     * Answer once the change has been flushed with the next batch and is visible.
+     */
+    WAIT_FOR,
+    /**
+     * Answer as soon as the change is buffered; it becomes visible within the
+     * flush interval plus the index refresh interval.
+     */
+    ASYNC;
+
+    /**
+     * The stricter of this mode and {@code other}.
+     */
+    public RefreshMode strictest(RefreshMode other) {
+        return other.ordinal() < ordinal() ? other : this;
+    }
+
+    public static RefreshMode from(String refreshParam) {
+        return switch (refreshParam.toLowerCase()) {
+            case "immediate", "true" -> IMMEDIATE;
+            case "wait_for" -> WAIT_FOR;
+            case "async", "false" -> ASYNC;
+            default -> throw new IllegalArgumentException(
+                    "refresh must be immediate, wait_for or async, not " + refreshParam);
+        };
+    }
+}
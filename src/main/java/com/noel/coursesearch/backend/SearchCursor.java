@@ -0,0 +1,82 @@
+package com.noel.coursesearch.backend;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.noel.coursesearch.dto.SearchRequest;
+import com.noel.coursesearch.engine.CourseFilter;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Position in a cursor walk over search results: the point-in-time the walk
+ * reads from, the sort values of the last hit returned, and a fingerprint of
+ * the query so a cursor cannot be replayed against different criteria. Clients
+ * only ever see it as an opaque URL-safe string.
+ */
+public record SearchCursor(String pointInTime, List<Object> searchAfter, int fingerprint) {
+
+    /**
+     * Cursor value that starts a new walk.
+     */
+    public static final String START = "*";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static boolean isStart(String cursor) {
+        return START.equals(cursor);
+    }
+
+    public static SearchCursor decode(String cursor, SearchRequest request) {
+        SearchCursor decoded;
+        try {
+            decoded = MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), SearchCursor.class);
+        } catch (IllegalArgumentException | IOException e) {
+            throw new InvalidCursorException("Malformed cursor");
+        }
+        if (decoded.pointInTime() == null || decoded.searchAfter() == null || decoded.searchAfter().isEmpty()
+                || !decoded.searchAfter().stream().allMatch(SearchCursor::isSortValue)) {
+            throw new InvalidCursorException("Malformed cursor");
+        }
+        if (decoded.fingerprint() != fingerprint(request)) {
+            throw new InvalidCursorException("Cursor was issued for a different query");
+        }
+        return decoded;
+    }
+
+    /**
+     * The sort value of a walk that resumes after one whole-number key, as the
+     * embedded engine's cursors carry.
+     */
+    public long searchAfterKey() {
+        if (searchAfter.size() != 1 || !(searchAfter.get(0) instanceof Integer || searchAfter.get(0) instanceof Long)) {
+            throw new InvalidCursorException("Malformed cursor");
+        }
+        return ((Number) searchAfter.get(0)).longValue();
+    }
+
+    public static SearchCursor of(String pointInTime, List<Object> searchAfter, SearchRequest request) {
+        return new SearchCursor(pointInTime, searchAfter, fingerprint(request));
+    }
+
+    public String encode() {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(this));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Sort values are scalars; Elasticsearch reports a missing one as null
+    private static boolean isSortValue(Object value) {
+        return value == null || value instanceof String || value instanceof Number || value instanceof Boolean;
+    }
+
+    // Built from strings only, so it is the same on every node
+    private static int fingerprint(SearchRequest request) {
+        String q = request.getQ() == null ? "" : request.getQ().trim().toLowerCase(Locale.ROOT);
+        return (q + '|' + CourseFilter.from(request) + '|' + SortMode.from(request.getSort()).name()).hashCode();
+    }
+}
@@ -0,0 +1,137 @@
+package com.noel.coursesearch.backend;
+
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.dto.SearchRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per-stage latency of {@code /api/search}. Each sample is recorded twice: in
+ * the {@code search.stage} timer, tagged with the stage and the backend only and
+ * published with percentile histograms, and in the {@code search.stage.detail}
+ * timer, which adds the sort mode, whether there was a text query and which
+ * filters were present but keeps no histogram, since those tags multiply into
+ * hundreds of series.
+ * <p>
+ * Every detail timer is resolved once and kept in an array indexed by stage and
+ * request shape, so a sample costs no registry lookup; only reading the sort
+ * parameter may allocate.
+ */
+@Component
+public class SearchMetrics {
+
+    /**
+     * Key under which the controller keeps the current {@link SearchRequest}
+     * as a request attribute, for stages recorded outside the service.
+     */
+    public static final String REQUEST_ATTRIBUTE = SearchMetrics.class.getName() + ".request";
+
+    public enum Stage {
+        /** The whole search, as seen by the service, cache hits included. */
+        TOTAL,
+        /** Turning the request into an engine query. */
+        BUILD,
+        /** The engine call, including reading the hits it returned. */
+        BACKEND,
+        /** Turning hits into the response. */
+        MAPPING,
+        /** Writing the response as JSON. */
+        SERIALIZATION
+    }
+
+    private static final String[] FILTERS = {"age", "category", "type", "price", "date"};
+    private static final int SHAPES = 1 << (FILTERS.length + 1);
+
+    private final MeterRegistry registry;
+    private final String backend;
+    private final Counter emptyRequests;
+    private final Timer[] stageTimers = new Timer[Stage.values().length];
+    private final AtomicReferenceArray<Timer> detailTimers =
+            new AtomicReferenceArray<>(Stage.values().length * SortMode.values().length * SHAPES);
+
+    public SearchMetrics(MeterRegistry registry, CourseSearchProperties properties) {
+        this.registry = registry;
+        this.backend = properties.getBackend().toLowerCase(Locale.ROOT);
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = Timer.builder("search.stage")
+                    .description("Time spent in each stage of a search")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .tag("backend", backend)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+        this.emptyRequests = Counter.builder("search.requests.empty")
+                .description("Searches without criteria, answered without reaching the engine")
+                .register(registry);
+    }
+
+    public void record(Stage stage, SearchRequest request, long nanos) {
+        SortMode sort = SortMode.from(request.getSort());
+        int shape = shape(request);
+        int index = (stage.ordinal() * SortMode.values().length + sort.ordinal()) * SHAPES + shape;
+        Timer timer = detailTimers.get(index);
+        if (timer == null) {
+            // Registering is idempotent, so a race only costs a lookup
+            timer = register(stage, sort, shape);
+            detailTimers.set(index, timer);
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+        stageTimers[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void emptyRequest() {
+        emptyRequests.increment();
+    }
+
+    private Timer register(Stage stage, SortMode sort, int shape) {
+        List<String> present = new ArrayList<>(FILTERS.length);
+        for (int i = 0; i < FILTERS.length; i++) {
+            if ((shape & (1 << i)) != 0) {
+                present.add(FILTERS[i]);
+            }
+        }
+        return Timer.builder("search.stage.detail")
+                .description("Time spent in each stage of a search, by request shape")
+                .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                .tag("backend", backend)
+                .tag("sort", sort.name().toLowerCase(Locale.ROOT))
+                .tag("text", String.valueOf((shape & (1 << FILTERS.length)) != 0))
+                .tag("filters", present.isEmpty() ? "none" : String.join("+", present))
+                .register(registry);
+    }
+
+    private static int shape(SearchRequest request) {
+        int shape = 0;
+        if (request.getMinAge() != null || request.getMaxAge() != null) {
+            shape |= 1;
+        }
+        if (!isBlank(request.getCategory())) {
+            shape |= 1 << 1;
+        }
+        if (!isBlank(request.getType())) {
+            shape |= 1 << 2;
+        }
+        if (request.getMinPrice() != null || request.getMaxPrice() != null) {
+            shape |= 1 << 3;
+        }
+        if (request.getStartDate() != null) {
+            shape |= 1 << 4;
+        }
+        if (!isBlank(request.getQ())) {
+            shape |= 1 << FILTERS.length;
+        }
+        return shape;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
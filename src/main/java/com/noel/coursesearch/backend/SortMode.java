@@ -0,0 +1,49 @@
+package com.noel.coursesearch.backend;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Sort modes accepted by the {@code sort} request parameter. Shared by every
+ * backend so that both engines agree on what each mode means.
+ */
+public enum SortMode {
+    UPCOMING,
+    PRICE_ASC,
+    PRICE_DESC,
+    RELEVANCE,
+    /**
+     * Relevance scaled by a gauss decay on how far off the next session is,
+     * over upcoming sessions only.
+     */
+    RELEVANCE_UPCOMING;
+
+    public static SortMode from(String sortParam) {
+        if (sortParam == null) {
+            return UPCOMING;
+        }
+
+        return switch (sortParam.toLowerCase()) {
+            case "priceasc" -> PRICE_ASC;
+            case "pricedesc" -> PRICE_DESC;
+            case "relevance" -> RELEVANCE;
+            case "relevanceupcoming" -> RELEVANCE_UPCOMING;
+            default -> UPCOMING;
+        };
+    }
+
+    /**
+     * Whether hits are ordered by score rather than by a field.
+     */
+    public boolean isScored() {
+        return this == RELEVANCE || this == RELEVANCE_UPCOMING;
+    }
+
+    /**
+     * Epoch millis of the current minute, which {@link #RELEVANCE_UPCOMING}
+     * measures session dates from, as Elasticsearch's {@code now/m}.
+     */
+    public static long upcomingOrigin() {
+        return Instant.now().truncatedTo(ChronoUnit.MINUTES).toEpochMilli();
+    }
+}
@@ -0,0 +1,85 @@
+package com.noel.coursesearch.backend;
+
+/**
+ * How precisely a search counts its matches, from the {@code totalHits} request
+ * parameter: {@code exact} (default), a number N to count up to N and report a
+ * lower bound beyond it, or {@code none}. Like {@link SortMode}, both engines
+ * report totals the same way for the same mode.
+ */
+public record TotalHitsMode(int limit) {
+
+    public static final TotalHitsMode EXACT = new TotalHitsMode(Integer.MAX_VALUE);
+    public static final TotalHitsMode NONE = new TotalHitsMode(0);
+
+    public static TotalHitsMode from(String totalHitsParam) {
+        if (totalHitsParam == null) {
+            return EXACT;
+        }
+
+        String value = totalHitsParam.trim().toLowerCase();
+        if (value.equals("exact")) {
+            return EXACT;
+        }
+        if (value.equals("none")) {
+            return NONE;
+        }
+        try {
+            int limit = Integer.parseInt(value);
+            if (limit >= 0) {
+                return limit > 0 ? new TotalHitsMode(limit) : NONE;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("totalHits must be exact, none or a number of hits, not " + totalHitsParam);
+    }
+
+    public boolean isExact() {
+        return limit == Integer.MAX_VALUE;
+    }
+
+    public boolean isNone() {
+        return limit == 0;
+    }
+
+    /**
+     * Reports a total known to be exact the way this mode reports it: capped
+     * counts become a lower bound past the limit, and with no tracking only what
+     * the page itself proves is reported.
+     */
+    public Total of(long exactTotal, long from, int returned, int size) {
+        if (isNone()) {
+            return lowerBound(from, returned, size);
+        }
+        if (exactTotal > limit) {
+            return new Total(limit, Total.GREATER_THAN_OR_EQUAL_TO);
+        }
+        return new Total(exactTotal, Total.EQUAL_TO);
+    }
+
+    /**
+     * Total when matches were not counted: everything up to the end of this page,
+     * which is exact only if the page came back short with the last hits. An
+     * empty page past the first proves nothing about how many hits came before.
+     */
+    public static Total lowerBound(long from, int returned, int size) {
+        if (returned == 0 && from > 0) {
+            return new Total(0, Total.GREATER_THAN_OR_EQUAL_TO);
+        }
+        return new Total(from + returned, returned < size ? Total.EQUAL_TO : Total.GREATER_THAN_OR_EQUAL_TO);
+    }
+
+    /**
+     * A total and whether it is exact ({@code eq}) or a lower bound ({@code gte}),
+     * using Elasticsearch's names.
+     */
+    public record Total(long value, String relation) {
+
+        public static final String EQUAL_TO = "eq";
+        public static final String GREATER_THAN_OR_EQUAL_TO = "gte";
+
+        public boolean isExact() {
+            return EQUAL_TO.equals(relation);
+        }
+    }
+}
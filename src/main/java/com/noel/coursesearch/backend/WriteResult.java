@@ -0,0 +1,50 @@
+package com.noel.coursesearch.backend;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one {@link CourseWrite}, with the version the course now has when
+ * the write was applied.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record WriteResult(String id, Result result, Long version, String error) {
+
+    public enum Result {
+        CREATED(201),
+        UPDATED(200),
+        DELETED(200),
+        NOT_FOUND(404),
+        /**
+         * The stored version is the same or newer; nothing was changed.
+         */
+        CONFLICT(409),
+        FAILED(500),
+        /**
+         * Buffered with {@link RefreshMode#ASYNC}; the outcome is not known yet.
+         */
+        ACCEPTED(202);
+
+        private final int status;
+
+        Result(int status) {
+            this.status = status;
+        }
+
+        public int status() {
+            return status;
+        }
+    }
+
+    public static WriteResult of(String id, Result result, Long version) {
+        return new WriteResult(id, result, version, null);
+    }
+
+    public static WriteResult conflict(String id, long version, Long stored) {
+        return new WriteResult(id, Result.CONFLICT, stored,
+                "Version " + version + " is not newer than the stored version " + stored);
+    }
+
+    public static WriteResult failed(String id, String error) {
+        return new WriteResult(id, Result.FAILED, null, error);
+    }
+}
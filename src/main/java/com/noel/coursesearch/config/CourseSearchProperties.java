@@ -0,0 +1,388 @@
+package com.noel.coursesearch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "coursesearch")
+public class CourseSearchProperties {
+
+    /**
+     * Which engine serves /api/search: "elasticsearch" (default) or "embedded".
+     */
+    private String backend = "elasticsearch";
+
+    private final Cache cache = new Cache();
+
+    private final Coalesce coalesce = new Coalesce();
+
+    private final Ingest ingest = new Ingest();
+
+    private final Reindex reindex = new Reindex();
+
+    private final Suggest suggest = new Suggest();
+
+    private final Cursor cursor = new Cursor();
+
+    private final Facets facets = new Facets();
+
+    private final Ranking ranking = new Ranking();
+
+    private final Matching matching = new Matching();
+
+    private final Batch batch = new Batch();
+
+    private final Paging paging = new Paging();
+
+    private final Write write = new Write();
+
+    private final Retention retention = new Retention();
+
+    private final Snapshot snapshot = new Snapshot();
+
+    private final Execution execution = new Execution();
+
+    private final Transport transport = new Transport();
+
+    private final Metrics metrics = new Metrics();
+
+    @Data
+    public static class Cache {
+
+        private boolean enabled = true;
+
+        /**
+         * Upper bound on the estimated heap held by cached result pages.
+         */
+        private DataSize pagesMaxSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Maximum number of cached total-hit counts.
+         */
+        private long totalsMaxEntries = 100_000;
+
+        /**
+         * Safety net for writes that bypass the index generation counter.
+         */
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Coalesce {
+
+        /**
+         * Let identical concurrent searches share one backend call.
+         */
+        private boolean enabled = true;
+
+        /**
+         * How long a search waits for an identical one in flight before giving up
+         * with a 503.
+         */
+        private Duration maxWait = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Ingest {
+
+        /**
+         * What to do at startup: "if-empty" loads the source only into an empty
+         * index, "reindex" rebuilds the catalog into a fresh index and swaps it in,
+         * "skip" leaves the index alone.
+         */
+        private String mode = "if-empty";
+
+        /**
+         * Catalog loaded at startup; any Spring resource location (classpath:, file:, ...).
+         */
+        private String source = "classpath:sample-courses.json";
+
+        /**
+         * Maximum documents per bulk request.
+         */
+        private int batchSize = 1000;
+
+        /**
+         * Maximum source bytes per bulk request.
+         */
+        private DataSize batchBytes = DataSize.ofMegabytes(5);
+
+        /**
+         * Bulk requests in flight at once. Parsing blocks when all are busy.
+         */
+        private int concurrency = 4;
+
+        /**
+         * Retries for documents the engine rejected with 429 or 503.
+         */
+        private int maxRetries = 3;
+
+        /**
+         * Delay before the first retry, doubled on each further attempt.
+         */
+        private Duration retryBackoff = Duration.ofMillis(200);
+
+        /**
+         * Longest delay between two retries, however many attempts were made.
+         */
+        private Duration maxRetryBackoff = Duration.ofSeconds(30);
+
+        private Duration progressInterval = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Reindex {
+
+        /**
+         * Refresh interval restored on the new index once the bulk load is done.
+         * Refresh is disabled while loading.
+         */
+        private Duration refreshInterval = Duration.ofSeconds(1);
+
+        /**
+         * Replica count restored on the new index. Loading runs with zero replicas.
+         */
+        private int replicas = 1;
+
+        /**
+         * Segments the new index is force-merged down to before it goes live.
+         */
+        private int maxNumSegments = 1;
+
+        /**
+         * Previous versioned indices kept after a swap, for rollback.
+         */
+        private int retainPrevious = 1;
+    }
+
+    @Data
+    public static class Suggest {
+
+        /**
+         * Serve /api/suggest from an in-memory trie kept in step with the index.
+         * When off, or until the trie is first built, the backend answers instead.
+         */
+        private boolean inMemory = true;
+
+        /**
+         * Upper bound on the number of suggestions a request may ask for.
+         */
+        private int maxLimit = 20;
+    }
+
+    @Data
+    public static class Cursor {
+
+        /**
+         * How long a cursor walk keeps its point-in-time open between pages.
+         */
+        private Duration keepAlive = Duration.ofMinutes(1);
+
+        /**
+         * Most cursor walks the embedded engine keeps open; the least recently
+         * used one is closed beyond that.
+         */
+        private long maxOpen = 100;
+    }
+
+    @Data
+    public static class Facets {
+
+        /**
+         * Most values returned for the category and type facets.
+         */
+        private int maxTerms = 20;
+
+        /**
+         * Width of the price histogram buckets.
+         */
+        private double priceInterval = 50;
+
+        /**
+         * Inclusive age bands, written as from-to.
+         */
+        private List<String> ageBands = List.of("3-5", "6-8", "9-11", "12-14", "15-18");
+    }
+
+    @Data
+    public static class Ranking {
+
+        /**
+         * Distance from now, beyond the offset, at which sort=relevanceUpcoming
+         * multiplies a course's relevance by {@code upcoming-decay}.
+         */
+        private Duration upcomingScale = Duration.ofDays(14);
+
+        /**
+         * Sessions this close to now keep their full relevance.
+         */
+        private Duration upcomingOffset = Duration.ZERO;
+
+        private double upcomingDecay = 0.5;
+    }
+
+    @Data
+    public static class Matching {
+
+        /**
+         * Edits a query term may be off by: AUTO (none below 3 characters, one
+         * below 6, two from there), AUTO:low,high, or a fixed 0, 1 or 2.
+         */
+        private String fuzziness = "AUTO";
+
+        /**
+         * Leading characters of a query term a fuzzy match must have unchanged.
+         */
+        private int prefixLength = 1;
+
+        /**
+         * Most terms one fuzzy query term expands to per field.
+         */
+        private int maxExpansions = 50;
+
+        /**
+         * Also match query terms against the start of title words.
+         */
+        private boolean titlePrefixes = true;
+    }
+
+    @Data
+    public static class Batch {
+
+        /**
+         * Most searches one /api/search/batch request may carry.
+         */
+        private int maxSize = 50;
+    }
+
+    @Data
+    public static class Paging {
+
+        /**
+         * Largest page size a search may ask for.
+         */
+        private int maxSize = 100;
+    }
+
+    @Data
+    public static class Write {
+
+        /**
+         * How long course writes are buffered, coalescing repeated writes to the
+         * same course, before being flushed as one bulk request.
+         */
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        /**
+         * Buffered courses that trigger a flush before the interval is up.
+         */
+        private int maxBuffered = 1000;
+
+        /**
+         * Least time between two flushes started by "immediate" writes, so a
+         * stream of them costs the embedded engine one index rebuild per spacing
+         * rather than one per write.
+         */
+        private Duration immediateFlushSpacing = Duration.ofMillis(50);
+
+        /**
+         * How long the embedded engine keeps the version of a deleted course to
+         * reject late writes to it, as Elasticsearch's index.gc_deletes.
+         */
+        private Duration tombstoneRetention = Duration.ofSeconds(60);
+
+        /**
+         * Refresh mode used when a request does not name one: "immediate",
+         * "wait_for" or "async".
+         */
+        private String refresh = "wait_for";
+
+        /**
+         * Most courses one POST /api/courses/batch request may carry.
+         */
+        private int maxBatchSize = 1000;
+    }
+
+    @Data
+    public static class Retention {
+
+        /**
+         * How long after its next session a course stays in the catalog before it
+         * is retired in the background. Unset keeps past courses forever.
+         */
+        private Duration keepPast;
+
+        /**
+         * How often expired courses are looked for.
+         */
+        private Duration checkInterval = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Snapshot {
+
+        /**
+         * File the embedded index is written to after every change to the catalog
+         * and opened from at startup, unless the ingest source has changed since.
+         * Unset keeps the index in memory only.
+         */
+        private String path;
+    }
+
+    @Data
+    public static class Execution {
+
+        /**
+         * "async" runs /api/search on a bounded worker pool and frees the servlet
+         * thread while it waits; "direct" runs it on the servlet thread.
+         */
+        private String mode = "async";
+
+        /**
+         * Searches allowed in flight at once. Further searches get a 503 right away.
+         */
+        private int maxConcurrency = 64;
+
+        /**
+         * Time an async search may take before the request is answered with a 503.
+         */
+        private Duration deadline = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Transport {
+
+        /**
+         * Pooled connections to the cluster, across all nodes.
+         */
+        private int maxConnections = 100;
+
+        /**
+         * Pooled connections to any one node.
+         */
+        private int maxConnectionsPerRoute = 50;
+
+        /**
+         * How long an idle connection is kept for reuse, unless the server asks for less.
+         */
+        private Duration keepAlive = Duration.ofMinutes(1);
+
+        /**
+         * Gzip request bodies and accept gzipped responses.
+         */
+        private boolean compression = true;
+    }
+
+    @Data
+    public static class Metrics {
+
+        /**
+         * Log one in this many search requests at debug level.
+         */
+        private int requestLogSample = 100;
+    }
+}
@@ -1,18 +1,137 @@
 package com.noel.coursesearch.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.elasticsearch.ElasticsearchProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.elasticsearch.client.ClientConfiguration;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchClients;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchConfiguration;
 import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
 
+import java.net.URI;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Client for the nodes in {@code spring.elasticsearch.uris}. The low-level
+ * client spreads requests round-robin over them and takes a node out of the
+ * rotation, with growing back-off, while it fails. Connections come from a
+ * pool sized by {@code coursesearch.transport.*} and are reused for up to
+ * {@code keep-alive}; pool usage is published as
+ * {@code elasticsearch.client.connections} gauges.
+ */
 @Configuration
+@ConditionalOnProperty(prefix = "coursesearch", name = "backend", havingValue = "elasticsearch", matchIfMissing = true)
 @EnableElasticsearchRepositories(basePackages = "com.noel.coursesearch.repository")
+@RequiredArgsConstructor
 public class ElasticsearchConfig extends ElasticsearchConfiguration {
 
+    private final ElasticsearchProperties elasticsearchProperties;
+    private final CourseSearchProperties properties;
+
     @Override
     public ClientConfiguration clientConfiguration() {
-        return ClientConfiguration.builder()
-                .connectedTo("localhost:9200")
+        List<URI> uris = elasticsearchProperties.getUris().stream().map(ElasticsearchConfig::toUri).toList();
+        boolean secure = uris.stream().anyMatch(uri -> "https".equalsIgnoreCase(uri.getScheme()));
+        if (secure && !uris.stream().allMatch(uri -> "https".equalsIgnoreCase(uri.getScheme()))) {
+            throw new IllegalStateException("spring.elasticsearch.uris mixes http and https: " + uris);
+        }
+        String[] hosts = uris.stream()
+                .map(uri -> uri.getHost() + ":" + (uri.getPort() != -1 ? uri.getPort() : secure ? 443 : 80))
+                .toArray(String[]::new);
+
+        ClientConfiguration.MaybeSecureClientConfigurationBuilder endpoints = ClientConfiguration.builder().connectedTo(hosts);
+        ClientConfiguration.TerminalClientConfigurationBuilder builder = secure ? endpoints.usingSsl() : endpoints;
+        builder.withConnectTimeout(elasticsearchProperties.getConnectionTimeout())
+                .withSocketTimeout(elasticsearchProperties.getSocketTimeout());
+        if (elasticsearchProperties.getUsername() != null) {
+            builder.withBasicAuth(elasticsearchProperties.getUsername(), elasticsearchProperties.getPassword());
+        }
+        if (elasticsearchProperties.getPathPrefix() != null) {
+            builder.withPathPrefix(elasticsearchProperties.getPathPrefix());
+        }
+
+        CourseSearchProperties.Transport transport = properties.getTransport();
+        long keepAliveMillis = transport.getKeepAlive().toMillis();
+        PoolingNHttpClientConnectionManager connectionManager = elasticsearchConnectionManager();
+        builder.withClientConfigurer(ElasticsearchClients.ElasticsearchHttpClientConfigurationCallback.from(http -> http
+                .setConnectionManager(connectionManager)
+                // Honour a shorter keep-alive announced by the server
+                .setKeepAliveStrategy((response, context) -> {
+                    long announced = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return announced > 0 ? Math.min(announced, keepAliveMillis) : keepAliveMillis;
+                })));
+        // Gzips request bodies and asks for gzipped responses
+        builder.withClientConfigurer(ElasticsearchClients.ElasticsearchRestClientConfigurationCallback.from(rest -> rest
+                .setCompressionEnabled(transport.isCompression())));
+        return builder.build();
+    }
+
+    /**
+     * Accepts a bare {@code host:port}, as tooling such as Testcontainers hands out.
+     */
+    private static URI toUri(String uri) {
+        return URI.create(uri.contains("://") ? uri : "http://" + uri);
+    }
+
+    /**
+     * Connection pool of the client. Supplying it replaces the client's own
+     * pool, so TLS is set up here rather than by {@code usingSsl()}.
+     */
+    @Bean
+    public PoolingNHttpClientConnectionManager elasticsearchConnectionManager() {
+        CourseSearchProperties.Transport transport = properties.getTransport();
+        Registry<SchemeIOSessionStrategy> strategies = RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", SSLIOSessionStrategy.getSystemDefaultStrategy())
+                .build();
+        IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                .setSoKeepAlive(elasticsearchProperties.isSocketKeepAlive())
                 .build();
+        try {
+            PoolingNHttpClientConnectionManager connectionManager =
+                    new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig), strategies);
+            connectionManager.setMaxTotal(transport.getMaxConnections());
+            connectionManager.setDefaultMaxPerRoute(transport.getMaxConnectionsPerRoute());
+            return connectionManager;
+        } catch (IOReactorException e) {
+            throw new IllegalStateException("Failed to start the Elasticsearch I/O reactor", e);
+        }
+    }
+
+    @Bean
+    public MeterBinder elasticsearchConnectionPoolMetrics(PoolingNHttpClientConnectionManager connectionManager) {
+        return registry -> {
+            connectionGauge(registry, connectionManager, "leased", PoolStats::getLeased);
+            connectionGauge(registry, connectionManager, "pending", PoolStats::getPending);
+            connectionGauge(registry, connectionManager, "available", PoolStats::getAvailable);
+            Gauge.builder("elasticsearch.client.connections.max", connectionManager, pool -> pool.getTotalStats().getMax())
+                    .description("Upper bound on pooled Elasticsearch connections")
+                    .register(registry);
+        };
+    }
+
+    private static void connectionGauge(MeterRegistry registry, PoolingNHttpClientConnectionManager connectionManager,
+                                        String state, ToDoubleFunction<PoolStats> value) {
+        Gauge.builder("elasticsearch.client.connections", connectionManager, pool -> value.applyAsDouble(pool.getTotalStats()))
+                .tag("state", state)
+                .description("Pooled Elasticsearch connections by state")
+                .register(registry);
     }
-}
\ No newline at end of file
+}
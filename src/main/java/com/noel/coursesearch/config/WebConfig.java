@@ -0,0 +1,19 @@
+package com.noel.coursesearch.config;
+
+import com.noel.coursesearch.controller.SearchSerializationMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final SearchSerializationMetrics searchSerializationMetrics;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(searchSerializationMetrics).addPathPatterns("/api/search");
+    }
+}
@@ -1,27 +1,50 @@
 package com.noel.coursesearch.controller;
 
+import com.noel.coursesearch.backend.SearchMetrics;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.dto.BatchSearchResponse;
+import com.noel.coursesearch.dto.CountResponse;
 import com.noel.coursesearch.dto.SearchRequest;
 import com.noel.coursesearch.dto.SearchResponse;
+import com.noel.coursesearch.dto.SuggestRequest;
+import com.noel.coursesearch.dto.SuggestResponse;
 import com.noel.coursesearch.service.CourseSearchService;
-import lombok.RequiredArgsConstructor;
+import com.noel.coursesearch.service.SearchExecutor;
+import com.noel.coursesearch.service.SuggestService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 @RestController
 @RequestMapping("/api")
-@RequiredArgsConstructor
 @Slf4j
 public class CourseSearchController {
 
     private final CourseSearchService courseSearchService;
+    private final SuggestService suggestService;
+    private final SearchExecutor searchExecutor;
+    private final AtomicLong searchCount = new AtomicLong();
+    private final long requestLogSample;
+
+    public CourseSearchController(CourseSearchService courseSearchService, SuggestService suggestService,
+                                  SearchExecutor searchExecutor, CourseSearchProperties properties) {
+        this.courseSearchService = courseSearchService;
+        this.suggestService = suggestService;
+        this.searchExecutor = searchExecutor;
+        this.requestLogSample = Math.max(1, properties.getMetrics().getRequestLogSample());
+    }
 
     @GetMapping("/search")
-    public ResponseEntity<SearchResponse> searchCourses(
+    public CompletableFuture<ResponseEntity<SearchResponse>> searchCourses(
             @RequestParam(required = false) String q,
             @RequestParam(required = false) Integer minAge,
             @RequestParam(required = false) Integer maxAge,
@@ -32,17 +55,70 @@ public class CourseSearchController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startDate,
             @RequestParam(defaultValue = "upcoming") String sort,
             @RequestParam(defaultValue = "0") Integer page,
-            @RequestParam(defaultValue = "10") Integer size) {
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean facets,
+            @RequestParam(required = false) String totalHits,
+            @RequestParam(required = false) String fields) {
+
+        SearchRequest request = new SearchRequest(q, minAge, maxAge, category, type, minPrice, maxPrice, startDate, sort, page, size, cursor, facets, totalHits, fields);
 
-        log.info("Search request - q: {}, minAge: {}, maxAge: {}, category: {}, type: {}, minPrice: {}, maxPrice: {}, startDate: {}, sort: {}, page: {}, size: {}",
-                q, minAge, maxAge, category, type, minPrice, maxPrice, startDate, sort, page, size);
+        // Sampled, and the argument array is only built for the sampled ones
+        if (log.isDebugEnabled() && searchCount.getAndIncrement() % requestLogSample == 0) {
+            log.debug("Search request - q: {}, minAge: {}, maxAge: {}, category: {}, type: {}, minPrice: {}, maxPrice: {}, startDate: {}, sort: {}, page: {}, size: {}, cursor: {}, facets: {}, totalHits: {}, fields: {}",
+                    q, minAge, maxAge, category, type, minPrice, maxPrice, startDate, sort, page, size, cursor, facets, totalHits, fields);
+        }
+        RequestContextHolder.currentRequestAttributes()
+                .setAttribute(SearchMetrics.REQUEST_ATTRIBUTE, request, RequestAttributes.SCOPE_REQUEST);
+
+        return searchExecutor.submit(() -> courseSearchService.searchCourses(request))
+                .thenApply(ResponseEntity::ok);
+    }
 
-        SearchRequest request = new SearchRequest(q, minAge, maxAge, category, type, minPrice, maxPrice, startDate, sort, page, size);
-        SearchResponse response = courseSearchService.searchCourses(request);
+    @PostMapping("/search/batch")
+    public CompletableFuture<ResponseEntity<BatchSearchResponse>> searchBatch(@RequestBody List<SearchRequest> requests) {
+        if (log.isDebugEnabled() && searchCount.getAndIncrement() % requestLogSample == 0) {
+            log.debug("Batch search request - {} searches", requests.size());
+        }
 
-        return ResponseEntity.ok(response);
+        return searchExecutor.submit(requests.size(), () -> courseSearchService.searchBatch(requests))
+                .thenApply(ResponseEntity::ok);
     }
 
+    @GetMapping("/search/count")
+    public ResponseEntity<CountResponse> countCourses(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Integer minAge,
+            @RequestParam(required = false) Integer maxAge,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startDate) {
+
+        SearchRequest request = new SearchRequest();
+        request.setQ(q);
+        request.setMinAge(minAge);
+        request.setMaxAge(maxAge);
+        request.setCategory(category);
+        request.setType(type);
+        request.setMinPrice(minPrice);
+        request.setMaxPrice(maxPrice);
+        request.setStartDate(startDate);
+
+        return ResponseEntity.ok(new CountResponse(courseSearchService.countCourses(request)));
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<SuggestResponse> suggest(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "false") boolean fuzzy,
+            @RequestParam(required = false) String category,
+            @RequestParam(defaultValue = "5") Integer limit) {
+
+        SuggestRequest request = new SuggestRequest(prefix, fuzzy, category, limit);
+        return ResponseEntity.ok(suggestService.suggest(request));
+    }
 
     @GetMapping("/health")
     public ResponseEntity<String> health() {
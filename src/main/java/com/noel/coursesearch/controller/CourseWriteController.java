@@ -0,0 +1,60 @@
+package com.noel.coursesearch.controller;
+
+import com.noel.coursesearch.backend.WriteResult;
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.dto.BatchWriteResponse;
+import com.noel.coursesearch.dto.CourseUpsert;
+import com.noel.coursesearch.service.CourseWriteService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Incremental changes to the catalog. {@code version} guards a write against
+ * stale overwrites and {@code refresh} (immediate, wait_for or async) decides
+ * whether the response waits for the change to be searchable.
+ */
+@RestController
+@RequestMapping("/api/courses")
+@RequiredArgsConstructor
+@Slf4j
+public class CourseWriteController {
+
+    private final CourseWriteService courseWriteService;
+
+    @PutMapping("/{id}")
+    public CompletableFuture<ResponseEntity<WriteResult>> upsertCourse(
+            @PathVariable String id,
+            @RequestBody CourseDocument course,
+            @RequestParam(required = false) Long version,
+            @RequestParam(required = false) String refresh) {
+
+        return courseWriteService.upsert(id, course, version, refresh).thenApply(CourseWriteController::toResponse);
+    }
+
+    @DeleteMapping("/{id}")
+    public CompletableFuture<ResponseEntity<WriteResult>> deleteCourse(
+            @PathVariable String id,
+            @RequestParam(required = false) Long version,
+            @RequestParam(required = false) String refresh) {
+
+        return courseWriteService.delete(id, version, refresh).thenApply(CourseWriteController::toResponse);
+    }
+
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<BatchWriteResponse>> upsertBatch(
+            @RequestBody List<CourseUpsert> upserts,
+            @RequestParam(required = false) String refresh) {
+
+        log.info("Batch upsert request - {} courses", upserts.size());
+        return courseWriteService.upsertBatch(upserts, refresh).thenApply(ResponseEntity::ok);
+    }
+
+    private static ResponseEntity<WriteResult> toResponse(WriteResult result) {
+        return ResponseEntity.status(result.result().status()).body(result);
+    }
+}
@@ -0,0 +1,54 @@
+package com.noel.coursesearch.controller;
+
+import com.noel.coursesearch.backend.SearchMetrics;
+import com.noel.coursesearch.dto.SearchRequest;
+import com.noel.coursesearch.dto.SearchResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Records the {@link SearchMetrics.Stage#SERIALIZATION} stage of a search: from
+ * the moment its {@link SearchResponse} is handed to the message converter
+ * until the request completes, which covers writing the JSON to the client.
+ */
+@ControllerAdvice
+@RequiredArgsConstructor
+public class SearchSerializationMetrics implements ResponseBodyAdvice<Object>, AsyncHandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = SearchSerializationMetrics.class.getName() + ".start";
+
+    private final SearchMetrics searchMetrics;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body instanceof SearchResponse && request instanceof ServletServerHttpRequest servletRequest) {
+            servletRequest.getServletRequest().setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        return body;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(START_ATTRIBUTE) instanceof Long start
+                && request.getAttribute(SearchMetrics.REQUEST_ATTRIBUTE) instanceof SearchRequest searchRequest) {
+            searchMetrics.record(SearchMetrics.Stage.SERIALIZATION, searchRequest, System.nanoTime() - start);
+        }
+    }
+}
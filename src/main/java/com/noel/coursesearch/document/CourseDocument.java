@@ -15,18 +15,26 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(indexName = "courses")
-public class CourseDocument {
+// The settings keep segments in session date order, so upcoming-sorted and
+// date-bounded searches can stop early instead of visiting every past course,
+// and define the synonym and edge n-gram analyzers of the text fields
+@Setting(settingPath = CourseIndexSettings.PATH)
+public class CourseDocument implements CourseView {
 
     @Id
+    @Field(type = FieldType.Keyword)
     private String id;
 
-    @Field(type = FieldType.Text, analyzer = "standard")
+    // title.prefix matches the start of title words, for queries typed partially
+    @MultiField(
+            mainField = @Field(type = FieldType.Text, analyzer = "standard", searchAnalyzer = "course_search"),
+            otherFields = @InnerField(suffix = "prefix", type = FieldType.Text, analyzer = "course_prefix", searchAnalyzer = "standard"))
     private String title;
 
     @CompletionField
     private List<String> suggest;
 
-    @Field(type = FieldType.Text, analyzer = "standard")
+    @Field(type = FieldType.Text, analyzer = "standard", searchAnalyzer = "course_search")
     private String description;
 
     @Field(type = FieldType.Keyword)
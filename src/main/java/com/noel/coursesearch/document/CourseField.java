@@ -0,0 +1,80 @@
+package com.noel.coursesearch.document;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Course fields a search can project its hits onto with {@code fields=}.
+ */
+public enum CourseField {
+    ID("id", CourseView::getId),
+    TITLE("title", CourseView::getTitle),
+    SUGGEST("suggest", CourseView::getSuggest),
+    DESCRIPTION("description", CourseView::getDescription),
+    CATEGORY("category", CourseView::getCategory),
+    TYPE("type", CourseView::getType),
+    GRADE_RANGE("gradeRange", CourseView::getGradeRange),
+    MIN_AGE("minAge", CourseView::getMinAge),
+    MAX_AGE("maxAge", CourseView::getMaxAge),
+    PRICE("price", CourseView::getPrice),
+    NEXT_SESSION_DATE("nextSessionDate", CourseView::getNextSessionDate);
+
+    private final String fieldName;
+    private final Function<CourseView, Object> accessor;
+
+    CourseField(String fieldName, Function<CourseView, Object> accessor) {
+        this.fieldName = fieldName;
+        this.accessor = accessor;
+    }
+
+    /**
+     * Name of the field in JSON and in the index mapping.
+     */
+    public String fieldName() {
+        return fieldName;
+    }
+
+    public Object get(CourseView course) {
+        return accessor.apply(course);
+    }
+
+    /**
+     * Parses a comma-separated list such as {@code "title,price"}, or exclusions
+     * such as {@code "-description,-suggest"} which keep every other field.
+     * Unknown names are ignored, and {@code id} is always kept. Returns null,
+     * meaning the full document, when nothing usable was given.
+     */
+    public static Set<CourseField> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<CourseField> included = EnumSet.noneOf(CourseField.class);
+        Set<CourseField> excluded = EnumSet.noneOf(CourseField.class);
+        for (String token : fields.split(",")) {
+            String name = token.trim();
+            boolean exclude = name.startsWith("-");
+            CourseField field = byName(exclude ? name.substring(1).trim() : name);
+            if (field != null) {
+                (exclude ? excluded : included).add(field);
+            }
+        }
+        if (included.isEmpty() && excluded.isEmpty()) {
+            return null;
+        }
+        Set<CourseField> selected = included.isEmpty() ? EnumSet.allOf(CourseField.class) : included;
+        selected.removeAll(excluded);
+        selected.add(ID);
+        return selected.size() == values().length ? null : selected;
+    }
+
+    private static CourseField byName(String name) {
+        for (CourseField field : values()) {
+            if (field.fieldName.toLowerCase(Locale.ROOT).equals(name.toLowerCase(Locale.ROOT))) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.noel.coursesearch.document;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index settings of {@link CourseDocument}: the index sort and the analyzers
+ * its text fields are mapped with. The synonym rules are read from here by the
+ * embedded engine too, so both engines expand the same synonyms.
+ */
+public final class CourseIndexSettings {
+
+    public static final String PATH = "/elasticsearch/course-settings.json";
+
+    private static final String SYNONYMS = "/index/analysis/filter/course_synonyms/synonyms";
+
+    private CourseIndexSettings() {
+    }
+
+    /**
+     * Rules of the {@code course_synonyms} filter.
+     */
+    public static List<String> synonyms() {
+        try (InputStream in = CourseIndexSettings.class.getResourceAsStream(PATH)) {
+            if (in == null) {
+                throw new IllegalStateException(PATH + " is missing from the classpath");
+            }
+            List<String> rules = new ArrayList<>();
+            new ObjectMapper().readTree(in).at(SYNONYMS).forEach(rule -> rules.add(rule.asText()));
+            return rules;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + PATH, e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.noel.coursesearch.document;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * A course read from a filtered {@code _source}: only the projected fields are
+ * set, and only those are written out.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CourseProjection implements CourseView {
+
+    @Id
+    private String id;
+
+    private String title;
+
+    private List<String> suggest;
+
+    private String description;
+
+    private String category;
+
+    private CourseDocument.CourseType type;
+
+    private String gradeRange;
+
+    private Integer minAge;
+
+    private Integer maxAge;
+
+    private Double price;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_time)
+    private OffsetDateTime nextSessionDate;
+}
@@ -0,0 +1,33 @@
+package com.noel.coursesearch.document;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Read-only view of a course hit: either a full {@link CourseDocument} or a
+ * projection holding only the fields a search asked for, with the rest null.
+ */
+public interface CourseView {
+
+    String getId();
+
+    String getTitle();
+
+    List<String> getSuggest();
+
+    String getDescription();
+
+    String getCategory();
+
+    CourseDocument.CourseType getType();
+
+    String getGradeRange();
+
+    Integer getMinAge();
+
+    Integer getMaxAge();
+
+    Double getPrice();
+
+    OffsetDateTime getNextSessionDate();
+}
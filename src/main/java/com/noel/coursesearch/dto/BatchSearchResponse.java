@@ -0,0 +1,37 @@
+package com.noel.coursesearch.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchSearchResponse {
+    private List<Entry> responses;
+
+    /**
+     * Outcome of one search of the batch: a response, or an HTTP status and
+     * error message when that search failed.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Entry {
+        private int status;
+        private SearchResponse response;
+        private String error;
+
+        public static Entry ok(SearchResponse response) {
+            return new Entry(200, response, null);
+        }
+
+        public static Entry failed(int status, String error) {
+            return new Entry(status, null, error);
+        }
+    }
+}
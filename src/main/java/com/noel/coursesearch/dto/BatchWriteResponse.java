@@ -0,0 +1,15 @@
+package com.noel.coursesearch.dto;
+
+import com.noel.coursesearch.backend.WriteResult;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchWriteResponse {
+    private List<WriteResult> results;
+}
@@ -0,0 +1,18 @@
+package com.noel.coursesearch.dto;
+
+import com.noel.coursesearch.document.CourseDocument;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One course of a batch upsert, with the optional version that guards it
+ * against stale overwrites.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CourseUpsert {
+    private Long version;
+    private CourseDocument course;
+}
@@ -0,0 +1,101 @@
+package com.noel.coursesearch.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.document.CourseField;
+import com.noel.coursesearch.document.CourseView;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Projection of a course the embedded engine already holds. It keeps a
+ * reference to the indexed document instead of copying it, and is serialized
+ * by streaming the selected fields straight to the {@link JsonGenerator}.
+ */
+@JsonSerialize(using = ProjectedCourse.Writer.class)
+public record ProjectedCourse(CourseDocument course, Set<CourseField> fields) implements CourseView {
+
+    private Object field(CourseField field) {
+        return fields.contains(field) ? field.get(course) : null;
+    }
+
+    @Override
+    public String getId() {
+        return course.getId();
+    }
+
+    @Override
+    public String getTitle() {
+        return (String) field(CourseField.TITLE);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> getSuggest() {
+        return (List<String>) field(CourseField.SUGGEST);
+    }
+
+    @Override
+    public String getDescription() {
+        return (String) field(CourseField.DESCRIPTION);
+    }
+
+    @Override
+    public String getCategory() {
+        return (String) field(CourseField.CATEGORY);
+    }
+
+    @Override
+    public CourseDocument.CourseType getType() {
+        return (CourseDocument.CourseType) field(CourseField.TYPE);
+    }
+
+    @Override
+    public String getGradeRange() {
+        return (String) field(CourseField.GRADE_RANGE);
+    }
+
+    @Override
+    public Integer getMinAge() {
+        return (Integer) field(CourseField.MIN_AGE);
+    }
+
+    @Override
+    public Integer getMaxAge() {
+        return (Integer) field(CourseField.MAX_AGE);
+    }
+
+    @Override
+    public Double getPrice() {
+        return (Double) field(CourseField.PRICE);
+    }
+
+    @Override
+    public OffsetDateTime getNextSessionDate() {
+        return (OffsetDateTime) field(CourseField.NEXT_SESSION_DATE);
+    }
+
+    /**
+     * Writes the selected, non-null fields in declaration order. Values go
+     * through the configured serializers, so dates match full documents.
+     */
+    public static final class Writer extends JsonSerializer<ProjectedCourse> {
+        @Override
+        public void serialize(ProjectedCourse value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(value);
+            for (CourseField field : value.fields()) {
+                Object fieldValue = field.get(value.course());
+                if (fieldValue != null) {
+                    provider.defaultSerializeField(field.fieldName(), fieldValue, generator);
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+}
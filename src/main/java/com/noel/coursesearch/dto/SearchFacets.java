@@ -0,0 +1,42 @@
+package com.noel.coursesearch.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result counts per filter value. Each facet is counted with every filter
+ * applied except its own, so selecting a category still shows the counts of
+ * the other categories.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchFacets {
+    private Map<String, Long> category;
+    private Map<String, Long> type;
+    private List<Bucket> price;
+    private List<Bucket> age;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bucket {
+        private String key;
+        private double from;
+        private double to;
+        private long count;
+
+        public static Bucket of(double from, double to, long count) {
+            return new Bucket(format(from) + "-" + format(to), from, to, count);
+        }
+
+        private static String format(double value) {
+            return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        }
+    }
+}
@@ -22,4 +22,8 @@ public class SearchRequest {
     private String sort = "upcoming";
     private Integer page = 0;
     private Integer size = 10;
+    private String cursor;
+    private boolean facets;
+    private String totalHits;
+    private String fields;
 }
\ No newline at end of file
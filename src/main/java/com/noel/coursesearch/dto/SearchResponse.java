@@ -1,6 +1,7 @@
 package com.noel.coursesearch.dto;
 
-import com.noel.coursesearch.document.CourseDocument;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.noel.coursesearch.document.CourseView;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -12,8 +13,25 @@ import java.util.List;
 @AllArgsConstructor
 public class SearchResponse {
     private long total;
-    private List<CourseDocument> courses;
+    private String totalRelation = "eq";
+    private List<? extends CourseView> courses;
     private int page;
     private int size;
     private int totalPages;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SearchFacets facets;
+
+    public static SearchResponse of(long total, List<? extends CourseView> courses, int page, int size) {
+        return of(total, "eq", courses, page, size);
+    }
+
+    /**
+     * With {@code totalRelation} "gte", {@code total} and {@code totalPages} are lower bounds.
+     */
+    public static SearchResponse of(long total, String totalRelation, List<? extends CourseView> courses, int page, int size) {
+        int totalPages = (int) Math.ceil((double) total / size);
+        return new SearchResponse(total, totalRelation, courses, page, size, totalPages, null, null);
+    }
 }
\ No newline at end of file
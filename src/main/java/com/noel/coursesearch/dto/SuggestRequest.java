@@ -0,0 +1,15 @@
+package com.noel.coursesearch.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestRequest {
+    private String prefix;
+    private boolean fuzzy;
+    private String category;
+    private Integer limit = 5;
+}
@@ -0,0 +1,22 @@
+package com.noel.coursesearch.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestResponse {
+    private List<Suggestion> suggestions;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Suggestion {
+        private String text;
+        private int weight;
+    }
+}
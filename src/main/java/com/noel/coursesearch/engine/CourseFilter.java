@@ -0,0 +1,73 @@
+package com.noel.coursesearch.engine;
+
+import com.noel.coursesearch.backend.SortMode;
+import com.noel.coursesearch.dto.SearchRequest;
+
+/**
+ * The non-text part of a search request, resolved once per request. Null
+ * components mean "no constraint".
+ */
+public record CourseFilter(
+        Integer minAge,
+        Integer maxAge,
+        String category,
+        String type,
+        Double minPrice,
+        Double maxPrice,
+        Long startDateMillis) {
+
+    public static CourseFilter from(SearchRequest request) {
+        return new CourseFilter(
+                request.getMinAge(),
+                request.getMaxAge(),
+                blankToNull(request.getCategory()),
+                blankToNull(request.getType()),
+                request.getMinPrice(),
+                request.getMaxPrice(),
+                request.getStartDate() == null ? null : request.getStartDate().toInstant().toEpochMilli());
+    }
+
+    /**
+     * The request's filter, limited to sessions from {@code now} on when it ranks
+     * by {@link SortMode#RELEVANCE_UPCOMING}.
+     */
+    public static CourseFilter from(SearchRequest request, long now) {
+        CourseFilter filter = from(request);
+        return SortMode.from(request.getSort()) == SortMode.RELEVANCE_UPCOMING ? filter.notBefore(now) : filter;
+    }
+
+    public boolean isEmpty() {
+        return minAge == null && maxAge == null && category == null && type == null
+                && minPrice == null && maxPrice == null && startDateMillis == null;
+    }
+
+    // Facets are counted with every filter but their own
+
+    public CourseFilter withoutCategory() {
+        return new CourseFilter(minAge, maxAge, null, type, minPrice, maxPrice, startDateMillis);
+    }
+
+    public CourseFilter withoutType() {
+        return new CourseFilter(minAge, maxAge, category, null, minPrice, maxPrice, startDateMillis);
+    }
+
+    public CourseFilter withoutPrice() {
+        return new CourseFilter(minAge, maxAge, category, type, null, null, startDateMillis);
+    }
+
+    public CourseFilter withoutAge() {
+        return new CourseFilter(null, null, category, type, minPrice, maxPrice, startDateMillis);
+    }
+
+    /**
+     * This filter, also dropping courses whose next session is before {@code millis}.
+     */
+    public CourseFilter notBefore(long millis) {
+        long start = startDateMillis == null ? millis : Math.max(startDateMillis, millis);
+        return new CourseFilter(minAge, maxAge, category, type, minPrice, maxPrice, start);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,13 @@
+package com.noel.coursesearch.engine;
+
+/**
+ * One page of matching doc ids, in sort order, plus the total number of matches.
+ * {@code lastSortKey} is the sort key of the last doc on the page, to be passed
+ * to {@link CourseSearcher#searchAfter} for the next page.
+ */
+public record CourseHits(long total, int[] docs, long lastSortKey) {
+
+    public CourseHits(long total, int[] docs) {
+        this(total, docs, CourseSearcher.FIRST_PAGE);
+    }
+}
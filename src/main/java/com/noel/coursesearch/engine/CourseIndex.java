@@ -0,0 +1,213 @@
+package com.noel.coursesearch.engine;
+
+import com.noel.coursesearch.document.CourseDocument;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable view of the course catalog. Text fields are held as inverted
+ * indexes, everything that is filtered or sorted on is held as a primitive
+ * column indexed by doc id, and the orderings used by the sort modes, with
+ * their ranks, are precomputed so a search never has to compare documents.
+ * <p>
+ * An index is either built from documents, in which case its buffers wrap heap
+ * arrays, or opened from an {@link IndexSnapshot}, in which case they are views
+ * of the mapped file and the documents are decoded one at a time when asked for.
+ */
+public final class CourseIndex {
+
+    static final int MISSING_INT = Integer.MIN_VALUE;
+    static final long MISSING_LONG = Long.MIN_VALUE;
+    static final int NO_ORDINAL = -1;
+
+    // Same bounds as the course_edge_ngram filter of the Elasticsearch index
+    private static final int PREFIX_MIN_GRAM = 2;
+    private static final int PREFIX_MAX_GRAM = 15;
+
+    private static final CourseIndex EMPTY = build(List.of());
+
+    private final int size;
+    private final IntFunction<CourseDocument> documents;
+
+    final IntBuffer minAges;
+    final IntBuffer maxAges;
+    final DoubleBuffer prices;
+    final LongBuffer sessionDates;
+    final IntBuffer categoryOrdinals;
+    final IntBuffer typeOrdinals;
+    private final Map<String, Integer> categoryDictionary;
+    private final String[] categoryNames;
+
+    final TextField title;
+    final TextField description;
+    // Edge n-grams of the title words, as the title.prefix field is analyzed
+    final TextField titlePrefix;
+    final FilterIndex filters;
+
+    // Doc ids in sort order, and the inverse (position of each doc in that order)
+    final IntBuffer upcomingOrder;
+    final IntBuffer upcomingRanks;
+    final IntBuffer priceAscOrder;
+    final IntBuffer priceAscRanks;
+    final IntBuffer priceDescOrder;
+    final IntBuffer priceDescRanks;
+
+    /**
+     * Assembles an index from its parts, which are used as they are.
+     */
+    CourseIndex(int size, IntFunction<CourseDocument> documents, IntBuffer minAges, IntBuffer maxAges, DoubleBuffer prices,
+                LongBuffer sessionDates, IntBuffer categoryOrdinals, IntBuffer typeOrdinals, String[] categoryNames,
+                TextField title, TextField description, TextField titlePrefix,
+                SortOrder upcoming, SortOrder priceAsc, SortOrder priceDesc, FilterIndex.ValueOrders valueOrders) {
+        this.size = size;
+        this.documents = documents;
+        this.minAges = minAges;
+        this.maxAges = maxAges;
+        this.prices = prices;
+        this.sessionDates = sessionDates;
+        this.categoryOrdinals = categoryOrdinals;
+        this.typeOrdinals = typeOrdinals;
+        this.categoryNames = categoryNames;
+        this.categoryDictionary = new HashMap<>(categoryNames.length * 2);
+        for (int ordinal = 0; ordinal < categoryNames.length; ordinal++) {
+            categoryDictionary.put(categoryNames[ordinal], ordinal);
+        }
+        this.title = title;
+        this.description = description;
+        this.titlePrefix = titlePrefix;
+        this.upcomingOrder = upcoming.docs();
+        this.upcomingRanks = upcoming.ranks();
+        this.priceAscOrder = priceAsc.docs();
+        this.priceAscRanks = priceAsc.ranks();
+        this.priceDescOrder = priceDesc.docs();
+        this.priceDescRanks = priceDesc.ranks();
+
+        this.filters = new FilterIndex(this, valueOrders);
+    }
+
+    public static CourseIndex empty() {
+        return EMPTY;
+    }
+
+    public static CourseIndex build(Collection<CourseDocument> courses) {
+        CourseDocument[] documents = courses.toArray(new CourseDocument[0]);
+        int size = documents.length;
+        int[] minAges = new int[size];
+        int[] maxAges = new int[size];
+        double[] prices = new double[size];
+        long[] sessionDates = new long[size];
+        int[] categoryOrdinals = new int[size];
+        int[] typeOrdinals = new int[size];
+        Map<String, Integer> categoryDictionary = new HashMap<>();
+
+        String[] titles = new String[size];
+        String[] descriptions = new String[size];
+        for (int doc = 0; doc < size; doc++) {
+            CourseDocument course = documents[doc];
+            minAges[doc] = course.getMinAge() == null ? MISSING_INT : course.getMinAge();
+            maxAges[doc] = course.getMaxAge() == null ? MISSING_INT : course.getMaxAge();
+            prices[doc] = course.getPrice() == null ? Double.NaN : course.getPrice();
+            sessionDates[doc] = course.getNextSessionDate() == null
+                    ? MISSING_LONG
+                    : course.getNextSessionDate().toInstant().toEpochMilli();
+            categoryOrdinals[doc] = course.getCategory() == null
+                    ? NO_ORDINAL
+                    : categoryDictionary.computeIfAbsent(course.getCategory(), c -> categoryDictionary.size());
+            typeOrdinals[doc] = course.getType() == null ? NO_ORDINAL : course.getType().ordinal();
+            titles[doc] = course.getTitle();
+            descriptions[doc] = course.getDescription();
+        }
+
+        String[] categoryNames = new String[categoryDictionary.size()];
+        categoryDictionary.forEach((category, ordinal) -> categoryNames[ordinal] = category);
+
+        return new CourseIndex(size, doc -> documents[doc], IntBuffer.wrap(minAges), IntBuffer.wrap(maxAges),
+                DoubleBuffer.wrap(prices), LongBuffer.wrap(sessionDates),
+                IntBuffer.wrap(categoryOrdinals), IntBuffer.wrap(typeOrdinals), categoryNames,
+                TextField.build(titles, 2.0f),
+                TextField.build(descriptions, 1.0f),
+                TextField.build(titles, 1.0f, title -> TextAnalyzer.edgeNGrams(title, PREFIX_MIN_GRAM, PREFIX_MAX_GRAM)),
+                order(size, (a, b) -> Long.compare(sessionDates[a], sessionDates[b]), doc -> sessionDates[doc] == MISSING_LONG),
+                order(size, (a, b) -> Double.compare(prices[a], prices[b]), doc -> Double.isNaN(prices[doc])),
+                order(size, (a, b) -> Double.compare(prices[b], prices[a]), doc -> Double.isNaN(prices[doc])),
+                FilterIndex.ValueOrders.build(minAges, maxAges, categoryOrdinals, typeOrdinals));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CourseDocument document(int doc) {
+        return documents.apply(doc);
+    }
+
+    /**
+     * First position in {@link #upcomingOrder} whose session is at or after
+     * {@code millis}. Everything before it is in the past of that instant, so a
+     * date-bounded walk in upcoming order starts here.
+     */
+    int upcomingRankAtLeast(long millis) {
+        int low = 0;
+        int high = upcomingOrder.limit();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long date = sessionDates.get(upcomingOrder.get(mid));
+            // Docs without a date sort last
+            if (date != MISSING_LONG && date < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Ordinal of {@code category} in this index, or {@link #NO_ORDINAL} if no course has it.
+     */
+    int categoryOrdinal(String category) {
+        return categoryDictionary.getOrDefault(category, NO_ORDINAL);
+    }
+
+    String categoryName(int ordinal) {
+        return categoryNames[ordinal];
+    }
+
+    int categoryCount() {
+        return categoryNames.length;
+    }
+
+    /**
+     * Sorts doc ids by {@code comparator}, with docs that have no value last in
+     * either direction (as Elasticsearch does) and ties broken by doc id.
+     */
+    private static SortOrder order(int size, Comparator<Integer> comparator, IntPredicate missing) {
+        Comparator<Integer> missingLast = Comparator.comparing(missing::test);
+        int[] order = IntStream.range(0, size)
+                .boxed()
+                .sorted(missingLast.thenComparing(comparator).thenComparing(Comparator.naturalOrder()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        int[] ranks = new int[size];
+        for (int rank = 0; rank < size; rank++) {
+            ranks[order[rank]] = rank;
+        }
+        return new SortOrder(IntBuffer.wrap(order), IntBuffer.wrap(ranks));
+    }
+
+    /**
+     * Doc ids in one sort order, and the inverse: the position of each doc in it.
+     */
+    record SortOrder(IntBuffer docs, IntBuffer ranks) {
+    }
+}
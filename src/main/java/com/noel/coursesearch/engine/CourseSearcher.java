@@ -0,0 +1,580 @@
+package com.noel.coursesearch.engine;
+
+import com.noel.coursesearch.backend.SortMode;
+import com.noel.coursesearch.backend.TotalHitsMode;
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.dto.SearchFacets;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Executes searches against a {@link CourseIndex}. Mirrors the bool query built
+ * for Elasticsearch: the text clause is a best-fields multi_match over
+ * {@code title^2.0} and {@code description^1.0}, and every other criterion is a
+ * non-scoring filter resolved through the index's {@link FilterIndex}.
+ * <p>
+ * {@link SortMode#RELEVANCE_UPCOMING} ranks by the text score times a
+ * {@link TimeDecay} of the next session date, like a {@code function_score}
+ * with a gauss function; callers exclude past sessions through the filter.
+ * Scored pages are collected with a bounded heap of the best
+ * {@code from + size} matches, so only those are ever sorted.
+ * <p>
+ * A {@link QueryExpansion} widens each query term to its synonyms and their
+ * fuzzy matches in each field, and adds a clause matching the terms against
+ * prefixes of title words, summed with the multi_match score as a bool
+ * {@code should} would.
+ */
+public final class CourseSearcher {
+
+    // Filters matching fewer than 1 in this many docs are ranked rather than walked
+    private static final int NARROW_FILTER_RATIO = 16;
+
+    /**
+     * Sort key to pass to {@link #searchAfter} for the first page.
+     */
+    public static final long FIRST_PAGE = -1;
+
+    private final CourseIndex index;
+    private final TimeDecay upcomingDecay;
+    private final QueryExpansion expansion;
+
+    // Scores of the last text searched, so facets reuse the scoring pass of the
+    // search they belong to. A searcher serves a single request.
+    private String lastScoredText;
+    private float[] lastScores;
+
+    public CourseSearcher(CourseIndex index) {
+        this(index, null);
+    }
+
+    /**
+     * @param upcomingDecay applied for {@link SortMode#RELEVANCE_UPCOMING}; without
+     *                      one that mode ranks by the text score alone
+     */
+    public CourseSearcher(CourseIndex index, TimeDecay upcomingDecay) {
+        this(index, upcomingDecay, QueryExpansion.NONE);
+    }
+
+    public CourseSearcher(CourseIndex index, TimeDecay upcomingDecay, QueryExpansion expansion) {
+        this.index = index;
+        this.upcomingDecay = upcomingDecay;
+        this.expansion = expansion;
+    }
+
+    public CourseHits search(String text, CourseFilter filter, SortMode sortMode, int from, int size) {
+        return search(text, filter, sortMode, from, size, TotalHitsMode.EXACT);
+    }
+
+    /**
+     * Like {@link #search(String, CourseFilter, SortMode, int, int)}, counting
+     * matches only as far as {@code totalHits} needs: past its limit, the
+     * returned total is only known to be above it.
+     */
+    public CourseHits search(String text, CourseFilter filter, SortMode sortMode, int from, int size,
+                             TotalHitsMode totalHits) {
+        boolean filterOnly = text == null || text.trim().isEmpty();
+        if (filterOnly && sortMode != SortMode.RELEVANCE && !totalHits.isExact()) {
+            CourseHits hits = walkOrder(filter, sortMode, from, size, totalHits);
+            if (hits != null) {
+                return hits;
+            }
+        }
+        BitSet filterBits = filterBits(filter);
+
+        if (filterOnly) {
+            // Filter-only: the bitset is the whole answer, no scoring needed. The
+            // decay falls with the session date, so relevanceUpcoming is upcoming order.
+            int total = filterBits == null ? index.size() : filterBits.cardinality();
+            int[] page = sortMode == SortMode.RELEVANCE
+                    ? pageByDocId(filterBits, from, size)
+                    : pageByOrder(filterBits, total, sortMode, firstRank(filter, sortMode), from, size);
+            return new CourseHits(total, page);
+        }
+
+        float[] scores = score(text);
+        int[] matches = new int[index.size()];
+        int matchCount = 0;
+        for (int doc = 0; doc < scores.length; doc++) {
+            if (scores[doc] > 0 && (filterBits == null || filterBits.get(doc))) {
+                matches[matchCount++] = doc;
+            }
+        }
+
+        int[] page = sortMode.isScored()
+                ? pageByScore(matches, matchCount, scores, sortMode, from, size)
+                : pageByRank(matches, matchCount, sortMode, from, size);
+        return new CourseHits(matchCount, page);
+    }
+
+    /**
+     * Number of matches, without ranking or paging them.
+     */
+    public long count(String text, CourseFilter filter) {
+        BitSet filterBits = filterBits(filter);
+        if (text == null || text.trim().isEmpty()) {
+            return filterBits == null ? index.size() : filterBits.cardinality();
+        }
+        float[] scores = score(text);
+        long count = 0;
+        for (int doc = nextDoc(filterBits, 0); doc >= 0; doc = nextDoc(filterBits, doc + 1)) {
+            if (scores[doc] > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the {@code size} matches that sort right after {@code after}, the
+     * {@link CourseHits#lastSortKey()} of the previous page. Every sort mode maps
+     * each doc to a non-negative long that increases in sort order (its rank in
+     * the precomputed order, its doc id, or its inverted score key), so a page
+     * starts where the last one ended instead of skipping over everything before
+     * it. Keys only stay meaningful against the same {@link CourseIndex}.
+     */
+    public CourseHits searchAfter(String text, CourseFilter filter, SortMode sortMode, long after, int size) {
+        BitSet filterBits = filterBits(filter);
+
+        if (text == null || text.trim().isEmpty()) {
+            int total = filterBits == null ? index.size() : filterBits.cardinality();
+            if (sortMode == SortMode.RELEVANCE) {
+                int[] page = new int[size];
+                int count = 0;
+                for (int doc = nextDoc(filterBits, (int) after + 1); doc >= 0 && count < size; doc = nextDoc(filterBits, doc + 1)) {
+                    page[count++] = doc;
+                }
+                return cursorPage(total, Arrays.copyOf(page, count), after, doc -> doc);
+            }
+            IntBuffer ranks = ranks(sortMode);
+            if (filterBits != null && (long) total * NARROW_FILTER_RATIO < index.size()) {
+                long[] keys = new long[total];
+                int count = 0;
+                for (int doc = filterBits.nextSetBit(0); doc >= 0; doc = filterBits.nextSetBit(doc + 1)) {
+                    if (ranks.get(doc) > after) {
+                        keys[count++] = ranks.get(doc);
+                    }
+                }
+                return cursorPage(total, smallest(keys, count, size, key -> order(sortMode).get((int) key)), after, doc -> ranks.get(doc));
+            }
+            IntBuffer order = order(sortMode);
+            int[] page = new int[size];
+            int count = 0;
+            for (int rank = Math.max((int) after + 1, firstRank(filter, sortMode)); rank < order.limit() && count < size; rank++) {
+                if (filterBits == null || filterBits.get(order.get(rank))) {
+                    page[count++] = order.get(rank);
+                }
+            }
+            return cursorPage(total, Arrays.copyOf(page, count), after, doc -> ranks.get(doc));
+        }
+
+        float[] scores = score(text);
+        IntBuffer ranks = sortMode.isScored() ? null : ranks(sortMode);
+        LongUnaryOperator sortKey = ranks == null
+                ? doc -> scoreSortKey(rankScore(scores, (int) doc, sortMode), (int) doc)
+                : doc -> ranks.get((int) doc);
+        long[] keys = new long[index.size()];
+        int total = 0;
+        int count = 0;
+        for (int doc = 0; doc < scores.length; doc++) {
+            if (scores[doc] > 0 && (filterBits == null || filterBits.get(doc))) {
+                total++;
+                long key = sortKey.applyAsLong(doc);
+                if (key > after) {
+                    keys[count++] = key;
+                }
+            }
+        }
+        LongUnaryOperator keyToDoc = ranks == null
+                ? key -> Integer.MAX_VALUE - (int) (Long.MAX_VALUE - key)
+                : key -> order(sortMode).get((int) key);
+        return cursorPage(total, smallest(keys, count, size, keyToDoc), after, sortKey::applyAsLong);
+    }
+
+    /**
+     * Counts {@link SearchFacets} over the docs matching {@code text}, applying
+     * every part of {@code filter} except the one each facet is about.
+     */
+    public SearchFacets facets(String text, CourseFilter filter, FacetSpec spec) {
+        float[] scores = text == null || text.trim().isEmpty() ? null : score(text);
+
+        long[] categoryCounts = new long[index.categoryCount()];
+        forEachMatch(scores, filter.withoutCategory(), doc -> {
+            if (index.categoryOrdinals.get(doc) != CourseIndex.NO_ORDINAL) {
+                categoryCounts[index.categoryOrdinals.get(doc)]++;
+            }
+        });
+        CourseDocument.CourseType[] types = CourseDocument.CourseType.values();
+        long[] typeCounts = new long[types.length];
+        forEachMatch(scores, filter.withoutType(), doc -> {
+            if (index.typeOrdinals.get(doc) != CourseIndex.NO_ORDINAL) {
+                typeCounts[index.typeOrdinals.get(doc)]++;
+            }
+        });
+        TreeMap<Long, Long> priceCounts = new TreeMap<>();
+        forEachMatch(scores, filter.withoutPrice(), doc -> {
+            if (!Double.isNaN(index.prices.get(doc))) {
+                priceCounts.merge((long) Math.floor(index.prices.get(doc) / spec.priceInterval()), 1L, Long::sum);
+            }
+        });
+        List<FacetSpec.AgeBand> bands = spec.ageBands();
+        long[] ageCounts = new long[bands.size()];
+        forEachMatch(scores, filter.withoutAge(), doc -> {
+            int minAge = index.minAges.get(doc);
+            int maxAge = index.maxAges.get(doc);
+            if (minAge != CourseIndex.MISSING_INT && maxAge != CourseIndex.MISSING_INT) {
+                for (int band = 0; band < ageCounts.length; band++) {
+                    if (maxAge >= bands.get(band).from() && minAge <= bands.get(band).to()) {
+                        ageCounts[band]++;
+                    }
+                }
+            }
+        });
+
+        // Histogram buckets run from the lowest to the highest price, empty ones
+        // included, as in an Elasticsearch histogram
+        List<SearchFacets.Bucket> price = new ArrayList<>();
+        if (!priceCounts.isEmpty()) {
+            for (long bucket = priceCounts.firstKey(); bucket <= priceCounts.lastKey(); bucket++) {
+                price.add(SearchFacets.Bucket.of(bucket * spec.priceInterval(), (bucket + 1) * spec.priceInterval(),
+                        priceCounts.getOrDefault(bucket, 0L)));
+            }
+        }
+        List<SearchFacets.Bucket> age = new ArrayList<>(bands.size());
+        for (int band = 0; band < bands.size(); band++) {
+            age.add(SearchFacets.Bucket.of(bands.get(band).from(), bands.get(band).to(), ageCounts[band]));
+        }
+        return new SearchFacets(
+                topTerms(categoryCounts, index::categoryName, spec.maxTerms()),
+                topTerms(typeCounts, ordinal -> types[ordinal].name(), spec.maxTerms()),
+                price,
+                age);
+    }
+
+    private void forEachMatch(float[] scores, CourseFilter filter, IntConsumer action) {
+        BitSet filterBits = filterBits(filter);
+        for (int doc = nextDoc(filterBits, 0); doc >= 0; doc = nextDoc(filterBits, doc + 1)) {
+            if (scores == null || scores[doc] > 0) {
+                action.accept(doc);
+            }
+        }
+    }
+
+    /**
+     * Non-zero counts, highest first and then by name, like a terms aggregation.
+     */
+    private static Map<String, Long> topTerms(long[] counts, IntFunction<String> names, int maxTerms) {
+        Map<String, Long> terms = new LinkedHashMap<>();
+        IntStream.range(0, counts.length)
+                .filter(ordinal -> counts[ordinal] > 0)
+                .boxed()
+                .sorted(Comparator.<Integer>comparingLong(ordinal -> -counts[ordinal])
+                        .thenComparing(names::apply))
+                .limit(maxTerms)
+                .forEach(ordinal -> terms.put(names.apply(ordinal), counts[ordinal]));
+        return terms;
+    }
+
+    /**
+     * Docs passing {@code filter}, or null when it has no criteria (every doc passes).
+     */
+    private BitSet filterBits(CourseFilter filter) {
+        if (filter.isEmpty()) {
+            return null;
+        }
+        int categoryOrdinal = filter.category() == null ? CourseIndex.NO_ORDINAL : index.categoryOrdinal(filter.category());
+        int typeOrdinal = filter.type() == null ? CourseIndex.NO_ORDINAL : typeOrdinal(filter.type());
+        return index.filters.filter(filter, categoryOrdinal, typeOrdinal);
+    }
+
+    /**
+     * Best-fields scoring: each field sums its term scores and the doc keeps the
+     * best boosted field score.
+     */
+    private float[] score(String text) {
+        if (text.equals(lastScoredText)) {
+            return lastScores;
+        }
+        List<String> terms = TextAnalyzer.tokenize(text);
+        float[] titleScores = new float[index.size()];
+        float[] descriptionScores = new float[index.size()];
+        float[] best = new float[index.size()];
+        for (String term : terms) {
+            List<FuzzyTerm> alternatives = expansion.compile(term);
+            index.title.score(index.title.expand(alternatives, expansion.maxExpansions()), titleScores, best);
+            index.description.score(index.description.expand(alternatives, expansion.maxExpansions()), descriptionScores, best);
+        }
+        for (int doc = 0; doc < titleScores.length; doc++) {
+            titleScores[doc] = Math.max(titleScores[doc], descriptionScores[doc]);
+        }
+        if (expansion.titlePrefixes()) {
+            for (String term : terms) {
+                index.titlePrefix.score(term, titleScores);
+            }
+        }
+        lastScoredText = text;
+        lastScores = titleScores;
+        return titleScores;
+    }
+
+    private static int typeOrdinal(String type) {
+        for (CourseDocument.CourseType courseType : CourseDocument.CourseType.values()) {
+            if (courseType.name().equals(type)) {
+                return courseType.ordinal();
+            }
+        }
+        return CourseIndex.NO_ORDINAL;
+    }
+
+    /**
+     * Filter-only page in sort order. Broad filters walk the precomputed order
+     * from {@code firstRank} and stop once the page is full; narrow ones rank
+     * their few matches instead of walking past a long run of non-matching docs.
+     */
+    private int[] pageByOrder(BitSet filterBits, int total, SortMode sortMode, int firstRank, int from, int size) {
+        int end = Math.min(total, from + size);
+        if (from >= end) {
+            return new int[0];
+        }
+
+        if (filterBits != null && (long) total * NARROW_FILTER_RATIO < index.size()) {
+            int[] matches = new int[total];
+            int i = 0;
+            for (int doc = filterBits.nextSetBit(0); doc >= 0; doc = filterBits.nextSetBit(doc + 1)) {
+                matches[i++] = doc;
+            }
+            return pageByRank(matches, total, sortMode, from, size);
+        }
+
+        IntBuffer order = order(sortMode);
+        int[] page = new int[end - from];
+        int seen = 0;
+        for (int rank = firstRank; rank < order.limit() && seen < end; rank++) {
+            int doc = order.get(rank);
+            if (filterBits == null || filterBits.get(doc)) {
+                if (seen >= from) {
+                    page[seen - from] = doc;
+                }
+                seen++;
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Filter-only page in sort order when the total need not be exact. Walks the
+     * precomputed order testing each doc's columns, and stops once the page is
+     * full and the count has passed the {@code totalHits} limit, without resolving
+     * the filter to a bitset. Returns null if the walk passes too many
+     * non-matching docs, where resolving a narrow filter is cheaper.
+     */
+    private CourseHits walkOrder(CourseFilter filter, SortMode sortMode, int from, int size, TotalHitsMode totalHits) {
+        long needed = Math.max((long) from + size, totalHits.isNone() ? 0 : (long) totalHits.limit() + 1);
+        long budget = needed * NARROW_FILTER_RATIO;
+        int categoryOrdinal = filter.category() == null ? CourseIndex.NO_ORDINAL : index.categoryOrdinal(filter.category());
+        int typeOrdinal = filter.type() == null ? CourseIndex.NO_ORDINAL : typeOrdinal(filter.type());
+
+        IntBuffer order = order(sortMode);
+        int[] page = new int[size];
+        int count = 0;
+        long seen = 0;
+        long walked = 0;
+        for (int rank = firstRank(filter, sortMode); rank < order.limit() && seen < needed; rank++) {
+            if (walked++ == budget) {
+                return null;
+            }
+            int doc = order.get(rank);
+            if (matches(doc, filter, categoryOrdinal, typeOrdinal)) {
+                if (seen >= from && count < size) {
+                    page[count++] = doc;
+                }
+                seen++;
+            }
+        }
+        return new CourseHits(seen, Arrays.copyOf(page, count));
+    }
+
+    /**
+     * Whether {@code doc} passes {@code filter}, checked against its columns with
+     * the same semantics as {@link FilterIndex#filter}.
+     */
+    private boolean matches(int doc, CourseFilter filter, int categoryOrdinal, int typeOrdinal) {
+        if (filter.category() != null && (categoryOrdinal < 0 || index.categoryOrdinals.get(doc) != categoryOrdinal)) {
+            return false;
+        }
+        if (filter.type() != null && (typeOrdinal < 0 || index.typeOrdinals.get(doc) != typeOrdinal)) {
+            return false;
+        }
+        if (filter.minAge() != null && (index.maxAges.get(doc) == CourseIndex.MISSING_INT || index.maxAges.get(doc) < filter.minAge())) {
+            return false;
+        }
+        if (filter.maxAge() != null && (index.minAges.get(doc) == CourseIndex.MISSING_INT || index.minAges.get(doc) > filter.maxAge())) {
+            return false;
+        }
+        double price = index.prices.get(doc);
+        if ((filter.minPrice() != null || filter.maxPrice() != null) && (Double.isNaN(price)
+                || (filter.minPrice() != null && price < filter.minPrice())
+                || (filter.maxPrice() != null && price > filter.maxPrice()))) {
+            return false;
+        }
+        long sessionDate = index.sessionDates.get(doc);
+        return filter.startDateMillis() == null
+                || (sessionDate != CourseIndex.MISSING_LONG && sessionDate >= filter.startDateMillis());
+    }
+
+    /**
+     * Where a walk of the precomputed order can start. In upcoming order every
+     * doc before the filter's start date is a non-match, however much history
+     * the catalog holds, so the walk jumps past all of them.
+     */
+    private int firstRank(CourseFilter filter, SortMode sortMode) {
+        if (filter.startDateMillis() == null || order(sortMode) != index.upcomingOrder) {
+            return 0;
+        }
+        return index.upcomingRankAtLeast(filter.startDateMillis());
+    }
+
+    private int[] pageByDocId(BitSet filterBits, int from, int size) {
+        int[] page = new int[size];
+        int count = 0;
+        int seen = 0;
+        int doc = filterBits == null ? (index.size() > 0 ? 0 : -1) : filterBits.nextSetBit(0);
+        while (doc >= 0 && doc < index.size() && count < size) {
+            if (seen++ >= from) {
+                page[count++] = doc;
+            }
+            doc = filterBits == null ? doc + 1 : filterBits.nextSetBit(doc + 1);
+        }
+        return Arrays.copyOf(page, count);
+    }
+
+    private IntBuffer order(SortMode sortMode) {
+        return switch (sortMode) {
+            case PRICE_ASC -> index.priceAscOrder;
+            case PRICE_DESC -> index.priceDescOrder;
+            default -> index.upcomingOrder;
+        };
+    }
+
+    private IntBuffer ranks(SortMode sortMode) {
+        return switch (sortMode) {
+            case PRICE_ASC -> index.priceAscRanks;
+            case PRICE_DESC -> index.priceDescRanks;
+            default -> index.upcomingRanks;
+        };
+    }
+
+    /**
+     * Orders matches through the precomputed rank of each doc, which turns the
+     * sort into a primitive int sort.
+     */
+    private int[] pageByRank(int[] matches, int matchCount, SortMode sortMode, int from, int size) {
+        IntBuffer ranks = ranks(sortMode);
+        IntBuffer order = order(sortMode);
+        int[] matchRanks = new int[matchCount];
+        for (int i = 0; i < matchCount; i++) {
+            matchRanks[i] = ranks.get(matches[i]);
+        }
+        Arrays.sort(matchRanks);
+
+        int end = Math.min(matchCount, from + size);
+        if (from >= end) {
+            return new int[0];
+        }
+        int[] page = new int[end - from];
+        for (int i = from; i < end; i++) {
+            page[i - from] = order.get(matchRanks[i]);
+        }
+        return page;
+    }
+
+    /**
+     * Orders matches by descending score, then by doc id. Score and doc id are
+     * packed into one long so the comparison stays primitive; non-negative float
+     * bits sort the same way as the floats themselves. Only the best
+     * {@code from + size} keys are kept, in a min-heap whose root is the key to
+     * beat, and sorted once at the end.
+     */
+    private int[] pageByScore(int[] matches, int matchCount, float[] scores, SortMode sortMode, int from, int size) {
+        int end = (int) Math.min(matchCount, (long) from + size);
+        if (from >= end) {
+            return new int[0];
+        }
+        LongTopK top = new LongTopK(end);
+        for (int i = 0; i < matchCount; i++) {
+            int doc = matches[i];
+            top.add(((long) Float.floatToIntBits(rankScore(scores, doc, sortMode)) << 32) | (Integer.MAX_VALUE - doc));
+        }
+
+        long[] keys = top.descending();
+        int[] page = new int[end - from];
+        for (int i = from; i < end; i++) {
+            page[i - from] = Integer.MAX_VALUE - (int) keys[i];
+        }
+        return page;
+    }
+
+    /**
+     * Score a match is ranked by: the text score, decayed by the session date
+     * for {@link SortMode#RELEVANCE_UPCOMING}.
+     */
+    private float rankScore(float[] scores, int doc, SortMode sortMode) {
+        if (sortMode != SortMode.RELEVANCE_UPCOMING || upcomingDecay == null) {
+            return scores[doc];
+        }
+        long sessionDate = index.sessionDates.get(doc);
+        return sessionDate == CourseIndex.MISSING_LONG ? 0 : (float) (scores[doc] * upcomingDecay.apply(sessionDate));
+    }
+
+    /**
+     * Inverse of the packed key used by {@link #pageByScore}, so that higher
+     * scores (and, on ties, lower doc ids) get smaller keys.
+     */
+    private static long scoreSortKey(float score, int doc) {
+        return Long.MAX_VALUE - (((long) Float.floatToIntBits(score) << 32) | (Integer.MAX_VALUE - doc));
+    }
+
+    private int nextDoc(BitSet filterBits, int from) {
+        if (filterBits == null) {
+            return from < index.size() ? from : -1;
+        }
+        return filterBits.nextSetBit(from);
+    }
+
+    /**
+     * The docs of the {@code size} smallest of the first {@code count} keys, in key order.
+     */
+    private static int[] smallest(long[] keys, int count, int size, LongUnaryOperator keyToDoc) {
+        int[] page = new int[Math.min(size, count)];
+        if (page.length == 0) {
+            return page;
+        }
+        // Keys are non-negative, so negating them turns the smallest into the largest
+        LongTopK top = new LongTopK(page.length);
+        for (int i = 0; i < count; i++) {
+            top.add(-keys[i]);
+        }
+        long[] sorted = top.descending();
+        for (int i = 0; i < page.length; i++) {
+            page[i] = (int) keyToDoc.applyAsLong(-sorted[i]);
+        }
+        return page;
+    }
+
+    private static CourseHits cursorPage(long total, int[] page, long after, IntToLongFunction sortKey) {
+        long last = page.length == 0 ? after : sortKey.applyAsLong(page[page.length - 1]);
+        return new CourseHits(total, page, last);
+    }
+}
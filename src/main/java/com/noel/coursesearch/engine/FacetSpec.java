@@ -0,0 +1,33 @@
+package com.noel.coursesearch.engine;
+
+import java.util.List;
+
+/**
+ * Which facets to count and how to bucket them: price into fixed-width
+ * buckets, ages into inclusive bands. A course falls into every age band its
+ * own age range overlaps, matching the minAge/maxAge filter semantics.
+ */
+public record FacetSpec(int maxTerms, double priceInterval, List<AgeBand> ageBands) {
+
+    /**
+     * Parses bands written as {@code "from-to"}, e.g. {@code "6-8"}.
+     */
+    public static FacetSpec of(int maxTerms, double priceInterval, List<String> ageBands) {
+        return new FacetSpec(maxTerms, priceInterval, ageBands.stream().map(AgeBand::parse).toList());
+    }
+
+    public record AgeBand(int from, int to) {
+
+        public String key() {
+            return from + "-" + to;
+        }
+
+        static AgeBand parse(String band) {
+            String[] bounds = band.trim().split("-");
+            if (bounds.length != 2) {
+                throw new IllegalArgumentException("Age band must look like from-to: " + band);
+            }
+            return new AgeBand(Integer.parseInt(bounds[0].trim()), Integer.parseInt(bounds[1].trim()));
+        }
+    }
+}
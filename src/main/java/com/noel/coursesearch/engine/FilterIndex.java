@@ -0,0 +1,246 @@
+package com.noel.coursesearch.engine;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Precomputed filter structures for a {@link CourseIndex}: each filtered column
+ * sorted once, as the doc ids that have a value in ascending order of it, so
+ * that a category, a type or a range predicate is two binary searches plus a
+ * contiguous run of doc ids. Prices and session dates reuse the index's own
+ * ascending sort orders; the other columns get {@link ValueOrders} of their
+ * own, which are built with the index and stored in its snapshot. Resolved
+ * filters are cached per index, so repeated filter combinations cost a map
+ * lookup regardless of the query text.
+ */
+final class FilterIndex {
+
+    private static final int CACHE_SIZE = 256;
+
+    private final int size;
+    private final ValueOrders valueOrders;
+
+    // Docs without a value are left out, so they never satisfy a filter
+    private final SortedIntColumn categories;
+    private final SortedIntColumn types;
+    private final SortedIntColumn minAges;
+    private final SortedIntColumn maxAges;
+    private final SortedDoubleColumn prices;
+    private final SortedLongColumn sessionDates;
+
+    private final Map<CourseFilter, BitSet> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<CourseFilter, BitSet> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    FilterIndex(CourseIndex index, ValueOrders valueOrders) {
+        this.size = index.size();
+        this.valueOrders = valueOrders;
+        this.categories = new SortedIntColumn(index.categoryOrdinals, valueOrders.categories());
+        this.types = new SortedIntColumn(index.typeOrdinals, valueOrders.types());
+        this.minAges = new SortedIntColumn(index.minAges, valueOrders.minAges());
+        this.maxAges = new SortedIntColumn(index.maxAges, valueOrders.maxAges());
+        this.prices = SortedDoubleColumn.of(index.prices, index.priceAscOrder);
+        this.sessionDates = SortedLongColumn.of(index.sessionDates, index.upcomingOrder);
+    }
+
+    ValueOrders valueOrders() {
+        return valueOrders;
+    }
+
+    /**
+     * Docs matching every criterion of {@code filter}. The returned set is shared
+     * through the cache and must not be modified.
+     */
+    BitSet filter(CourseFilter filter, int categoryOrdinal, int typeOrdinal) {
+        BitSet cached = cache.get(filter);
+        if (cached != null) {
+            return cached;
+        }
+
+        BitSet bits = new BitSet(size);
+        bits.set(0, size);
+        if (filter.category() != null) {
+            and(bits, categoryOrdinal < 0 ? null : categories.equalTo(categoryOrdinal, size));
+        }
+        if (filter.type() != null) {
+            and(bits, typeOrdinal < 0 ? null : types.equalTo(typeOrdinal, size));
+        }
+        // Age ranges overlap when the course's max is above the requested min and vice versa
+        if (filter.minAge() != null) {
+            bits.and(maxAges.atLeast(filter.minAge(), size));
+        }
+        if (filter.maxAge() != null) {
+            bits.and(minAges.atMost(filter.maxAge(), size));
+        }
+        if (filter.minPrice() != null || filter.maxPrice() != null) {
+            bits.and(prices.between(filter.minPrice(), filter.maxPrice(), size));
+        }
+        if (filter.startDateMillis() != null) {
+            bits.and(sessionDates.atLeast(filter.startDateMillis(), size));
+        }
+
+        cache.put(filter, bits);
+        return bits;
+    }
+
+    private static void and(BitSet bits, BitSet other) {
+        if (other == null) {
+            bits.clear();
+        } else {
+            bits.and(other);
+        }
+    }
+
+    private static BitSet docsBetween(IntBuffer docs, int from, int to, int size) {
+        BitSet bits = new BitSet(size);
+        for (int i = from; i < to; i++) {
+            bits.set(docs.get(i));
+        }
+        return bits;
+    }
+
+    /**
+     * Doc ids in ascending order of each integer column the sort orders do not
+     * already cover, ties broken by doc id.
+     */
+    record ValueOrders(IntBuffer minAges, IntBuffer maxAges, IntBuffer categories, IntBuffer types) {
+
+        static ValueOrders build(int[] minAges, int[] maxAges, int[] categoryOrdinals, int[] typeOrdinals) {
+            return new ValueOrders(valueOrder(minAges, CourseIndex.MISSING_INT), valueOrder(maxAges, CourseIndex.MISSING_INT),
+                    valueOrder(categoryOrdinals, CourseIndex.NO_ORDINAL), valueOrder(typeOrdinals, CourseIndex.NO_ORDINAL));
+        }
+
+        private static IntBuffer valueOrder(int[] column, int missing) {
+            long[] packed = new long[column.length];
+            int count = 0;
+            for (int doc = 0; doc < column.length; doc++) {
+                if (column[doc] != missing) {
+                    // Value in the high bits, doc in the low bits: one primitive sort orders both
+                    packed[count++] = ((long) column[doc] << 32) | doc;
+                }
+            }
+            Arrays.sort(packed, 0, count);
+            int[] docs = new int[count];
+            for (int i = 0; i < count; i++) {
+                docs[i] = (int) packed[i];
+            }
+            return IntBuffer.wrap(docs);
+        }
+    }
+
+    private record SortedIntColumn(IntBuffer column, IntBuffer docs) {
+
+        BitSet equalTo(int value, int size) {
+            return docsBetween(docs, lowerBound(value), lowerBound(value + 1), size);
+        }
+
+        BitSet atLeast(int min, int size) {
+            return docsBetween(docs, lowerBound(min), docs.limit(), size);
+        }
+
+        BitSet atMost(int max, int size) {
+            int to = max == Integer.MAX_VALUE ? docs.limit() : lowerBound(max + 1);
+            return docsBetween(docs, 0, to, size);
+        }
+
+        private int lowerBound(int key) {
+            int low = 0;
+            int high = docs.limit();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (column.get(docs.get(mid)) < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * The first {@code count} docs of {@code docs}, which are the ones with a value.
+     */
+    private record SortedDoubleColumn(DoubleBuffer column, IntBuffer docs, int count) {
+
+        static SortedDoubleColumn of(DoubleBuffer column, IntBuffer ascendingOrder) {
+            // The ascending order puts docs without a value last
+            int low = 0;
+            int high = ascendingOrder.limit();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (Double.isNaN(column.get(ascendingOrder.get(mid)))) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return new SortedDoubleColumn(column, ascendingOrder, low);
+        }
+
+        BitSet between(Double min, Double max, int size) {
+            int from = min == null ? 0 : lowerBound(min, false);
+            int to = max == null ? count : lowerBound(max, true);
+            return docsBetween(docs, from, Math.max(from, to), size);
+        }
+
+        /**
+         * First position whose value is {@code >= key}, or {@code > key} when {@code exclusive}.
+         */
+        private int lowerBound(double key, boolean exclusive) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                double value = column.get(docs.get(mid));
+                if (value < key || (exclusive && value == key)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private record SortedLongColumn(LongBuffer column, IntBuffer docs, int count) {
+
+        static SortedLongColumn of(LongBuffer column, IntBuffer ascendingOrder) {
+            int low = 0;
+            int high = ascendingOrder.limit();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (column.get(ascendingOrder.get(mid)) == CourseIndex.MISSING_LONG) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return new SortedLongColumn(column, ascendingOrder, low);
+        }
+
+        BitSet atLeast(long min, int size) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (column.get(docs.get(mid)) < min) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return docsBetween(docs, low, count, size);
+        }
+    }
+}
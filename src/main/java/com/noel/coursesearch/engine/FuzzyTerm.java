@@ -0,0 +1,34 @@
+package com.noel.coursesearch.engine;
+
+/**
+ * A query term ready to be matched against a field's term dictionary: the
+ * leading characters that must match exactly, and an automaton for the rest,
+ * compiled once and shared by every field the term is looked up in.
+ */
+final class FuzzyTerm {
+
+    private final String term;
+    private final int prefixLength;
+    private final LevenshteinAutomaton automaton;
+
+    FuzzyTerm(String term, int prefixLength, int maxEdits) {
+        this.term = term;
+        this.prefixLength = Math.min(prefixLength, term.length());
+        this.automaton = maxEdits == 0 ? null : LevenshteinAutomaton.of(term.substring(this.prefixLength), maxEdits);
+    }
+
+    String term() {
+        return term;
+    }
+
+    String prefix() {
+        return term.substring(0, prefixLength);
+    }
+
+    /**
+     * Null when only the term itself matches.
+     */
+    LevenshteinAutomaton automaton() {
+        return automaton;
+    }
+}
@@ -0,0 +1,383 @@
+package com.noel.coursesearch.engine;
+
+import com.noel.coursesearch.document.CourseDocument;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary image of a {@link CourseIndex}, written once after a load and mapped
+ * at startup so the catalog is searchable without parsing or analyzing it again.
+ * <p>
+ * The file holds the columns, the three sort orders with their ranks, the
+ * value orders of the filter index, the category dictionary and the text
+ * fields as sorted term dictionaries with their postings, all as primitive
+ * arrays, followed by one record per course and a table of record offsets.
+ * Opening it reads the category names and a few counts, and wraps everything
+ * else in {@link java.nio.IntBuffer} and friends viewing the mapping, so
+ * nothing is copied or rebuilt and the catalog stays in the page cache rather
+ * than the heap. The 24-byte header and putting the longs and doubles first
+ * keep every array aligned to its element size. {@link CourseIndex#document(int)}
+ * decodes records one at a time; category and type come from their ordinal
+ * columns, so records only carry the fields nothing else does. Strings are
+ * UTF-8 behind their byte length, with -1 for null.
+ * <p>
+ * The header also records a fingerprint of the source the catalog was loaded
+ * from, so a snapshot that no longer matches its source can be told apart.
+ */
+public final class IndexSnapshot {
+
+    private static final int MAGIC = 0x43535858;
+    private static final int VERSION = 4;
+    private static final int HEADER_BYTES = 24;
+
+    /**
+     * Source fingerprint of a catalog not known to come from any source.
+     */
+    public static final long UNKNOWN_SOURCE = 0;
+
+    // Optional fields of a course record
+    private static final int HAS_SUGGEST = 1;
+    private static final int HAS_SESSION_DATE = 1 << 1;
+
+    private IndexSnapshot() {
+    }
+
+    /**
+     * Writes {@code index}, loaded from the source with fingerprint
+     * {@code source}, to {@code path}, replacing it in one step so a reader
+     * never sees a partial file.
+     */
+    public static void write(CourseIndex index, long source, Path path) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream file = Files.newOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                write(index, source, out);
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void write(CourseIndex index, long source, DataOutputStream out) throws IOException {
+        int size = index.size();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(size);
+        out.writeInt(0);
+        out.writeLong(source);
+
+        for (int doc = 0; doc < size; doc++) {
+            out.writeDouble(index.prices.get(doc));
+        }
+        for (int doc = 0; doc < size; doc++) {
+            out.writeLong(index.sessionDates.get(doc));
+        }
+        writeInts(out, index.minAges);
+        writeInts(out, index.maxAges);
+        writeInts(out, index.categoryOrdinals);
+        writeInts(out, index.typeOrdinals);
+        writeInts(out, index.upcomingOrder);
+        writeInts(out, index.upcomingRanks);
+        writeInts(out, index.priceAscOrder);
+        writeInts(out, index.priceAscRanks);
+        writeInts(out, index.priceDescOrder);
+        writeInts(out, index.priceDescRanks);
+
+        FilterIndex.ValueOrders valueOrders = index.filters.valueOrders();
+        for (IntBuffer docs : List.of(valueOrders.minAges(), valueOrders.maxAges(), valueOrders.categories(), valueOrders.types())) {
+            out.writeInt(docs.limit());
+            writeInts(out, docs);
+        }
+
+        writeTextField(out, index.title);
+        writeTextField(out, index.description);
+        writeTextField(out, index.titlePrefix);
+
+        // Strings from here on, so nothing after them needs to stay aligned
+        out.writeInt(index.categoryCount());
+        for (int ordinal = 0; ordinal < index.categoryCount(); ordinal++) {
+            writeString(out, index.categoryName(ordinal));
+        }
+
+        int[] offsets = new int[size + 1];
+        for (int doc = 0; doc < size; doc++) {
+            offsets[doc] = position(out);
+            writeRecord(out, index.document(doc));
+        }
+        offsets[size] = position(out);
+        int offsetsPosition = position(out);
+        writeInts(out, IntBuffer.wrap(offsets));
+        out.writeInt(offsetsPosition);
+        out.writeInt(MAGIC);
+        position(out);
+    }
+
+    private static void writeTextField(DataOutputStream out, TextField field) throws IOException {
+        out.writeFloat(field.boost());
+        out.writeInt(field.docCount());
+        out.writeFloat(field.averageLength());
+        out.writeInt(field.termCount());
+        writeInts(out, field.lengths());
+        writeInts(out, field.termStarts());
+        writeInts(out, field.postingStarts());
+        writeInts(out, field.docs());
+        writeInts(out, field.freqs());
+        CharBuffer chars = field.termChars();
+        for (int i = 0; i < chars.limit(); i++) {
+            out.writeChar(chars.get(i));
+        }
+        if (chars.limit() % 2 != 0) {
+            out.writeChar(0);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, CourseDocument course) throws IOException {
+        int flags = (course.getSuggest() != null ? HAS_SUGGEST : 0)
+                | (course.getNextSessionDate() != null ? HAS_SESSION_DATE : 0);
+        out.writeByte(flags);
+        writeString(out, course.getId());
+        writeString(out, course.getTitle());
+        writeString(out, course.getDescription());
+        writeString(out, course.getGradeRange());
+        if (course.getSuggest() != null) {
+            out.writeInt(course.getSuggest().size());
+            for (String input : course.getSuggest()) {
+                writeString(out, input);
+            }
+        }
+        if (course.getNextSessionDate() != null) {
+            // The millis column drops sub-millisecond precision and the offset
+            OffsetDateTime date = course.getNextSessionDate();
+            out.writeLong(date.toEpochSecond());
+            out.writeInt(date.getNano());
+            out.writeInt(date.getOffset().getTotalSeconds());
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, IntBuffer values) throws IOException {
+        for (int i = 0; i < values.limit(); i++) {
+            out.writeInt(values.get(i));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Bytes written so far. The count saturates at {@link Integer#MAX_VALUE},
+     * which is also the most a single mapping can hold.
+     */
+    private static int position(DataOutputStream out) throws IOException {
+        if (out.size() == Integer.MAX_VALUE) {
+            throw new IOException("Index snapshot exceeds " + Integer.MAX_VALUE + " bytes");
+        }
+        return out.size();
+    }
+
+    /**
+     * Fingerprint of the source the snapshot at {@code path} was loaded from,
+     * read from its header alone.
+     */
+    public static long source(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Until the header is complete or the file ends
+            }
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not an index snapshot");
+        }
+        checkVersion(header.getInt(4));
+        return header.getLong(16);
+    }
+
+    /**
+     * Maps the snapshot at {@code path}. The mapping stays valid after the
+     * channel is closed and is released once the index is no longer reachable.
+     */
+    public static CourseIndex open(Path path) throws IOException {
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to be an index snapshot");
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            return read(mapping);
+        } catch (RuntimeException e) {
+            // Bounds and decoding failures of a damaged file
+            throw new IOException(path + " is not a readable index snapshot", e);
+        }
+    }
+
+    private static CourseIndex read(ByteBuffer in) throws IOException {
+        if (in.limit() < HEADER_BYTES + 8 || in.getInt(0) != MAGIC || in.getInt(in.limit() - 4) != MAGIC) {
+            throw new IOException("Not an index snapshot");
+        }
+        checkVersion(in.getInt(4));
+        int size = in.getInt(8);
+        in.position(HEADER_BYTES);
+
+        DoubleBuffer prices = slice(in, size, Double.BYTES).asDoubleBuffer();
+        LongBuffer sessionDates = slice(in, size, Long.BYTES).asLongBuffer();
+        IntBuffer minAges = ints(in, size);
+        IntBuffer maxAges = ints(in, size);
+        IntBuffer categoryOrdinals = ints(in, size);
+        IntBuffer typeOrdinals = ints(in, size);
+        CourseIndex.SortOrder upcoming = new CourseIndex.SortOrder(ints(in, size), ints(in, size));
+        CourseIndex.SortOrder priceAsc = new CourseIndex.SortOrder(ints(in, size), ints(in, size));
+        CourseIndex.SortOrder priceDesc = new CourseIndex.SortOrder(ints(in, size), ints(in, size));
+        FilterIndex.ValueOrders valueOrders = new FilterIndex.ValueOrders(
+                ints(in, in.getInt()), ints(in, in.getInt()), ints(in, in.getInt()), ints(in, in.getInt()));
+
+        TextField title = readTextField(in, size);
+        TextField description = readTextField(in, size);
+        TextField titlePrefix = readTextField(in, size);
+
+        String[] categoryNames = new String[in.getInt()];
+        for (int ordinal = 0; ordinal < categoryNames.length; ordinal++) {
+            categoryNames[ordinal] = readString(in, in.position());
+            in.position(in.position() + stringBytes(in, in.position()));
+        }
+
+        IntBuffer offsets = ints(in.position(in.getInt(in.limit() - 8)), size + 1);
+        CourseDocument.CourseType[] types = CourseDocument.CourseType.values();
+        return new CourseIndex(size, doc -> readRecord(in, offsets.get(doc), doc, minAges, maxAges, prices,
+                categoryOrdinals, typeOrdinals, categoryNames, types),
+                minAges, maxAges, prices, sessionDates, categoryOrdinals, typeOrdinals, categoryNames,
+                title, description, titlePrefix, upcoming, priceAsc, priceDesc, valueOrders);
+    }
+
+    private static void checkVersion(int version) throws IOException {
+        if (version != VERSION) {
+            throw new IOException("Unsupported index snapshot version " + version);
+        }
+    }
+
+    private static TextField readTextField(ByteBuffer in, int size) {
+        float boost = in.getFloat();
+        int docCount = in.getInt();
+        float averageLength = in.getFloat();
+        int terms = in.getInt();
+        IntBuffer lengths = ints(in, size);
+        IntBuffer termStarts = ints(in, terms + 1);
+        IntBuffer postingStarts = ints(in, terms + 1);
+        IntBuffer docs = ints(in, postingStarts.get(terms));
+        IntBuffer freqs = ints(in, postingStarts.get(terms));
+        int chars = termStarts.get(terms);
+        CharBuffer termChars = slice(in, chars + chars % 2, Character.BYTES).asCharBuffer().limit(chars);
+        return new TextField(boost, docCount, averageLength, lengths, termChars, termStarts, postingStarts, docs, freqs);
+    }
+
+    /**
+     * Decodes one course with absolute reads only, so any number of searches
+     * can share the mapping.
+     */
+    private static CourseDocument readRecord(ByteBuffer in, int offset, int doc, IntBuffer minAges, IntBuffer maxAges,
+                                             DoubleBuffer prices, IntBuffer categoryOrdinals, IntBuffer typeOrdinals,
+                                             String[] categoryNames, CourseDocument.CourseType[] types) {
+        CourseDocument course = new CourseDocument();
+        int flags = in.get(offset);
+        int position = offset + 1;
+        course.setId(readString(in, position));
+        position += stringBytes(in, position);
+        course.setTitle(readString(in, position));
+        position += stringBytes(in, position);
+        course.setDescription(readString(in, position));
+        position += stringBytes(in, position);
+        course.setGradeRange(readString(in, position));
+        position += stringBytes(in, position);
+        if ((flags & HAS_SUGGEST) != 0) {
+            int count = in.getInt(position);
+            position += Integer.BYTES;
+            List<String> suggest = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                suggest.add(readString(in, position));
+                position += stringBytes(in, position);
+            }
+            course.setSuggest(suggest);
+        }
+        if ((flags & HAS_SESSION_DATE) != 0) {
+            Instant instant = Instant.ofEpochSecond(in.getLong(position), in.getInt(position + Long.BYTES));
+            ZoneOffset zone = ZoneOffset.ofTotalSeconds(in.getInt(position + Long.BYTES + Integer.BYTES));
+            course.setNextSessionDate(OffsetDateTime.ofInstant(instant, zone));
+        }
+
+        int minAge = minAges.get(doc);
+        int maxAge = maxAges.get(doc);
+        double price = prices.get(doc);
+        int category = categoryOrdinals.get(doc);
+        int type = typeOrdinals.get(doc);
+        course.setMinAge(minAge == CourseIndex.MISSING_INT ? null : minAge);
+        course.setMaxAge(maxAge == CourseIndex.MISSING_INT ? null : maxAge);
+        course.setPrice(Double.isNaN(price) ? null : price);
+        course.setCategory(category == CourseIndex.NO_ORDINAL ? null : categoryNames[category]);
+        course.setType(type == CourseIndex.NO_ORDINAL ? null : types[type]);
+        return course;
+    }
+
+    private static IntBuffer ints(ByteBuffer in, int count) {
+        return slice(in, count, Integer.BYTES).asIntBuffer();
+    }
+
+    /**
+     * The next {@code count} values of {@code bytes} bytes each, as a slice of
+     * the mapping that its typed views keep reachable.
+     */
+    private static ByteBuffer slice(ByteBuffer in, int count, int bytes) {
+        int length = Math.multiplyExact(count, bytes);
+        ByteBuffer slice = in.slice(in.position(), length);
+        in.position(in.position() + length);
+        return slice;
+    }
+
+    private static String readString(ByteBuffer in, int position) {
+        int length = in.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Bytes the string at {@code position} takes, its length prefix included.
+     */
+    private static int stringBytes(ByteBuffer in, int position) {
+        return Integer.BYTES + Math.max(in.getInt(position), 0);
+    }
+}
@@ -0,0 +1,215 @@
+package com.noel.coursesearch.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deterministic automaton accepting every string within {@code maxEdits}
+ * insertions, deletions, substitutions or transpositions of adjacent characters
+ * of a term, as Elasticsearch's fuzzy queries do with {@code fuzzy_transpositions}.
+ * <p>
+ * Built by subset construction over the Levenshtein NFA, whose states are
+ * (characters of the term consumed, edits spent). Characters outside the term
+ * all behave alike, so the alphabet is the term's distinct characters plus one
+ * class for everything else, and checking a dictionary term costs one table
+ * lookup per character. The table is filled in as states are first reached, so
+ * a dictionary walk only pays for the part of the automaton its terms touch;
+ * an automaton therefore belongs to one query. A state with no way back to
+ * acceptance is {@link #DEAD}, which lets a walk over sorted terms skip
+ * everything below that prefix.
+ */
+final class LevenshteinAutomaton {
+
+    static final int DEAD = -1;
+    private static final int UNKNOWN = -2;
+
+    private final Nfa nfa;
+    private final char[] alphabet;
+    private final Map<BitSet, Integer> ids = new HashMap<>();
+    private final List<BitSet> states = new ArrayList<>();
+    private final List<int[]> transitions = new ArrayList<>();
+    private int[] distances = new int[16];
+
+    private LevenshteinAutomaton(Nfa nfa, char[] alphabet) {
+        this.nfa = nfa;
+        this.alphabet = alphabet;
+    }
+
+    static LevenshteinAutomaton of(String term, int maxEdits) {
+        Nfa nfa = new Nfa(term, maxEdits);
+        LevenshteinAutomaton automaton = new LevenshteinAutomaton(nfa, distinctChars(term));
+        BitSet start = new BitSet();
+        start.set(nfa.id(0, 0));
+        nfa.close(start);
+        nfa.prune(start);
+        automaton.add(start);
+        return automaton;
+    }
+
+    int start() {
+        return 0;
+    }
+
+    int step(int state, char c) {
+        int charClass = Arrays.binarySearch(alphabet, c);
+        if (charClass < 0) {
+            charClass = alphabet.length;
+        }
+        int[] row = transitions.get(state);
+        if (row[charClass] == UNKNOWN) {
+            boolean other = charClass == alphabet.length;
+            BitSet next = nfa.step(states.get(state), c, other);
+            if (next.isEmpty()) {
+                row[charClass] = DEAD;
+            } else {
+                Integer id = ids.get(next);
+                row[charClass] = id != null ? id : add(next);
+            }
+        }
+        return row[charClass];
+    }
+
+    /**
+     * Edits between the term and a string that ends in {@code state}, or -1 if
+     * that string is not accepted.
+     */
+    int distance(int state) {
+        return distances[state];
+    }
+
+    private int add(BitSet nfaStates) {
+        int id = states.size();
+        ids.put(nfaStates, id);
+        states.add(nfaStates);
+        int[] row = new int[alphabet.length + 1];
+        Arrays.fill(row, UNKNOWN);
+        transitions.add(row);
+        if (id == distances.length) {
+            distances = Arrays.copyOf(distances, id * 2);
+        }
+        distances[id] = nfa.distance(nfaStates);
+        return id;
+    }
+
+    private static char[] distinctChars(String term) {
+        char[] chars = term.toCharArray();
+        Arrays.sort(chars);
+        int count = 0;
+        for (int i = 0; i < chars.length; i++) {
+            if (i == 0 || chars[i] != chars[i - 1]) {
+                chars[count++] = chars[i];
+            }
+        }
+        return Arrays.copyOf(chars, count);
+    }
+
+    /**
+     * Levenshtein NFA of a term. State (i, e) has consumed {@code i} characters
+     * of the term with {@code e} edits; a second set of states marks a
+     * transposition half done, after reading {@code term[i + 1]} in place of
+     * {@code term[i]}.
+     */
+    private static final class Nfa {
+        private final String term;
+        private final int maxEdits;
+        private final int transposed;
+
+        Nfa(String term, int maxEdits) {
+            this.term = term;
+            this.maxEdits = maxEdits;
+            this.transposed = (term.length() + 1) * (maxEdits + 1);
+        }
+
+        int id(int consumed, int edits) {
+            return consumed * (maxEdits + 1) + edits;
+        }
+
+        BitSet step(BitSet states, char c, boolean other) {
+            // Pruned deletion states can still match the next character
+            BitSet current = (BitSet) states.clone();
+            close(current);
+            BitSet next = new BitSet();
+            for (int state = current.nextSetBit(0); state >= 0; state = current.nextSetBit(state + 1)) {
+                if (state >= transposed) {
+                    int i = (state - transposed) / (maxEdits + 1);
+                    int e = (state - transposed) % (maxEdits + 1);
+                    if (!other && term.charAt(i) == c) {
+                        next.set(id(i + 2, e));
+                    }
+                    continue;
+                }
+                int i = state / (maxEdits + 1);
+                int e = state % (maxEdits + 1);
+                if (!other && i < term.length() && term.charAt(i) == c) {
+                    next.set(id(i + 1, e));
+                }
+                if (e < maxEdits) {
+                    // Inserted character
+                    next.set(id(i, e + 1));
+                    if (i < term.length()) {
+                        // Substituted character
+                        next.set(id(i + 1, e + 1));
+                    }
+                    if (!other && i + 1 < term.length() && term.charAt(i + 1) == c && term.charAt(i) != c) {
+                        next.set(transposed + id(i, e + 1));
+                    }
+                }
+            }
+            close(next);
+            prune(next);
+            return next;
+        }
+
+        /**
+         * Adds the states reachable by deleting characters of the term. Those
+         * always have higher ids, so one ascending pass sees them too.
+         */
+        void close(BitSet states) {
+            for (int state = states.nextSetBit(0); state >= 0 && state < transposed; state = states.nextSetBit(state + 1)) {
+                int i = state / (maxEdits + 1);
+                int e = state % (maxEdits + 1);
+                if (e < maxEdits && i < term.length()) {
+                    states.set(id(i + 1, e + 1));
+                }
+            }
+        }
+
+        /**
+         * Drops every state another one in the set subsumes: (j, f) accepts
+         * nothing (i, e) does not accept with fewer edits when
+         * {@code |i - j| <= f - e}. Equivalent sets then become equal, which
+         * keeps the automaton small; {@link #step} closes a set again before
+         * following it.
+         */
+        void prune(BitSet states) {
+            for (int state = states.nextSetBit(0); state >= 0 && state < transposed; state = states.nextSetBit(state + 1)) {
+                int i = state / (maxEdits + 1);
+                int e = state % (maxEdits + 1);
+                for (int f = e + 1; f <= maxEdits; f++) {
+                    for (int j = Math.max(0, i - (f - e)); j <= Math.min(term.length(), i + (f - e)); j++) {
+                        states.clear(id(j, f));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Fewest edits to accept from these states, deleting whatever is left of
+         * the term; deletion states themselves may have been pruned.
+         */
+        int distance(BitSet states) {
+            int distance = -1;
+            for (int state = states.nextSetBit(0); state >= 0 && state < transposed; state = states.nextSetBit(state + 1)) {
+                int edits = state % (maxEdits + 1) + term.length() - state / (maxEdits + 1);
+                if (edits <= maxEdits && (distance < 0 || edits < distance)) {
+                    distance = edits;
+                }
+            }
+            return distance;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.noel.coursesearch.engine;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the {@code k} largest of the longs added to it, in a primitive binary
+ * min-heap. Adding n values costs O(n log k) and most of them are rejected by a
+ * single comparison with the root, the smallest value kept so far.
+ */
+final class LongTopK {
+
+    private final long[] heap;
+    private int size;
+
+    LongTopK(int k) {
+        this.heap = new long[k];
+    }
+
+    void add(long value) {
+        if (size < heap.length) {
+            int i = size++;
+            // Sift up
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= value) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        } else if (size > 0 && value > heap[0]) {
+            // Replace the root and sift down
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= value) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = value;
+        }
+    }
+
+    /**
+     * The kept values, largest first.
+     */
+    long[] descending() {
+        long[] sorted = Arrays.copyOf(heap, size);
+        Arrays.sort(sorted);
+        for (int i = 0, j = sorted.length - 1; i < j; i++, j--) {
+            long swap = sorted[i];
+            sorted[i] = sorted[j];
+            sorted[j] = swap;
+        }
+        return sorted;
+    }
+}
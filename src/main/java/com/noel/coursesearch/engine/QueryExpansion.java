@@ -0,0 +1,104 @@
+package com.noel.coursesearch.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * How the embedded engine widens the terms of a query, mirroring the text query
+ * sent to Elasticsearch: synonyms from the {@code synonym_graph} rules, fuzzy
+ * matching with {@code fuzziness}, {@code prefix_length} and
+ * {@code max_expansions}, and matching query terms against prefixes of title
+ * words like the {@code title.prefix} edge n-gram field.
+ */
+public final class QueryExpansion {
+
+    /**
+     * Exact matching only.
+     */
+    public static final QueryExpansion NONE = new QueryExpansion(SynonymMap.EMPTY, false, 0, 0, 0, 0, 0, false);
+
+    private final SynonymMap synonyms;
+    // AUTO:low,high grants one edit from low characters and two from high
+    private final boolean auto;
+    private final int autoLow;
+    private final int autoHigh;
+    private final int maxEdits;
+    private final int prefixLength;
+    private final int maxExpansions;
+    private final boolean titlePrefixes;
+
+    private QueryExpansion(SynonymMap synonyms, boolean auto, int autoLow, int autoHigh, int maxEdits, int prefixLength,
+                           int maxExpansions, boolean titlePrefixes) {
+        this.synonyms = synonyms;
+        this.auto = auto;
+        this.autoLow = autoLow;
+        this.autoHigh = autoHigh;
+        this.maxEdits = maxEdits;
+        this.prefixLength = prefixLength;
+        this.maxExpansions = maxExpansions;
+        this.titlePrefixes = titlePrefixes;
+    }
+
+    /**
+     * @param fuzziness {@code AUTO}, {@code AUTO:low,high} or a fixed 0, 1 or 2 edits
+     */
+    public static QueryExpansion of(List<String> synonymRules, String fuzziness, int prefixLength, int maxExpansions,
+                                    boolean titlePrefixes) {
+        if (prefixLength < 0 || maxExpansions < 1) {
+            throw new IllegalArgumentException("prefix length must be >= 0 and max expansions >= 1");
+        }
+        SynonymMap synonyms = SynonymMap.parse(synonymRules);
+        String value = fuzziness.trim().toUpperCase(Locale.ROOT);
+        try {
+            if (value.equals("AUTO")) {
+                return new QueryExpansion(synonyms, true, 3, 6, 2, prefixLength, maxExpansions, titlePrefixes);
+            }
+            if (value.startsWith("AUTO:")) {
+                String[] bounds = value.substring(5).split(",");
+                int low = Integer.parseInt(bounds[0].trim());
+                int high = Integer.parseInt(bounds[1].trim());
+                if (bounds.length == 2 && 0 <= low && low <= high) {
+                    return new QueryExpansion(synonyms, true, low, high, 2, prefixLength, maxExpansions, titlePrefixes);
+                }
+            } else {
+                int edits = Integer.parseInt(value);
+                if (0 <= edits && edits <= 2) {
+                    return new QueryExpansion(synonyms, false, 0, 0, edits, prefixLength, maxExpansions, titlePrefixes);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Unsupported fuzziness " + fuzziness + ", expected AUTO, AUTO:low,high, 0, 1 or 2");
+    }
+
+    /**
+     * The terms to look up for one analyzed query term, each compiled for
+     * fuzzy matching: the term and its synonyms.
+     */
+    List<FuzzyTerm> compile(String term) {
+        List<String> alternatives = synonyms.expand(term);
+        List<FuzzyTerm> compiled = new ArrayList<>(alternatives.size());
+        for (String alternative : alternatives) {
+            compiled.add(new FuzzyTerm(alternative, prefixLength, maxEdits(alternative)));
+        }
+        return compiled;
+    }
+
+    int maxEdits(String term) {
+        if (!auto) {
+            return maxEdits;
+        }
+        int length = term.length();
+        return length < autoLow ? 0 : length < autoHigh ? 1 : 2;
+    }
+
+    int maxExpansions() {
+        return maxExpansions;
+    }
+
+    boolean titlePrefixes() {
+        return titlePrefixes;
+    }
+}
@@ -0,0 +1,343 @@
+package com.noel.coursesearch.engine;
+
+import com.noel.coursesearch.document.CourseDocument;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory completion index over course titles and {@code suggest} inputs.
+ * Titles are indexed from the start of every word, so "alg" completes
+ * "Introduction to Algebra"; suggest inputs only from their first character,
+ * like Elasticsearch's completion suggester. A title counts twice as much as a
+ * suggest input towards a suggestion's weight.
+ * <p>
+ * Every node tracks the best weight below it, so a prefix lookup visits
+ * subtrees best-first and stops after {@code limit} suggestions instead of
+ * enumerating every completion. Courses can be added and removed one at a
+ * time; lookups share a read lock and never see a half-applied course.
+ */
+public final class SuggestTrie {
+
+    static final int TITLE_WEIGHT = 2;
+    static final int SUGGEST_WEIGHT = 1;
+
+    // Same as the "prefix_length" Elasticsearch uses for fuzzy completion
+    private static final int FUZZY_PREFIX_LENGTH = 1;
+
+    private final Node root = new Node();
+    private final Map<String, List<Contribution>> contributions = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public static SuggestTrie build(Iterable<CourseDocument> courses) {
+        SuggestTrie trie = new SuggestTrie();
+        for (CourseDocument course : courses) {
+            trie.upsert(course);
+        }
+        return trie;
+    }
+
+    /**
+     * Adds {@code course}, replacing whatever it contributed before.
+     */
+    public void upsert(CourseDocument course) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(course.getId());
+            List<Contribution> added = new ArrayList<>();
+            List<String> titleTokens = TextAnalyzer.tokenize(course.getTitle());
+            for (int i = 0; i < titleTokens.size(); i++) {
+                String key = String.join(" ", titleTokens.subList(i, titleTokens.size()));
+                added.add(new Contribution(key, course.getTitle().trim(), TITLE_WEIGHT, course.getCategory()));
+            }
+            if (course.getSuggest() != null) {
+                for (String input : course.getSuggest()) {
+                    String key = normalize(input);
+                    if (!key.isEmpty()) {
+                        added.add(new Contribution(key, input.trim(), SUGGEST_WEIGHT, course.getCategory()));
+                    }
+                }
+            }
+            for (Contribution contribution : added) {
+                add(contribution);
+            }
+            contributions.put(course.getId(), added);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int courseCount() {
+        lock.readLock().lock();
+        try {
+            return contributions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Highest-weighted suggestions starting with {@code prefix}, optionally limited
+     * to courses in {@code category}.
+     */
+    public List<Suggestion> complete(String prefix, String category, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+
+            // Best-first: a node is ranked by the best weight below it, so the
+            // first postings to come out are the heaviest completions. Nodes go
+            // before texts of the same weight, so ties come out alphabetically.
+            PriorityQueue<Candidate> queue = new PriorityQueue<>(
+                    Comparator.comparingInt(Candidate::weight).reversed()
+                            .thenComparing(candidate -> candidate.node() == null)
+                            .thenComparing(Candidate::text, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)));
+            queue.add(new Candidate(node.maxWeight, node, null));
+            List<Suggestion> results = new ArrayList<>(limit);
+            Set<String> seen = new HashSet<>();
+            while (!queue.isEmpty() && results.size() < limit) {
+                Candidate candidate = queue.poll();
+                if (candidate.node() == null) {
+                    if (seen.add(candidate.text().toLowerCase(Locale.ROOT))) {
+                        results.add(new Suggestion(candidate.text(), candidate.weight(), 0));
+                    }
+                    continue;
+                }
+                for (Map.Entry<String, Posting> entry : candidate.node().postings.entrySet()) {
+                    int weight = entry.getValue().weight(category);
+                    if (weight > 0) {
+                        queue.add(new Candidate(weight, null, entry.getKey()));
+                    }
+                }
+                for (Node child : candidate.node().children.values()) {
+                    queue.add(new Candidate(child.maxWeight, child, null));
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Suggestions whose input starts with something within Elasticsearch's
+     * {@code AUTO} edit distance of {@code prefix} (adjacent transpositions count
+     * as one edit). The first character must match. Closer matches rank first,
+     * then heavier ones.
+     */
+    public List<Suggestion> completeFuzzy(String prefix, String category, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int maxEdits = maxEdits(key.length());
+        if (maxEdits == 0) {
+            return complete(prefix, category, limit);
+        }
+
+        lock.readLock().lock();
+        try {
+            Node start = root;
+            for (int i = 0; i < FUZZY_PREFIX_LENGTH && start != null; i++) {
+                start = start.children.get(key.charAt(i));
+            }
+            if (start == null) {
+                return List.of();
+            }
+
+            // Levenshtein row of the exact prefix matched so far against the query
+            int[] row = new int[key.length() + 1];
+            for (int j = 0; j <= key.length(); j++) {
+                row[j] = Math.abs(j - FUZZY_PREFIX_LENGTH);
+            }
+            Map<String, Suggestion> best = new HashMap<>();
+            fuzzy(start, key, key.charAt(FUZZY_PREFIX_LENGTH - 1), null, row, Integer.MAX_VALUE, maxEdits, category, best);
+
+            List<Suggestion> candidates = new ArrayList<>(best.values());
+            candidates.sort(Comparator.comparingInt(Suggestion::edits)
+                    .thenComparing(Comparator.comparingInt(Suggestion::weight).reversed())
+                    .thenComparing(Suggestion::text, String.CASE_INSENSITIVE_ORDER));
+            return candidates.size() > limit ? List.copyOf(candidates.subList(0, limit)) : candidates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static int maxEdits(int length) {
+        if (length <= 2) {
+            return 0;
+        }
+        return length <= 5 ? 1 : 2;
+    }
+
+    private void fuzzy(Node node, String key, char last, int[] previousRow, int[] row, int bestDistance,
+                       int maxEdits, String category, Map<String, Suggestion> best) {
+        int distance = Math.min(bestDistance, row[key.length()]);
+        if (distance <= maxEdits) {
+            for (Map.Entry<String, Posting> entry : node.postings.entrySet()) {
+                int weight = entry.getValue().weight(category);
+                if (weight > 0) {
+                    best.merge(entry.getKey().toLowerCase(Locale.ROOT), new Suggestion(entry.getKey(), weight, distance),
+                            (a, b) -> a.edits() < b.edits() || (a.edits() == b.edits() && a.weight() >= b.weight()) ? a : b);
+                }
+            }
+        }
+
+        int rowMin = Integer.MAX_VALUE;
+        for (int value : row) {
+            rowMin = Math.min(rowMin, value);
+        }
+        if (rowMin > maxEdits && distance > maxEdits) {
+            return;
+        }
+
+        for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+            char c = child.getKey();
+            if (rowMin > maxEdits) {
+                // The distance can no longer improve, only the completions below remain
+                fuzzy(child.getValue(), key, c, null, row, distance, maxEdits, category, best);
+                continue;
+            }
+            int[] next = new int[row.length];
+            next[0] = row[0] + 1;
+            for (int j = 1; j < row.length; j++) {
+                int cost = key.charAt(j - 1) == c ? 0 : 1;
+                next[j] = Math.min(Math.min(next[j - 1] + 1, row[j] + 1), row[j - 1] + cost);
+                if (previousRow != null && j > 1 && key.charAt(j - 1) == last && key.charAt(j - 2) == c) {
+                    next[j] = Math.min(next[j], previousRow[j - 2] + 1);
+                }
+            }
+            fuzzy(child.getValue(), key, c, row, next, distance, maxEdits, category, best);
+        }
+    }
+
+    private void add(Contribution contribution) {
+        List<Node> path = path(contribution.key(), true);
+        Node leaf = path.get(path.size() - 1);
+        leaf.postings.computeIfAbsent(contribution.text(), text -> new Posting()).add(contribution, 1);
+        updateMaxWeights(path);
+    }
+
+    private void removeLocked(String id) {
+        List<Contribution> previous = contributions.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (Contribution contribution : previous) {
+            List<Node> path = path(contribution.key(), false);
+            Node leaf = path.get(path.size() - 1);
+            Posting posting = leaf.postings.get(contribution.text());
+            posting.add(contribution, -1);
+            if (posting.weight == 0) {
+                leaf.postings.remove(contribution.text());
+            }
+            // Drop nodes left with nothing below them
+            for (int i = path.size() - 1; i > 0 && path.get(i).isEmpty(); i--) {
+                path.get(i - 1).children.remove(contribution.key().charAt(i - 1));
+            }
+            updateMaxWeights(path);
+        }
+    }
+
+    private List<Node> path(String key, boolean create) {
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            node = create ? node.children.computeIfAbsent(key.charAt(i), c -> new Node()) : node.children.get(key.charAt(i));
+            path.add(node);
+        }
+        return path;
+    }
+
+    private static void updateMaxWeights(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            int max = 0;
+            for (Posting posting : node.postings.values()) {
+                max = Math.max(max, posting.weight);
+            }
+            for (Node child : node.children.values()) {
+                max = Math.max(max, child.maxWeight);
+            }
+            node.maxWeight = max;
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : String.join(" ", TextAnalyzer.tokenize(text));
+    }
+
+    public record Suggestion(String text, int weight, int edits) {
+    }
+
+    /**
+     * Queue entry of a prefix lookup: either a subtree or a suggestion text.
+     */
+    private record Candidate(int weight, Node node, String text) {
+    }
+
+    private record Contribution(String key, String text, int weight, String category) {
+    }
+
+    private static final class Node {
+        // Sorted so fuzzy results come out in a stable order
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+        private final Map<String, Posting> postings = new HashMap<>(2);
+        private int maxWeight;
+
+        private boolean isEmpty() {
+            return children.isEmpty() && postings.isEmpty();
+        }
+    }
+
+    /**
+     * Weight of one suggestion text under one key, in total and per category.
+     */
+    private static final class Posting {
+        private int weight;
+        private final Map<String, Integer> categoryWeights = new HashMap<>(2);
+
+        private void add(Contribution contribution, int sign) {
+            weight += sign * contribution.weight();
+            if (contribution.category() != null) {
+                categoryWeights.merge(contribution.category(), sign * contribution.weight(),
+                        (a, b) -> a + b == 0 ? null : a + b);
+            }
+        }
+
+        private int weight(String category) {
+            return category == null ? weight : categoryWeights.getOrDefault(category, 0);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.noel.coursesearch.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Query-time synonyms in the Solr rule format Elasticsearch's
+ * {@code synonym_graph} filter reads: {@code "a, b, c"} makes the terms
+ * equivalent, {@code "a, b => c"} rewrites a and b to c. Only single-word
+ * entries are expanded; rules with a multi-word side need token positions,
+ * which the embedded index does not keep, and are skipped.
+ */
+final class SynonymMap {
+
+    static final SynonymMap EMPTY = new SynonymMap(Map.of());
+
+    private final Map<String, List<String>> expansions;
+
+    private SynonymMap(Map<String, List<String>> expansions) {
+        this.expansions = expansions;
+    }
+
+    static SynonymMap parse(List<String> rules) {
+        Map<String, Set<String>> expansions = new HashMap<>();
+        for (String rule : rules) {
+            int arrow = rule.indexOf("=>");
+            List<String> from = words(arrow < 0 ? rule : rule.substring(0, arrow));
+            List<String> to = arrow < 0 ? from : words(rule.substring(arrow + 2));
+            if (from == null || to == null) {
+                continue;
+            }
+            for (String word : from) {
+                expansions.computeIfAbsent(word, w -> new LinkedHashSet<>()).addAll(to);
+            }
+        }
+
+        Map<String, List<String>> lists = new HashMap<>(expansions.size() * 2);
+        expansions.forEach((word, synonyms) -> lists.put(word, List.copyOf(synonyms)));
+        return new SynonymMap(lists);
+    }
+
+    /**
+     * Terms to search for {@code term}: itself and its synonyms, or what a
+     * rewrite rule replaces it with.
+     */
+    List<String> expand(String term) {
+        return expansions.getOrDefault(term, List.of(term));
+    }
+
+    /**
+     * The analyzed entries of one side of a rule, or null if any of them is
+     * not a single word.
+     */
+    private static List<String> words(String side) {
+        List<String> words = new ArrayList<>();
+        for (String entry : side.split(",")) {
+            List<String> tokens = TextAnalyzer.tokenize(entry);
+            if (tokens.size() > 1) {
+                return null;
+            }
+            words.addAll(tokens);
+        }
+        return words;
+    }
+}
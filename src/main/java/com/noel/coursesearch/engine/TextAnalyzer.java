@@ -0,0 +1,54 @@
+package com.noel.coursesearch.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tokenizer used by the embedded engine. Splits on anything that is not a letter
+ * or digit and lower-cases each token, which is close enough to Elasticsearch's
+ * {@code standard} analyzer for course titles and descriptions.
+ */
+public final class TextAnalyzer {
+
+    private TextAnalyzer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        int start = -1;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetterOrDigit(text.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(text.substring(start).toLowerCase(Locale.ROOT));
+        }
+        return tokens;
+    }
+
+    /**
+     * Leading {@code minGram} to {@code maxGram} characters of every token, as
+     * Elasticsearch's {@code edge_ngram} token filter emits them. Tokens shorter
+     * than {@code minGram} produce nothing.
+     */
+    public static List<String> edgeNGrams(String text, int minGram, int maxGram) {
+        List<String> grams = new ArrayList<>();
+        for (String token : tokenize(text)) {
+            for (int length = minGram; length <= Math.min(maxGram, token.length()); length++) {
+                grams.add(token.substring(0, length));
+            }
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,380 @@
+package com.noel.coursesearch.engine;
+
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Inverted index for one analyzed text field, scored with BM25 using the same
+ * defaults as Lucene (k1 = 1.2, b = 0.75).
+ * <p>
+ * The field is a sorted term dictionary over flat buffers: the characters of
+ * every term back to back, where each term starts in them and in the postings,
+ * and the docs and frequencies of all postings lists in term order. Term ids
+ * follow the sort order, so a lookup is a binary search over the dictionary and
+ * the buffers are the same whether they wrap arrays built from documents or
+ * views of an {@link IndexSnapshot} mapping.
+ * <p>
+ * Because the dictionary is sorted, a fuzzy query term is matched by walking
+ * its {@link LevenshteinAutomaton} over it rather than comparing it with every
+ * term: only terms sharing its exact prefix are visited, and a dead automaton
+ * state skips every term below the prefix that reached it.
+ */
+final class TextField {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private final float boost;
+    private final int docCount;
+    private final float averageLength;
+    private final IntBuffer lengths;
+    private final CharBuffer termChars;
+    // termCount + 1 entries: term t spans [starts[t], starts[t + 1])
+    private final IntBuffer termStarts;
+    private final IntBuffer postingStarts;
+    private final IntBuffer docs;
+    private final IntBuffer freqs;
+
+    TextField(float boost, int docCount, float averageLength, IntBuffer lengths, CharBuffer termChars,
+              IntBuffer termStarts, IntBuffer postingStarts, IntBuffer docs, IntBuffer freqs) {
+        this.boost = boost;
+        this.docCount = docCount;
+        this.averageLength = averageLength;
+        this.lengths = lengths;
+        this.termChars = termChars;
+        this.termStarts = termStarts;
+        this.postingStarts = postingStarts;
+        this.docs = docs;
+        this.freqs = freqs;
+    }
+
+    static TextField build(String[] values, float boost) {
+        return build(values, boost, TextAnalyzer::tokenize);
+    }
+
+    static TextField build(String[] values, float boost, Function<String, List<String>> analyzer) {
+        Map<String, PostingsBuilder> builders = new HashMap<>();
+        int[] lengths = new int[values.length];
+        int docCount = 0;
+        long totalLength = 0;
+
+        for (int doc = 0; doc < values.length; doc++) {
+            List<String> tokens = analyzer.apply(values[doc]);
+            if (tokens.isEmpty()) {
+                continue;
+            }
+            lengths[doc] = tokens.size();
+            docCount++;
+            totalLength += tokens.size();
+
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String token : tokens) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+            // Docs are visited in order, so every postings list stays sorted by doc id
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                builders.computeIfAbsent(entry.getKey(), t -> new PostingsBuilder()).add(doc, entry.getValue());
+            }
+        }
+
+        String[] terms = builders.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[] termStarts = new int[terms.length + 1];
+        int[] postingStarts = new int[terms.length + 1];
+        for (int term = 0; term < terms.length; term++) {
+            termStarts[term + 1] = termStarts[term] + terms[term].length();
+            postingStarts[term + 1] = postingStarts[term] + builders.get(terms[term]).size;
+        }
+        char[] termChars = new char[termStarts[terms.length]];
+        int[] docs = new int[postingStarts[terms.length]];
+        int[] freqs = new int[docs.length];
+        for (int term = 0; term < terms.length; term++) {
+            terms[term].getChars(0, terms[term].length(), termChars, termStarts[term]);
+            PostingsBuilder builder = builders.get(terms[term]);
+            System.arraycopy(builder.docs, 0, docs, postingStarts[term], builder.size);
+            System.arraycopy(builder.freqs, 0, freqs, postingStarts[term], builder.size);
+        }
+
+        float averageLength = docCount == 0 ? 0f : (float) totalLength / docCount;
+        return new TextField(boost, docCount, averageLength, IntBuffer.wrap(lengths), CharBuffer.wrap(termChars),
+                IntBuffer.wrap(termStarts), IntBuffer.wrap(postingStarts), IntBuffer.wrap(docs), IntBuffer.wrap(freqs));
+    }
+
+    float boost() {
+        return boost;
+    }
+
+    int docCount() {
+        return docCount;
+    }
+
+    float averageLength() {
+        return averageLength;
+    }
+
+    IntBuffer lengths() {
+        return lengths;
+    }
+
+    CharBuffer termChars() {
+        return termChars;
+    }
+
+    IntBuffer termStarts() {
+        return termStarts;
+    }
+
+    IntBuffer postingStarts() {
+        return postingStarts;
+    }
+
+    IntBuffer docs() {
+        return docs;
+    }
+
+    IntBuffer freqs() {
+        return freqs;
+    }
+
+    int termCount() {
+        return termStarts.limit() - 1;
+    }
+
+    String term(int term) {
+        return termChars.subSequence(termStarts.get(term), termStarts.get(term + 1)).toString();
+    }
+
+    /**
+     * Id of {@code term} in the dictionary, or -1 if no doc has it.
+     */
+    int termId(String term) {
+        int id = lowerBound(term, 0, termCount());
+        return id < termCount() && compare(id, term) == 0 ? id : -1;
+    }
+
+    /**
+     * Adds the boosted BM25 contribution of {@code term} to every matching doc.
+     */
+    void score(String term, float[] scores) {
+        int id = termId(term);
+        if (id >= 0) {
+            score(id, scores);
+        }
+    }
+
+    private void score(int term, float[] scores) {
+        int from = postingStarts.get(term);
+        int to = postingStarts.get(term + 1);
+        float weight = boost * idf(to - from);
+        for (int i = from; i < to; i++) {
+            int doc = docs.get(i);
+            int freq = freqs.get(i);
+            float norm = K1 * ((1 - B) + B * lengths.get(doc) / averageLength);
+            scores[doc] += weight * freq / (freq + norm);
+        }
+    }
+
+    /**
+     * Scores one query position whose alternatives (synonyms and fuzzy
+     * expansions) are all looked up. As in Lucene's blended rewrites, the
+     * alternatives share the idf of the most frequent of them, each is weighted
+     * by its {@link TermMatch#boost()}, and a doc counts only its best one, so
+     * a rare near miss never outranks the term that was typed.
+     *
+     * @param best scratch space of one float per doc, all zero; left zeroed
+     */
+    void score(List<TermMatch> alternatives, float[] scores, float[] best) {
+        if (alternatives.isEmpty()) {
+            return;
+        }
+        if (alternatives.size() == 1 && alternatives.get(0).boost() == 1f) {
+            score(alternatives.get(0).term(), scores);
+            return;
+        }
+
+        int docFreq = 0;
+        for (TermMatch alternative : alternatives) {
+            docFreq = Math.max(docFreq, docFreq(alternative.term()));
+        }
+        float idf = idf(docFreq);
+        for (TermMatch alternative : alternatives) {
+            float weight = boost * idf * alternative.boost();
+            for (int i = postingStarts.get(alternative.term()); i < postingStarts.get(alternative.term() + 1); i++) {
+                int doc = docs.get(i);
+                int freq = freqs.get(i);
+                float norm = K1 * ((1 - B) + B * lengths.get(doc) / averageLength);
+                best[doc] = Math.max(best[doc], weight * freq / (freq + norm));
+            }
+        }
+        for (TermMatch alternative : alternatives) {
+            for (int i = postingStarts.get(alternative.term()); i < postingStarts.get(alternative.term() + 1); i++) {
+                int doc = docs.get(i);
+                scores[doc] += best[doc];
+                best[doc] = 0;
+            }
+        }
+    }
+
+    private int docFreq(int term) {
+        return postingStarts.get(term + 1) - postingStarts.get(term);
+    }
+
+    private float idf(int docFreq) {
+        return (float) Math.log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    /**
+     * Terms of this field matching any of {@code queryTerms}, at most
+     * {@code maxExpansions} per query term, each boosted by its similarity to
+     * the query term as Lucene's fuzzy query does: {@code 1 - edits / length}
+     * of the shorter of the two.
+     */
+    List<TermMatch> expand(List<FuzzyTerm> queryTerms, int maxExpansions) {
+        Map<Integer, Float> boosts = new HashMap<>();
+        for (FuzzyTerm queryTerm : queryTerms) {
+            if (queryTerm.automaton() == null) {
+                int id = termId(queryTerm.term());
+                if (id >= 0) {
+                    boosts.put(id, 1f);
+                }
+                continue;
+            }
+            for (TermMatch match : expand(queryTerm, maxExpansions)) {
+                boosts.merge(match.term(), match.boost(), Math::max);
+            }
+        }
+        List<TermMatch> matches = new ArrayList<>(boosts.size());
+        boosts.forEach((term, boost) -> matches.add(new TermMatch(term, boost)));
+        return matches;
+    }
+
+    private List<TermMatch> expand(FuzzyTerm queryTerm, int maxExpansions) {
+        LevenshteinAutomaton automaton = queryTerm.automaton();
+        String prefix = queryTerm.prefix();
+        int offset = prefix.length();
+        int end = prefix.isEmpty() ? termCount() : lowerBound(prefix + Character.MAX_VALUE, 0, termCount());
+
+        List<TermMatch> matches = new ArrayList<>();
+        // states[k] is the state after the first k characters past the prefix of
+        // the previous term, valid up to depth; the next term resumes from where
+        // the two share characters
+        int[] states = new int[16];
+        states[0] = automaton.start();
+        int depth = 0;
+        int previous = -1;
+        int i = lowerBound(prefix, 0, end);
+        while (i < end) {
+            int start = termStarts.get(i);
+            int length = termStarts.get(i + 1) - start;
+            int k = previous < 0 ? 0 : Math.min(depth, sharedLength(previous, i) - offset);
+            int dead = -1;
+            for (; offset + k < length; k++) {
+                int next = automaton.step(states[k], termChars.get(start + offset + k));
+                if (next == LevenshteinAutomaton.DEAD) {
+                    dead = k;
+                    break;
+                }
+                if (k + 1 == states.length) {
+                    states = Arrays.copyOf(states, states.length * 2);
+                }
+                states[k + 1] = next;
+            }
+            previous = i;
+            depth = k;
+            if (dead >= 0) {
+                // Nothing that starts this way can match
+                String dying = termChars.subSequence(start, start + offset + dead + 1).toString();
+                i = lowerBound(dying + Character.MAX_VALUE, i + 1, end);
+                continue;
+            }
+            int edits = automaton.distance(states[k]);
+            if (edits >= 0) {
+                int shorter = Math.min(length, queryTerm.term().length());
+                matches.add(new TermMatch(i, shorter == 0 ? 1f : 1f - (float) edits / shorter));
+            }
+            i++;
+        }
+
+        if (matches.size() > maxExpansions) {
+            // Ids follow the term order, so ties still go to the smaller term
+            matches.sort(Comparator.comparing(TermMatch::boost).reversed().thenComparingInt(TermMatch::term));
+            return matches.subList(0, maxExpansions);
+        }
+        return matches;
+    }
+
+    /**
+     * First term id in {@code [from, to)} whose term is not below {@code key}.
+     */
+    private int lowerBound(String key, int from, int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares a dictionary term with {@code key} as {@link String#compareTo} would.
+     */
+    private int compare(int term, String key) {
+        int start = termStarts.get(term);
+        int length = termStarts.get(term + 1) - start;
+        int shared = Math.min(length, key.length());
+        for (int i = 0; i < shared; i++) {
+            int difference = termChars.get(start + i) - key.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length();
+    }
+
+    private int sharedLength(int a, int b) {
+        int startA = termStarts.get(a);
+        int startB = termStarts.get(b);
+        int length = Math.min(termStarts.get(a + 1) - startA, termStarts.get(b + 1) - startB);
+        for (int i = 0; i < length; i++) {
+            if (termChars.get(startA + i) != termChars.get(startB + i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * A dictionary term, by id, matched by a query term, and how much of the
+     * query term's weight it carries.
+     */
+    record TermMatch(int term, float boost) {
+    }
+
+    private static final class PostingsBuilder {
+        private int[] docs = new int[4];
+        private int[] freqs = new int[4];
+        private int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+    }
+}
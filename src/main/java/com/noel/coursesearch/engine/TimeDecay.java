@@ -0,0 +1,21 @@
+package com.noel.coursesearch.engine;
+
+import java.time.Duration;
+
+/**
+ * Gauss decay over a date, as in Elasticsearch's {@code function_score}: 1 within
+ * {@code offset} of the origin, falling to {@code decay} at {@code scale} beyond
+ * that and smoothly towards 0 after.
+ */
+public record TimeDecay(long originMillis, long offsetMillis, double twoSigmaSquared) {
+
+    public static TimeDecay gauss(long originMillis, Duration scale, Duration offset, double decay) {
+        double scaleMillis = scale.toMillis();
+        return new TimeDecay(originMillis, offset.toMillis(), -scaleMillis * scaleMillis / Math.log(decay));
+    }
+
+    public double apply(long millis) {
+        double distance = Math.max(0, Math.abs(millis - originMillis) - offsetMillis);
+        return Math.exp(-distance * distance / twoSigmaSquared);
+    }
+}
@@ -0,0 +1,277 @@
+package com.noel.coursesearch.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.noel.coursesearch.backend.BulkResult;
+import com.noel.coursesearch.backend.BulkSink;
+import com.noel.coursesearch.backend.CourseSearchBackend;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.document.CourseDocument;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams a JSON array of courses into a {@link BulkSink}. Documents are parsed
+ * one at a time with Jackson's streaming parser and grouped into batches capped
+ * both by count and by source bytes. Batches are sent by a fixed pool of workers;
+ * once every worker is busy the parser blocks, so memory use is bounded by
+ * {@code concurrency} batches regardless of how large the input is. An array
+ * element that is not an object fails the load, naming its position, rather
+ * than ending it early. So does any document that could not be indexed: the
+ * sink is only completed when it holds the whole catalog, and is aborted only
+ * once no batch is still being written to it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CourseIngestionPipeline {
+
+    private final CourseSearchBackend courseSearchBackend;
+    private final ObjectMapper objectMapper;
+    private final ResourceLoader resourceLoader;
+    private final CourseSearchProperties properties;
+
+    /**
+     * Loads from a Spring resource location, e.g. {@code classpath:sample-courses.json}
+     * or {@code file:/data/catalog.json}.
+     */
+    public IngestionReport ingest(String location) throws IOException {
+        return ingest(location, courseSearchBackend.openBulkSink());
+    }
+
+    public IngestionReport ingest(String location, BulkSink sink) throws IOException {
+        Resource resource = resourceLoader.getResource(location);
+        if (!resource.exists()) {
+            sink.abort();
+            throw new FileNotFoundException(location + " does not exist");
+        }
+        try (InputStream in = resource.getInputStream()) {
+            return ingest(in, sink);
+        }
+    }
+
+    public IngestionReport ingest(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return ingest(in);
+        }
+    }
+
+    /**
+     * Loads into the live index of the configured backend.
+     */
+    public IngestionReport ingest(InputStream in) throws IOException {
+        return ingest(in, courseSearchBackend.openBulkSink());
+    }
+
+    /**
+     * Loads into {@code sink} and completes it once every batch has been written,
+     * or aborts it if the load fails. The caller owns {@code in}.
+     */
+    public IngestionReport ingest(InputStream in, BulkSink sink) throws IOException {
+        try {
+            return load(in, sink);
+        } catch (IOException | RuntimeException e) {
+            sink.abort();
+            throw e;
+        }
+    }
+
+    private IngestionReport load(InputStream in, BulkSink sink) throws IOException {
+        CourseSearchProperties.Ingest config = properties.getIngest();
+        int concurrency = Math.max(1, config.getConcurrency());
+        Run run = new Run(sink, config);
+        long start = System.nanoTime();
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, new WorkerThreadFactory());
+        Semaphore inFlight = new Semaphore(concurrency);
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of courses");
+            }
+
+            List<CourseDocument> batch = new ArrayList<>(config.getBatchSize());
+            long batchBytes = 0;
+            long lastProgress = start;
+            long position = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && run.error.get() == null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException("Expected a course object at array position " + position + " (line "
+                            + parser.currentTokenLocation().getLineNr() + ", column "
+                            + parser.currentTokenLocation().getColumnNr() + "), found "
+                            + (token == null ? "end of input" : token.asString() != null ? token.asString() : token));
+                }
+                position++;
+                long docStart = parser.currentTokenLocation().getByteOffset();
+                batch.add(objectMapper.readValue(parser, CourseDocument.class));
+                // Offsets are unknown (-1) for character-based input; the count cap still applies
+                batchBytes += Math.max(0, parser.currentLocation().getByteOffset() - docStart);
+
+                if (batch.size() >= config.getBatchSize() || batchBytes >= config.getBatchBytes().toBytes()) {
+                    submit(workers, inFlight, run, batch);
+                    batch = new ArrayList<>(config.getBatchSize());
+                    batchBytes = 0;
+                }
+
+                long now = System.nanoTime();
+                if (now - lastProgress >= config.getProgressInterval().toNanos()) {
+                    lastProgress = now;
+                    log.info("Ingested {} courses so far ({} docs/sec)", run.indexed.get(),
+                            Math.round(run.indexed.get() / ((now - start) / 1_000_000_000.0)));
+                }
+            }
+            if (!batch.isEmpty() && run.error.get() == null) {
+                submit(workers, inFlight, run, batch);
+            }
+
+            // Wait for every in-flight batch to finish
+            inFlight.acquire(concurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while ingesting courses", e);
+        } finally {
+            // Stops retries; bulk requests already sent finish before the caller may abort the sink
+            workers.shutdownNow();
+            awaitTermination(workers);
+        }
+
+        if (run.error.get() != null) {
+            throw new IOException("Course ingestion failed after indexing " + run.indexed.get() + " courses", run.error.get());
+        }
+        if (run.failed.get() > 0) {
+            throw new IOException(run.failed.get() + " courses could not be indexed (" + run.indexed.get()
+                    + " were), so the load is not completed");
+        }
+        sink.complete();
+
+        IngestionReport report = new IngestionReport(run.indexed.get(), run.failed.get(), Duration.ofNanos(System.nanoTime() - start));
+        log.info("Ingested {} courses ({} failed) in {} ms, {} docs/sec", report.indexed(), report.failed(),
+                report.elapsed().toMillis(), Math.round(report.docsPerSecond()));
+        return report;
+    }
+
+    private static void awaitTermination(ExecutorService workers) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+                log.warn("Still waiting for in-flight bulk requests to finish");
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(ExecutorService workers, Semaphore inFlight, Run run, List<CourseDocument> batch) throws InterruptedException {
+        // Backpressure: block the parser until a worker is free
+        inFlight.acquire();
+        workers.execute(() -> {
+            try {
+                run.write(batch);
+            } catch (Throwable t) {
+                run.error.compareAndSet(null, t);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * State shared by the workers of one ingestion run.
+     */
+    private static final class Run {
+        private final BulkSink sink;
+        private final CourseSearchProperties.Ingest config;
+        private final AtomicLong indexed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        private Run(BulkSink sink, CourseSearchProperties.Ingest config) {
+            this.sink = sink;
+            this.config = config;
+        }
+
+        /**
+         * Writes a batch, then resends only the documents rejected as retryable,
+         * backing off exponentially between attempts.
+         */
+        void write(List<CourseDocument> batch) throws InterruptedException {
+            List<CourseDocument> pending = batch;
+            for (int attempt = 0; ; attempt++) {
+                BulkResult result = sink.write(pending);
+                indexed.addAndGet(result.succeeded());
+
+                List<CourseDocument> retry = new ArrayList<>();
+                for (BulkResult.Failure failure : result.failures()) {
+                    if (failure.retryable() && failure.course() != null) {
+                        retry.add(failure.course());
+                    } else {
+                        failed.incrementAndGet();
+                        log.warn("Failed to index course {}: {}",
+                                failure.course() == null ? "?" : failure.course().getId(), failure.reason());
+                    }
+                }
+                if (retry.isEmpty()) {
+                    return;
+                }
+                if (attempt >= config.getMaxRetries()) {
+                    failed.addAndGet(retry.size());
+                    log.warn("Giving up on {} courses still rejected after {} retries", retry.size(), attempt);
+                    return;
+                }
+
+                Thread.sleep(backoffMillis(attempt));
+                pending = retry;
+            }
+        }
+
+        /**
+         * The retry backoff doubled {@code attempt} times, up to the configured maximum.
+         */
+        private long backoffMillis(int attempt) {
+            long backoff = config.getRetryBackoff().toMillis();
+            long max = config.getMaxRetryBackoff().toMillis();
+            for (int i = 0; i < attempt && backoff < max; i++) {
+                backoff *= 2;
+            }
+            return Math.min(backoff, max);
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "course-ingest-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.noel.coursesearch.service;
+
+import com.noel.coursesearch.backend.CourseSearchBackend;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retires courses whose next session lies more than
+ * {@code coursesearch.retention.keep-past} in the past, checking every
+ * {@code check-interval} on a background thread. Keeps the catalog from
+ * accumulating history that date-bounded searches would only skip over. Does
+ * nothing unless {@code keep-past} is set.
+ */
+@Service
+@Slf4j
+public class CourseRetirementService {
+
+    private final CourseSearchBackend courseSearchBackend;
+    private final CourseSearchProperties.Retention config;
+    private final ScheduledExecutorService retirer;
+
+    public CourseRetirementService(CourseSearchBackend courseSearchBackend, CourseSearchProperties properties) {
+        this.courseSearchBackend = courseSearchBackend;
+        this.config = properties.getRetention();
+        if (config.getKeepPast() == null) {
+            this.retirer = null;
+            return;
+        }
+        this.retirer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "course-retire");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getCheckInterval().toMillis();
+        retirer.scheduleWithFixedDelay(this::retireExpired, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes the courses that have expired by now. A failure is logged and
+     * retried at the next check.
+     */
+    void retireExpired() {
+        Instant cutoff = Instant.now().minus(config.getKeepPast());
+        try {
+            long retired = courseSearchBackend.retire(cutoff);
+            if (retired > 0) {
+                log.info("Retired {} courses with no session since {}", retired, cutoff);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to retire courses before {}", cutoff, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (retirer != null) {
+            retirer.shutdownNow();
+        }
+    }
+}
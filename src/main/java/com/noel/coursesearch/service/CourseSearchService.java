@@ -1,147 +1,167 @@
 package com.noel.coursesearch.service;
 
-import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.backend.CourseSearchBackend;
+import com.noel.coursesearch.backend.SearchMetrics;
+import com.noel.coursesearch.backend.TotalHitsMode;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.dto.BatchSearchResponse;
 import com.noel.coursesearch.dto.SearchRequest;
 import com.noel.coursesearch.dto.SearchResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
-import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.SearchHit;
-import org.springframework.data.elasticsearch.core.SearchHits;
-import org.springframework.data.elasticsearch.core.query.Query;
-import org.springframework.data.elasticsearch.client.elc.NativeQuery;
-import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
 
-import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
-import co.elastic.clients.elasticsearch._types.query_dsl.MultiMatchQuery;
-import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
-import co.elastic.clients.elasticsearch._types.query_dsl.TermQuery;
-import co.elastic.clients.json.JsonData;
-
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CourseSearchService {
 
-    private final ElasticsearchOperations elasticsearchOperations;
+    private final CourseSearchBackend courseSearchBackend;
+    private final SearchResultCache searchResultCache;
+    private final SearchCoalescer searchCoalescer;
+    private final CourseSearchProperties properties;
+    private final SearchMetrics searchMetrics;
 
     public SearchResponse searchCourses(SearchRequest request) {
-        NativeQueryBuilder queryBuilder = NativeQuery.builder();
+        long start = System.nanoTime();
+        try {
+            String invalid = invalidParameter(request);
+            if (invalid != null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, invalid);
+            }
+            return search(request);
+        } finally {
+            searchMetrics.record(SearchMetrics.Stage.TOTAL, request, System.nanoTime() - start);
+        }
+    }
 
-        // Build the boolean query
-        BoolQuery.Builder boolQueryBuilder = new BoolQuery.Builder();
-        if ((request.getQ() == null || request.getQ().trim().isEmpty()) &&
-                request.getMinAge() == null &&
-                request.getMaxAge() == null &&
-                (request.getCategory() == null || request.getCategory().trim().isEmpty()) &&
-                (request.getType() == null || request.getType().trim().isEmpty()) &&
-                request.getMinPrice() == null &&
-                request.getMaxPrice() == null &&
-                request.getStartDate() == null) {
-            return new SearchResponse();
+    private SearchResponse search(SearchRequest request) {
+        // Cursor walks may cover the whole catalog (exports) and hold a
+        // point-in-time, so they are neither short-circuited nor cached
+        if (request.getCursor() != null) {
+            return courseSearchBackend.search(request);
         }
-        // Full-text search on title and description
-        if (request.getQ() != null && !request.getQ().trim().isEmpty()) {
-            MultiMatchQuery multiMatchQuery = MultiMatchQuery.of(m -> m
-                    .query(request.getQ())
-                    .fields("title^2.0", "description^1.0"));
-            boolQueryBuilder.must(multiMatchQuery._toQuery());
+
+        if (hasNoCriteria(request)) {
+            searchMetrics.emptyRequest();
+            return new SearchResponse();
         }
 
-        // Age range filters
-        if (request.getMinAge() != null) {
-            RangeQuery maxAgeRange = RangeQuery.of(r -> r
-                    .field("maxAge")
-                    .gte(JsonData.of(request.getMinAge())));
-            boolQueryBuilder.filter(maxAgeRange._toQuery());
+        // Identical misses arriving together reach the backend once
+        return searchResultCache.get(request, miss -> searchCoalescer.search(miss, courseSearchBackend::search));
+    }
+
+    /**
+     * Runs every search of the batch, with the same rules as a single search,
+     * and sends the ones the cache cannot answer to the backend together.
+     * Responses come back in request order; a failed search is reported in its
+     * own entry and does not affect the others.
+     */
+    public BatchSearchResponse searchBatch(List<SearchRequest> requests) {
+        int maxSize = properties.getBatch().getMaxSize();
+        if (requests.size() > maxSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "A batch holds at most " + maxSize + " searches, got " + requests.size());
         }
-        if (request.getMaxAge() != null) {
-            RangeQuery minAgeRange = RangeQuery.of(r -> r
-                    .field("minAge")
-                    .lte(JsonData.of(request.getMaxAge())));
-            boolQueryBuilder.filter(minAgeRange._toQuery());
+
+        List<CompletableFuture<SearchResponse>> results = new ArrayList<>(requests.size());
+        List<SearchRequest> searched = new ArrayList<>();
+        for (SearchRequest request : requests) {
+            String invalid = request == null ? "Search request is missing" : invalidParameter(request);
+            if (invalid != null) {
+                results.add(CompletableFuture.failedFuture(new IllegalArgumentException(invalid)));
+            } else if (request.getCursor() == null && hasNoCriteria(request)) {
+                searchMetrics.emptyRequest();
+                results.add(CompletableFuture.completedFuture(new SearchResponse()));
+            } else {
+                searched.add(request);
+                results.add(null);
+            }
         }
 
-        // Category filter
-        if (request.getCategory() != null && !request.getCategory().trim().isEmpty()) {
-            TermQuery categoryTerm = TermQuery.of(t -> t
-                    .field("category")
-                    .value(request.getCategory()));
-            boolQueryBuilder.filter(categoryTerm._toQuery());
+        Iterator<CompletableFuture<SearchResponse>> found = searched.isEmpty()
+                ? Collections.emptyIterator()
+                : searchResultCache.getAll(searched, courseSearchBackend::searchAll).iterator();
+        List<BatchSearchResponse.Entry> entries = new ArrayList<>(requests.size());
+        for (CompletableFuture<SearchResponse> result : results) {
+            entries.add(entry(result != null ? result : found.next()));
         }
+        return new BatchSearchResponse(entries);
+    }
 
-        // Type filter
-        if (request.getType() != null && !request.getType().trim().isEmpty()) {
-            TermQuery typeTerm = TermQuery.of(t -> t
-                    .field("type")
-                    .value(request.getType()));
-            boolQueryBuilder.filter(typeTerm._toQuery());
+    private static BatchSearchResponse.Entry entry(CompletableFuture<SearchResponse> result) {
+        try {
+            return BatchSearchResponse.Entry.ok(result.join());
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            HttpStatus status = statusOf(cause);
+            if (status.is5xxServerError()) {
+                log.warn("Search in batch failed", cause);
+            }
+            return BatchSearchResponse.Entry.failed(status.value(), cause.getMessage());
         }
+    }
 
-        // Price range filters
-        if (request.getMinPrice() != null) {
-            RangeQuery minPriceRange = RangeQuery.of(r -> r
-                    .field("price")
-                    .gte(JsonData.of(request.getMinPrice())));
-            boolQueryBuilder.filter(minPriceRange._toQuery());
+    /**
+     * The status a single search failing with {@code error} would have answered with.
+     */
+    private static HttpStatus statusOf(Throwable error) {
+        if (error instanceof ResponseStatusException e) {
+            return HttpStatus.valueOf(e.getStatusCode().value());
         }
-        if (request.getMaxPrice() != null) {
-            RangeQuery maxPriceRange = RangeQuery.of(r -> r
-                    .field("price")
-                    .lte(JsonData.of(request.getMaxPrice())));
-            boolQueryBuilder.filter(maxPriceRange._toQuery());
+        ResponseStatus annotated = AnnotatedElementUtils.findMergedAnnotation(error.getClass(), ResponseStatus.class);
+        if (annotated != null) {
+            return annotated.code();
         }
+        return error instanceof IllegalArgumentException ? HttpStatus.BAD_REQUEST : HttpStatus.INTERNAL_SERVER_ERROR;
+    }
 
-        // Date filter - only show courses on or after the given date
-        if (request.getStartDate() != null) {
-            RangeQuery dateRange = RangeQuery.of(r -> r
-                    .field("nextSessionDate")
-                    .gte(JsonData.of(request.getStartDate().toString())));
-            boolQueryBuilder.filter(dateRange._toQuery());
+    /**
+     * Why {@code request} cannot be searched, or null if it can.
+     */
+    private String invalidParameter(SearchRequest request) {
+        if (request.getPage() == null || request.getPage() < 0) {
+            return "page must be 0 or more, not " + request.getPage();
+        }
+        int maxSize = properties.getPaging().getMaxSize();
+        if (request.getSize() == null || request.getSize() < 1 || request.getSize() > maxSize) {
+            return "size must be between 1 and " + maxSize + ", not " + request.getSize();
+        }
+        try {
+            TotalHitsMode.from(request.getTotalHits());
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
         }
-
-        queryBuilder.withQuery(boolQueryBuilder.build()._toQuery());
-
-        // Sorting
-        Sort sort = buildSort(request.getSort());
-
-        // Pagination
-        Pageable pageable = PageRequest.of(request.getPage(), request.getSize(), sort);
-        queryBuilder.withPageable(pageable);
-
-        // Execute search
-        Query searchQuery = queryBuilder.build();
-        SearchHits<CourseDocument> searchHits = elasticsearchOperations.search(searchQuery, CourseDocument.class);
-
-        // Extract results
-        List<CourseDocument> courses = searchHits.stream()
-                .map(SearchHit::getContent)
-                .collect(Collectors.toList());
-
-        long total = searchHits.getTotalHits();
-        int totalPages = (int) Math.ceil((double) total / request.getSize());
-
-        return new SearchResponse(total, courses, request.getPage(), request.getSize(), totalPages);
     }
 
-    private Sort buildSort(String sortParam) {
-        if (sortParam == null) {
-            sortParam = "upcoming";
-        }
+    private static boolean hasNoCriteria(SearchRequest request) {
+        return (request.getQ() == null || request.getQ().trim().isEmpty()) &&
+                request.getMinAge() == null &&
+                request.getMaxAge() == null &&
+                (request.getCategory() == null || request.getCategory().trim().isEmpty()) &&
+                (request.getType() == null || request.getType().trim().isEmpty()) &&
+                request.getMinPrice() == null &&
+                request.getMaxPrice() == null &&
+                request.getStartDate() == null;
+    }
 
-        return switch (sortParam.toLowerCase()) {
-            case "priceasc" -> Sort.by(Sort.Direction.ASC, "price");
-            case "pricedesc" -> Sort.by(Sort.Direction.DESC, "price");
-            case "upcoming" -> Sort.by(Sort.Direction.ASC, "nextSessionDate");
-            default -> Sort.by(Sort.Direction.ASC, "nextSessionDate");
-        };
+    /**
+     * Exact number of matching courses. Unlike a search, a request without
+     * criteria counts the whole catalog.
+     */
+    public long countCourses(SearchRequest request) {
+        return searchResultCache.count(request, courseSearchBackend::count);
     }
-}
\ No newline at end of file
+}
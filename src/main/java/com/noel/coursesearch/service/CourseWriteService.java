@@ -0,0 +1,230 @@
+package com.noel.coursesearch.service;
+
+import com.noel.coursesearch.backend.CourseSearchBackend;
+import com.noel.coursesearch.backend.CourseWrite;
+import com.noel.coursesearch.backend.RefreshMode;
+import com.noel.coursesearch.backend.WriteResult;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.dto.BatchWriteResponse;
+import com.noel.coursesearch.dto.CourseUpsert;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer in front of {@link CourseSearchBackend#write}. Writes are
+ * held for up to {@code flush-interval} and sent as one bulk request, so a
+ * course updated several times in that window is written once. A write
+ * replaced in the buffer by a newer one for the same course completes with the
+ * newer one's outcome, and hands it its refresh mode if that is stricter, so
+ * the caller still gets the visibility it asked for; a versioned write that is not newer than the buffered
+ * one is rejected straight away.
+ * <p>
+ * {@link RefreshMode#IMMEDIATE} flushes at once, {@link RefreshMode#WAIT_FOR}
+ * waits for the next flush and {@link RefreshMode#ASYNC} does not wait at all.
+ * Flushes run on a single thread, so writes reach the backend in order.
+ * <p>
+ * Each flush costs the embedded engine a rebuild of its whole index, so
+ * immediate flushes start at least {@code immediate-flush-spacing} apart, and
+ * the immediate writes arriving in between go out together with the next one.
+ * Rebuilds are then bounded by time rather than by the write rate.
+ */
+@Service
+@Slf4j
+public class CourseWriteService {
+
+    private final CourseSearchBackend courseSearchBackend;
+    private final CourseSearchProperties.Write config;
+    private final RefreshMode defaultRefresh;
+    private final ScheduledExecutorService flusher;
+    private final long immediateFlushSpacing;
+    // System.nanoTime() of the last flush that sent anything
+    private volatile long lastFlush;
+
+    // Guarded by itself; insertion order is the order writes are sent in
+    private final Map<String, Pending> buffer = new LinkedHashMap<>();
+
+    public CourseWriteService(CourseSearchBackend courseSearchBackend, CourseSearchProperties properties) {
+        this.courseSearchBackend = courseSearchBackend;
+        this.config = properties.getWrite();
+        this.defaultRefresh = RefreshMode.from(config.getRefresh());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "course-write-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.immediateFlushSpacing = config.getImmediateFlushSpacing().toNanos();
+        this.lastFlush = System.nanoTime() - immediateFlushSpacing;
+        long interval = config.getFlushInterval().toNanos();
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    public CompletableFuture<WriteResult> upsert(String id, CourseDocument course, Long version, String refresh) {
+        if (course.getId() == null) {
+            course.setId(id);
+        } else if (!course.getId().equals(id)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Course id " + course.getId() + " does not match the path id " + id);
+        }
+        return submit(CourseWrite.upsert(course, version), refreshMode(refresh), true);
+    }
+
+    public CompletableFuture<WriteResult> delete(String id, Long version, String refresh) {
+        return submit(CourseWrite.delete(id, version), refreshMode(refresh), true);
+    }
+
+    /**
+     * Buffers every course of the batch and completes once all of them have an
+     * outcome, reported in request order.
+     */
+    public CompletableFuture<BatchWriteResponse> upsertBatch(List<CourseUpsert> upserts, String refresh) {
+        int maxSize = config.getMaxBatchSize();
+        if (upserts.size() > maxSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "A batch holds at most " + maxSize + " courses, got " + upserts.size());
+        }
+        for (CourseUpsert upsert : upserts) {
+            if (upsert == null || upsert.getCourse() == null || upsert.getCourse().getId() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every batch entry needs a course with an id");
+            }
+        }
+
+        RefreshMode mode = refreshMode(refresh);
+        List<CompletableFuture<WriteResult>> results = new ArrayList<>(upserts.size());
+        for (int i = 0; i < upserts.size(); i++) {
+            CourseUpsert upsert = upserts.get(i);
+            // An immediate flush once the whole batch is buffered, not per course
+            results.add(submit(CourseWrite.upsert(upsert.getCourse(), upsert.getVersion()), mode, i == upserts.size() - 1));
+        }
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> new BatchWriteResponse(results.stream().map(CompletableFuture::join).toList()));
+    }
+
+    private CompletableFuture<WriteResult> submit(CourseWrite write, RefreshMode refresh, boolean flushIfImmediate) {
+        Pending pending;
+        boolean full;
+        boolean immediate;
+        synchronized (buffer) {
+            Pending buffered = buffer.get(write.id());
+            if (buffered != null && write.version() != null && buffered.write().version() != null
+                    && write.version() <= buffered.write().version()) {
+                return CompletableFuture.completedFuture(
+                        WriteResult.conflict(write.id(), write.version(), buffered.write().version()));
+            }
+            RefreshMode merged = buffered == null ? refresh : refresh.strictest(buffered.refresh());
+            pending = new Pending(write, merged, new CompletableFuture<>());
+            if (buffered != null) {
+                pending.result().whenComplete((result, error) -> {
+                    if (error != null) {
+                        buffered.result().completeExceptionally(error);
+                    } else {
+                        buffered.result().complete(result);
+                    }
+                });
+            }
+            buffer.put(write.id(), pending);
+            full = buffer.size() >= config.getMaxBuffered();
+            immediate = merged == RefreshMode.IMMEDIATE && flushIfImmediate;
+        }
+        if (full) {
+            requestFlush(0);
+        } else if (immediate) {
+            requestFlush(lastFlush + immediateFlushSpacing - System.nanoTime());
+        }
+
+        if (refresh == RefreshMode.ASYNC) {
+            return CompletableFuture.completedFuture(WriteResult.of(write.id(), WriteResult.Result.ACCEPTED, write.version()));
+        }
+        return pending.result();
+    }
+
+    private void requestFlush(long delayNanos) {
+        try {
+            if (delayNanos > 0) {
+                flusher.schedule(this::flush, delayNanos, TimeUnit.NANOSECONDS);
+            } else {
+                flusher.execute(this::flush);
+            }
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the final flush picks the write up
+            log.debug("Flush of course writes not scheduled: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Sends everything buffered as one backend write, refreshed as strictly as
+     * the strictest write in it asked for.
+     */
+    void flush() {
+        List<Pending> batch;
+        synchronized (buffer) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(buffer.values());
+            buffer.clear();
+        }
+        lastFlush = System.nanoTime();
+
+        RefreshMode refresh = RefreshMode.ASYNC;
+        List<CourseWrite> writes = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            writes.add(pending.write());
+            refresh = refresh.strictest(pending.refresh());
+        }
+
+        try {
+            List<WriteResult> results = courseSearchBackend.write(writes, refresh);
+            for (int i = 0; i < batch.size(); i++) {
+                WriteResult result = results.get(i);
+                if (result.result() == WriteResult.Result.CONFLICT || result.result() == WriteResult.Result.FAILED) {
+                    log.debug("Course write {} was not applied: {}", result.id(), result.error());
+                }
+                batch.get(i).result().complete(result);
+            }
+            log.debug("Flushed {} course writes with refresh {}", batch.size(), refresh);
+        } catch (RuntimeException e) {
+            log.error("Failed to flush {} course writes", batch.size(), e);
+            for (Pending pending : batch) {
+                pending.result().complete(WriteResult.failed(pending.write().id(), e.getMessage()));
+            }
+        }
+    }
+
+    private RefreshMode refreshMode(String refresh) {
+        if (refresh == null) {
+            return defaultRefresh;
+        }
+        try {
+            return RefreshMode.from(refresh);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Sends whatever is still buffered before the backend goes away.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(config.getFlushInterval().toMillis() * 10, TimeUnit.MILLISECONDS);
+        flush();
+    }
+
+    private record Pending(CourseWrite write, RefreshMode refresh, CompletableFuture<WriteResult> result) {
+    }
+}
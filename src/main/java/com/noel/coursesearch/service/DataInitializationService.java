@@ -1,47 +1,44 @@
 package com.noel.coursesearch.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.noel.coursesearch.document.CourseDocument;
-import com.noel.coursesearch.repository.CourseRepository;
+import com.noel.coursesearch.backend.CourseSearchBackend;
+import com.noel.coursesearch.config.CourseSearchProperties;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DataInitializationService implements CommandLineRunner {
 
-    private final CourseRepository courseRepository;
-    private final ElasticsearchOperations elasticsearchOperations;
-    private final ObjectMapper objectMapper;
+    private final CourseSearchBackend courseSearchBackend;
+    private final CourseIngestionPipeline courseIngestionPipeline;
+    private final ResourceLoader resourceLoader;
+    private final CourseSearchProperties properties;
 
     @Override
     public void run(String... args) {
         try {
-            // Check if index exists and has data
-            IndexCoordinates indexCoordinates = IndexCoordinates.of("courses");
-            if (elasticsearchOperations.indexOps(indexCoordinates).exists()) {
-                long count = courseRepository.count();
-                if (count > 0) {
-                    log.info("Courses index already exists with {} documents. Skipping data initialization.", count);
-                    return;
-                }
+            String mode = properties.getIngest().getMode();
+            if ("skip".equalsIgnoreCase(mode)) {
+                log.info("Data initialization disabled (coursesearch.ingest.mode=skip)");
+                return;
+            }
+            if ("reindex".equalsIgnoreCase(mode)) {
+                reindex();
+                return;
             }
 
-            // Create index if it doesn't exist
-            if (!elasticsearchOperations.indexOps(indexCoordinates).exists()) {
-                elasticsearchOperations.indexOps(indexCoordinates).create();
-                log.info("Created courses index");
+            // Check if the backend already has data
+            long count = courseSearchBackend.count();
+            if (count > 0) {
+                log.info("Courses index already exists with {} documents. Skipping data initialization.", count);
+                return;
             }
 
             // Load and index sample data
@@ -53,23 +50,28 @@ public class DataInitializationService implements CommandLineRunner {
     }
 
     private void loadSampleData() throws IOException {
-        ClassPathResource resource = new ClassPathResource("sample-courses.json");
+        String source = properties.getIngest().getSource();
+        Resource resource = resourceLoader.getResource(source);
 
         if (!resource.exists()) {
-            log.warn("sample-courses.json not found in resources. Skipping data initialization.");
+            log.warn("{} not found. Skipping data initialization.", source);
             return;
         }
 
-        // Configure ObjectMapper for LocalDateTime
-        objectMapper.registerModule(new JavaTimeModule());
+        // Stream the catalog through bounded bulk batches
+        IngestionReport report = courseIngestionPipeline.ingest(source);
 
-        // Read the JSON file
-        CourseDocument[] courses = objectMapper.readValue(resource.getInputStream(), CourseDocument[].class);
+        log.info("Successfully indexed {} courses", report.indexed());
+    }
 
-        // Bulk index all courses
-        List<CourseDocument> courseList = Arrays.asList(courses);
-        courseRepository.saveAll(courseList);
+    /**
+     * Rebuilds the whole catalog next to the live one and swaps it in once
+     * loaded, so searches keep being served from the old catalog meanwhile.
+     */
+    private void reindex() throws IOException {
+        String source = properties.getIngest().getSource();
+        IngestionReport report = courseIngestionPipeline.ingest(source, courseSearchBackend.openReindexSink());
 
-        log.info("Successfully indexed {} courses", courseList.size());
+        log.info("Reindexed {} courses from {}", report.indexed(), source);
     }
 }
\ No newline at end of file
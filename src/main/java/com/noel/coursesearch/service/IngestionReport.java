@@ -0,0 +1,14 @@
+package com.noel.coursesearch.service;
+
+import java.time.Duration;
+
+/**
+ * Summary of one run of the {@link CourseIngestionPipeline}.
+ */
+public record IngestionReport(long indexed, long failed, Duration elapsed) {
+
+    public double docsPerSecond() {
+        double seconds = elapsed.toNanos() / 1_000_000_000.0;
+        return seconds == 0 ? 0 : indexed / seconds;
+    }
+}
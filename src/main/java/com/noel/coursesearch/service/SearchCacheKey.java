@@ -0,0 +1,62 @@
+package com.noel.coursesearch.service;
+
+import com.noel.coursesearch.backend.SortMode;
+import com.noel.coursesearch.backend.TotalHitsMode;
+import com.noel.coursesearch.document.CourseField;
+import com.noel.coursesearch.dto.SearchRequest;
+import com.noel.coursesearch.engine.CourseFilter;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Normalized form of a {@link SearchRequest}: requests that must return the same
+ * results produce equal keys. Text is trimmed and lower-cased (both engines
+ * lower-case at analysis time), the sort parameter is reduced to its mode and
+ * the field projection to the set of fields it selects. The filter includes the
+ * upcoming-only limit {@link SortMode#RELEVANCE_UPCOMING} adds, so those keys
+ * change every minute.
+ */
+public record SearchCacheKey(String q, CourseFilter filter, SortMode sort, int page, int size, TotalHitsMode totalHits,
+                             Set<CourseField> fields) {
+
+    public static SearchCacheKey of(SearchRequest request) {
+        return of(request, SortMode.upcomingOrigin());
+    }
+
+    public static SearchCacheKey of(SearchRequest request, long now) {
+        return new SearchCacheKey(
+                normalizeText(request.getQ()),
+                CourseFilter.from(request, now),
+                SortMode.from(request.getSort()),
+                request.getPage(),
+                request.getSize(),
+                TotalHitsMode.from(request.getTotalHits()),
+                CourseField.parse(request.getFields()));
+    }
+
+    /**
+     * Key for the total-hit count, which does not depend on sort, paging or how
+     * precisely the request asked for it.
+     */
+    public TotalsKey totalsKey() {
+        return new TotalsKey(q, filter);
+    }
+
+    /**
+     * Whether the results depend on the current minute as well as on the index.
+     */
+    public boolean isMinuteBound() {
+        return sort == SortMode.RELEVANCE_UPCOMING;
+    }
+
+    private static String normalizeText(String q) {
+        if (q == null || q.trim().isEmpty()) {
+            return null;
+        }
+        return q.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public record TotalsKey(String q, CourseFilter filter) {
+    }
+}
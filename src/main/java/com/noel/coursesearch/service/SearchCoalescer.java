@@ -0,0 +1,132 @@
+package com.noel.coursesearch.service;
+
+import com.noel.coursesearch.backend.IndexGeneration;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.dto.SearchRequest;
+import com.noel.coursesearch.dto.SearchResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Single-flight in front of the search backend: while a search is running,
+ * identical searches wait for it and share its response instead of sending the
+ * same query again. Searches are identical when their {@link SearchCacheKey}s,
+ * facets flags and {@link IndexGeneration}s match, so a search that starts
+ * after a write never joins one that started before it.
+ * <p>
+ * The caller that starts a flight runs it on its own thread. The others wait
+ * at most {@code coursesearch.coalesce.max-wait}, then give up with a
+ * {@link SearchUnavailableException}; a failed flight fails every waiter with
+ * the same exception. Nothing is kept once a flight lands. Requests are counted
+ * as {@code search.coalesce.requests}, tagged {@code role=leader} or
+ * {@code role=follower}, so the coalescing ratio is followers over the total.
+ */
+@Component
+public class SearchCoalescer {
+
+    private final IndexGeneration indexGeneration;
+    private final boolean enabled;
+    private final Duration maxWait;
+    private final Map<Flight, CompletableFuture<SearchResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaders;
+    private final Counter followers;
+    private final Counter timeouts;
+
+    public SearchCoalescer(IndexGeneration indexGeneration, CourseSearchProperties properties, MeterRegistry meterRegistry) {
+        CourseSearchProperties.Coalesce config = properties.getCoalesce();
+        this.indexGeneration = indexGeneration;
+        this.enabled = config.isEnabled();
+        this.maxWait = config.getMaxWait();
+        this.leaders = requests(meterRegistry, "leader");
+        this.followers = requests(meterRegistry, "follower");
+        this.timeouts = Counter.builder("search.coalesce.timeouts")
+                .description("Searches that gave up waiting for an identical search in flight")
+                .register(meterRegistry);
+        Gauge.builder("search.coalesce.inflight", inFlight, Map::size)
+                .description("Distinct searches currently in flight")
+                .register(meterRegistry);
+    }
+
+    private static Counter requests(MeterRegistry registry, String role) {
+        return Counter.builder("search.coalesce.requests")
+                .description("Searches that reached the backend (leader) or shared an identical one in flight (follower)")
+                .tag("role", role)
+                .register(registry);
+    }
+
+    /**
+     * Runs {@code search}, or waits for an identical search already running and
+     * answers with a copy of its response.
+     */
+    public SearchResponse search(SearchRequest request, Function<SearchRequest, SearchResponse> search) {
+        if (!enabled || request.getCursor() != null) {
+            return search.apply(request);
+        }
+
+        Flight flight = new Flight(SearchCacheKey.of(request), request.isFacets(), indexGeneration.current());
+        CompletableFuture<SearchResponse> started = new CompletableFuture<>();
+        CompletableFuture<SearchResponse> running = inFlight.putIfAbsent(flight, started);
+        if (running == null) {
+            leaders.increment();
+            try {
+                SearchResponse response = search.apply(request);
+                started.complete(response);
+                return response;
+            } catch (RuntimeException | Error e) {
+                started.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(flight, started);
+            }
+        }
+
+        followers.increment();
+        return copy(await(running));
+    }
+
+    private SearchResponse await(CompletableFuture<SearchResponse> running) {
+        try {
+            return running.get(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new SearchUnavailableException("Search did not complete within " + maxWait.toMillis() + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SearchUnavailableException("Interrupted while waiting for the search to complete");
+        } catch (ExecutionException e) {
+            // Rethrown as is, so the waiter answers with the status the leader did
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Every waiter gets its own response object; the courses and facets it
+     * holds are shared, as they are for cache hits.
+     */
+    private static SearchResponse copy(SearchResponse response) {
+        return new SearchResponse(response.getTotal(), response.getTotalRelation(), response.getCourses(),
+                response.getPage(), response.getSize(), response.getTotalPages(), response.getNextCursor(),
+                response.getFacets());
+    }
+
+    private record Flight(SearchCacheKey key, boolean facets, long generation) {
+    }
+}
@@ -0,0 +1,129 @@
+package com.noel.coursesearch.service;
+
+import com.noel.coursesearch.config.CourseSearchProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs searches off the servlet thread, so a request waiting on the backend
+ * holds no Tomcat worker. At most {@code max-concurrency} searches reach the
+ * backend at once; beyond that, and past the per-request deadline, searches
+ * fail fast with {@link SearchUnavailableException} instead of queueing.
+ * <p>
+ * A permit is held until the backend call actually returns, even when its
+ * caller already gave up at the deadline, so the limit reflects real load on
+ * the backend. The backends answer synchronously, so every search in flight
+ * holds a worker; there is one worker per permit, which makes
+ * {@code max-concurrency} the only limit on searches in flight. A batch takes
+ * a permit per search it carries, up to all of them.
+ */
+@Component
+@Slf4j
+public class SearchExecutor {
+
+    private final boolean async;
+    private final Duration deadline;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final ExecutorService workers;
+    private final ScheduledThreadPoolExecutor deadlines;
+
+    public SearchExecutor(CourseSearchProperties properties) {
+        CourseSearchProperties.Execution config = properties.getExecution();
+        this.async = !"direct".equalsIgnoreCase(config.getMode());
+        this.deadline = config.getDeadline();
+        this.maxConcurrency = config.getMaxConcurrency();
+        this.permits = new Semaphore(config.getMaxConcurrency());
+        AtomicInteger counter = new AtomicInteger();
+        // One thread per permit, so an accepted search never waits for a thread
+        this.workers = Executors.newFixedThreadPool(config.getMaxConcurrency(), runnable -> {
+            Thread thread = new Thread(runnable, "course-search-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deadlines = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "course-search-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // A search that finishes in time takes its deadline out of the queue
+        deadlines.setRemoveOnCancelPolicy(true);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> search) {
+        return submit(1, search);
+    }
+
+    /**
+     * Runs a call that performs {@code searches} searches, such as a batch.
+     */
+    public <T> CompletableFuture<T> submit(int searches, Supplier<T> search) {
+        int count = Math.max(1, Math.min(searches, maxConcurrency));
+        if (!permits.tryAcquire(count)) {
+            return CompletableFuture.failedFuture(new SearchUnavailableException("Too many searches in flight"));
+        }
+        if (!async) {
+            try {
+                return CompletableFuture.completedFuture(search.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            } finally {
+                permits.release(count);
+            }
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timeout = deadlines.schedule(() -> {
+            if (result.completeExceptionally(new SearchUnavailableException("Search did not finish within " + deadline))) {
+                log.warn("Search abandoned after the {} deadline", deadline);
+            }
+        }, deadline.toNanos(), TimeUnit.NANOSECONDS);
+        try {
+            workers.execute(() -> {
+                T value;
+                try {
+                    value = search.get();
+                } catch (Throwable t) {
+                    timeout.cancel(false);
+                    permits.release(count);
+                    result.completeExceptionally(t);
+                    return;
+                }
+                // Released first, so whoever sees the result can search again
+                timeout.cancel(false);
+                permits.release(count);
+                result.complete(value);
+            });
+        } catch (RuntimeException e) {
+            timeout.cancel(false);
+            permits.release(count);
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Number of deadlines still scheduled, for tests.
+     */
+    int pendingDeadlines() {
+        return deadlines.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+        deadlines.shutdownNow();
+    }
+}
@@ -0,0 +1,293 @@
+package com.noel.coursesearch.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.noel.coursesearch.backend.IndexGeneration;
+import com.noel.coursesearch.backend.SortMode;
+import com.noel.coursesearch.backend.TotalHitsMode;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.document.CourseView;
+import com.noel.coursesearch.dto.SearchFacets;
+import com.noel.coursesearch.dto.SearchRequest;
+import com.noel.coursesearch.dto.SearchResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Two-tier cache in front of the search backend: result pages, weighed by their
+ * estimated heap size, and total-hit counts (with facets, when computed), which
+ * are shared by every page and sort of the same query. Both tiers use Caffeine's W-TinyLFU eviction.
+ * <p>
+ * Entries remember the {@link IndexGeneration} they were computed at and are
+ * ignored once the index has moved on, so a write is never followed by a stale
+ * read. {@link SortMode#RELEVANCE_UPCOMING} results are also keyed by, and
+ * expire with, the minute they were computed in, the granularity both backends
+ * measure session dates at. Hit, miss and eviction counts are published as {@code cache.*} metrics
+ * tagged {@code cache=search.pages} and {@code cache=search.totals}.
+ */
+@Component
+@Slf4j
+public class SearchResultCache {
+
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final IndexGeneration indexGeneration;
+    private final boolean enabled;
+    private final Cache<SearchCacheKey, PageEntry> pages;
+    private final Cache<SearchCacheKey.TotalsKey, TotalsEntry> totals;
+
+    private volatile long lastSeenGeneration;
+
+    public SearchResultCache(IndexGeneration indexGeneration, CourseSearchProperties properties, MeterRegistry meterRegistry) {
+        CourseSearchProperties.Cache config = properties.getCache();
+        this.indexGeneration = indexGeneration;
+        this.enabled = config.isEnabled();
+        this.pages = Caffeine.newBuilder()
+                .maximumWeight(config.getPagesMaxSize().toBytes())
+                .weigher((SearchCacheKey key, PageEntry entry) -> entry.weight())
+                .expireAfter(new UpToMinute<SearchCacheKey, PageEntry>(config.getExpireAfterWrite()))
+                .recordStats()
+                .build();
+        this.totals = Caffeine.newBuilder()
+                .maximumSize(config.getTotalsMaxEntries())
+                .expireAfter(new UpToMinute<SearchCacheKey.TotalsKey, TotalsEntry>(config.getExpireAfterWrite()))
+                .recordStats()
+                .build();
+        this.lastSeenGeneration = indexGeneration.current();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "search.pages");
+        CaffeineCacheMetrics.monitor(meterRegistry, totals, "search.totals");
+    }
+
+    /**
+     * Returns the cached response for {@code request}, or runs {@code search} and
+     * caches what it returns.
+     */
+    public SearchResponse get(SearchRequest request, Function<SearchRequest, SearchResponse> search) {
+        if (!enabled) {
+            return search.apply(request);
+        }
+
+        // Read the generation before searching, so a write that lands mid-search
+        // leaves this result tagged with the older generation
+        long generation = currentGeneration();
+        SearchCacheKey key = SearchCacheKey.of(request);
+        SearchResponse cached = lookup(key, request, generation);
+        if (cached != null) {
+            return cached;
+        }
+        SearchResponse response = search.apply(request);
+        store(key, request, generation, response);
+        return response;
+    }
+
+    /**
+     * Batch form of {@link #get}: answers what it can from the cache and hands
+     * every miss to a single call of {@code search}. Cursor requests are passed
+     * through uncached.
+     */
+    public List<CompletableFuture<SearchResponse>> getAll(
+            List<SearchRequest> requests,
+            Function<List<SearchRequest>, List<CompletableFuture<SearchResponse>>> search) {
+        if (!enabled) {
+            return search.apply(requests);
+        }
+
+        long generation = currentGeneration();
+        List<CompletableFuture<SearchResponse>> results = new ArrayList<>(requests.size());
+        List<SearchRequest> misses = new ArrayList<>();
+        List<SearchCacheKey> missKeys = new ArrayList<>();
+        List<Integer> missIndexes = new ArrayList<>();
+        for (SearchRequest request : requests) {
+            SearchCacheKey key = request.getCursor() == null ? SearchCacheKey.of(request) : null;
+            SearchResponse cached = key != null ? lookup(key, request, generation) : null;
+            if (cached == null) {
+                misses.add(request);
+                missKeys.add(key);
+                missIndexes.add(results.size());
+            }
+            results.add(cached == null ? null : CompletableFuture.completedFuture(cached));
+        }
+        if (misses.isEmpty()) {
+            return results;
+        }
+
+        List<CompletableFuture<SearchResponse>> searched = search.apply(misses);
+        for (int i = 0; i < misses.size(); i++) {
+            SearchRequest request = misses.get(i);
+            SearchCacheKey key = missKeys.get(i);
+            results.set(missIndexes.get(i), key == null ? searched.get(i) : searched.get(i).thenApply(response -> {
+                store(key, request, generation, response);
+                return response;
+            }));
+        }
+        return results;
+    }
+
+    private SearchResponse lookup(SearchCacheKey key, SearchRequest request, long generation) {
+        TotalHitsMode totalHitsMode = TotalHitsMode.from(request.getTotalHits());
+        long from = (long) request.getPage() * request.getSize();
+
+        PageEntry page = valid(pages.getIfPresent(key), generation);
+        TotalsEntry total = valid(totals.getIfPresent(key.totalsKey()), generation);
+        if (page != null && (!request.isFacets() || (total != null && total.facets() != null))) {
+            // An exact total answers every totalHits mode; otherwise reuse what
+            // this page reported under the same mode
+            TotalHitsMode.Total reported = total != null && total.total() != null
+                    ? totalHitsMode.of(total.total(), from, page.courses().size(), request.getSize())
+                    : page.reported();
+            if (reported != null && (reported.isExact() || !totalHitsMode.isExact())) {
+                SearchResponse response = SearchResponse.of(reported.value(), reported.relation(), page.courses(),
+                        request.getPage(), request.getSize());
+                if (request.isFacets()) {
+                    response.setFacets(total.facets());
+                }
+                return response;
+            }
+        }
+        return null;
+    }
+
+    private void store(SearchCacheKey key, SearchRequest request, long generation, SearchResponse response) {
+        TotalHitsMode totalHitsMode = TotalHitsMode.from(request.getTotalHits());
+        TotalsEntry total = valid(totals.getIfPresent(key.totalsKey()), generation);
+
+        List<? extends CourseView> courses = response.getCourses() == null ? List.of() : List.copyOf(response.getCourses());
+        TotalHitsMode.Total reported = new TotalHitsMode.Total(response.getTotal(), response.getTotalRelation());
+        pages.put(key, new PageEntry(generation, key.isMinuteBound(), courses, reported, estimateWeight(courses)));
+
+        // Only exact totals are shared across totalHits modes, and a response
+        // without facets must not drop the ones already cached
+        Long exactTotal = totalHitsMode.isExact() && reported.isExact() ? response.getTotal() : null;
+        if (exactTotal == null && total != null) {
+            exactTotal = total.total();
+        }
+        SearchFacets facets = response.getFacets() != null ? response.getFacets() : total == null ? null : total.facets();
+        if (exactTotal != null || facets != null) {
+            totals.put(key.totalsKey(), new TotalsEntry(generation, key.isMinuteBound(), exactTotal, facets));
+        }
+    }
+
+    /**
+     * Returns the cached exact total for the criteria of {@code request}, or runs
+     * {@code count} and caches what it returns. Shares entries with {@link #get}.
+     */
+    public long count(SearchRequest request, ToLongFunction<SearchRequest> count) {
+        if (!enabled) {
+            return count.applyAsLong(request);
+        }
+
+        long generation = currentGeneration();
+        SearchCacheKey key = SearchCacheKey.of(request);
+        TotalsEntry total = valid(totals.getIfPresent(key.totalsKey()), generation);
+        if (total != null && total.total() != null) {
+            return total.total();
+        }
+
+        long value = count.applyAsLong(request);
+        totals.put(key.totalsKey(), new TotalsEntry(generation, key.isMinuteBound(), value,
+                total == null ? null : total.facets()));
+        return value;
+    }
+
+    private long currentGeneration() {
+        long generation = indexGeneration.current();
+        if (generation != lastSeenGeneration) {
+            // Old entries can never be served again, so free their memory right away
+            lastSeenGeneration = generation;
+            pages.invalidateAll();
+            totals.invalidateAll();
+            log.debug("Index generation moved to {}, search cache cleared", generation);
+        }
+        return generation;
+    }
+
+    private static int estimateWeight(List<? extends CourseView> courses) {
+        long bytes = 64;
+        for (CourseView course : courses) {
+            bytes += 128
+                    + stringBytes(course.getId())
+                    + stringBytes(course.getTitle())
+                    + stringBytes(course.getDescription())
+                    + stringBytes(course.getCategory())
+                    + stringBytes(course.getGradeRange());
+            if (course.getSuggest() != null) {
+                for (String suggestion : course.getSuggest()) {
+                    bytes += 16 + stringBytes(suggestion);
+                }
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 40 + value.length();
+    }
+
+    private static <E extends Generational> E valid(E entry, long generation) {
+        return entry != null && entry.generation() == generation ? entry : null;
+    }
+
+    private interface Generational {
+        long generation();
+
+        /**
+         * Whether the entry only holds for the minute it was computed in.
+         */
+        boolean minuteBound();
+    }
+
+    private record PageEntry(long generation, boolean minuteBound, List<? extends CourseView> courses,
+                             TotalHitsMode.Total reported, int weight) implements Generational {
+    }
+
+    /**
+     * Per-query data shared by every page and sort. {@code total} is only set
+     * when it is exact.
+     */
+    private record TotalsEntry(long generation, boolean minuteBound, Long total, SearchFacets facets)
+            implements Generational {
+    }
+
+    /**
+     * Expires entries {@code expireAfterWrite} after they are written, or at the
+     * end of the minute for minute-bound ones if that comes first.
+     */
+    private static final class UpToMinute<K, V extends Generational> implements Expiry<K, V> {
+        private final long expireAfterWriteNanos;
+
+        UpToMinute(Duration expireAfterWrite) {
+            this.expireAfterWriteNanos = expireAfterWrite.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(K key, V value, long currentTime) {
+            if (!value.minuteBound()) {
+                return expireAfterWriteNanos;
+            }
+            long leftInMinute = TimeUnit.MILLISECONDS.toNanos(MINUTE_MILLIS - System.currentTimeMillis() % MINUTE_MILLIS);
+            return Math.min(expireAfterWriteNanos, leftInMinute);
+        }
+
+        @Override
+        public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.noel.coursesearch.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A search turned away because the backend is saturated or too slow to answer
+ * within the request deadline. Clients may retry later.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class SearchUnavailableException extends RuntimeException {
+
+    public SearchUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,131 @@
+package com.noel.coursesearch.service;
+
+import com.noel.coursesearch.backend.CourseIndexChangedEvent;
+import com.noel.coursesearch.backend.CourseSearchBackend;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.dto.SuggestRequest;
+import com.noel.coursesearch.dto.SuggestResponse;
+import com.noel.coursesearch.engine.SuggestTrie;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Answers typeahead requests from a {@link SuggestTrie}, so keystrokes never
+ * reach the full-text path. The trie is built from the backend once the
+ * application is ready and then follows {@link CourseIndexChangedEvent}s:
+ * document-level changes are applied in place, anything larger rebuilds it.
+ * Updates run one at a time on a background thread, in the order the changes
+ * happened. Until the first build finishes, the backend's own suggester is used.
+ */
+@Service
+@Slf4j
+public class SuggestService {
+
+    private final CourseSearchBackend courseSearchBackend;
+    private final CourseSearchProperties.Suggest config;
+    private final ExecutorService updates = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "suggest-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    private volatile SuggestTrie trie;
+
+    public SuggestService(CourseSearchBackend courseSearchBackend, CourseSearchProperties properties) {
+        this.courseSearchBackend = courseSearchBackend;
+        this.config = properties.getSuggest();
+    }
+
+    public SuggestResponse suggest(SuggestRequest request) {
+        if (request.getPrefix() == null || request.getPrefix().isBlank()) {
+            return new SuggestResponse(List.of());
+        }
+        request.setLimit(Math.max(1, Math.min(request.getLimit(), config.getMaxLimit())));
+
+        SuggestTrie current = trie;
+        if (current == null) {
+            return new SuggestResponse(courseSearchBackend.suggest(request));
+        }
+        String category = request.getCategory() == null || request.getCategory().isBlank() ? null : request.getCategory();
+        List<SuggestTrie.Suggestion> matches = request.isFuzzy()
+                ? current.completeFuzzy(request.getPrefix(), category, request.getLimit())
+                : current.complete(request.getPrefix(), category, request.getLimit());
+        return new SuggestResponse(matches.stream()
+                .map(match -> new SuggestResponse.Suggestion(match.text(), match.weight()))
+                .toList());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleRebuild();
+    }
+
+    @EventListener
+    public void onIndexChanged(CourseIndexChangedEvent event) {
+        if (!config.isInMemory()) {
+            return;
+        }
+        if (event.rebuilt()) {
+            scheduleRebuild();
+            return;
+        }
+        updates.execute(() -> {
+            SuggestTrie current = trie;
+            // Before the first build there is nothing to patch; the build will see the change
+            if (current != null) {
+                event.upserted().forEach(current::upsert);
+                event.deletedIds().forEach(current::remove);
+            }
+        });
+    }
+
+    /**
+     * Waits until every change announced so far has reached the trie.
+     */
+    public void awaitUpdates(Duration timeout) throws InterruptedException, TimeoutException {
+        try {
+            updates.submit(() -> { }).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        updates.shutdownNow();
+    }
+
+    private void scheduleRebuild() {
+        if (!config.isInMemory() || !rebuildPending.compareAndSet(false, true)) {
+            return;
+        }
+        updates.execute(() -> {
+            // Cleared first, so a change landing mid-build schedules another one
+            rebuildPending.set(false);
+            long start = System.nanoTime();
+            try (Stream<CourseDocument> courses = courseSearchBackend.streamAll()) {
+                SuggestTrie rebuilt = SuggestTrie.build(courses::iterator);
+                trie = rebuilt;
+                log.info("Built suggest index over {} courses in {} ms", rebuilt.courseCount(),
+                        (System.nanoTime() - start) / 1_000_000);
+            } catch (RuntimeException e) {
+                log.warn("Failed to build suggest index, serving suggestions from the backend", e);
+            }
+        });
+    }
+}
@@ -0,0 +1,228 @@
+package com.noel.coursesearch.backend;
+
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.dto.SearchRequest;
+import com.noel.coursesearch.dto.SearchResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EmbeddedCourseSearchBackendTest {
+
+    private final IndexGeneration indexGeneration = new IndexGeneration(event -> {
+    });
+    private final EmbeddedCourseSearchBackend backend = 
+            new EmbeddedCourseSearchBackend(indexGeneration, new CourseSearchProperties(),
+                    new SearchMetrics(new SimpleMeterRegistry(), new CourseSearchProperties()));
+
+    @Test
+    void reindexReplacesCatalogOnlyWhenComplete() {
+        backend.indexAll(List.of(course("1", "Math"), course("2", "Art")));
+        long generation = indexGeneration.current();
+
+        BulkSink sink = backend.openReindexSink();
+        sink.write(List.of(course("3", "Science")));
+
+        // Still serving the old catalog while the new one loads
+        assertEquals(2, backend.count());
+        assertEquals(1, backend.search(categoryRequest("Math")).getTotal());
+
+        sink.complete();
+
+        assertEquals(1, backend.count());
+        assertEquals(0, backend.search(categoryRequest("Math")).getTotal());
+        assertEquals(1, backend.search(categoryRequest("Science")).getTotal());
+        assertEquals(generation + 1, indexGeneration.current());
+    }
+
+    @Test
+    void bulkLoadMergesIntoCatalog() {
+        backend.indexAll(List.of(course("1", "Math")));
+        backend.indexAll(List.of(course("1", "Art"), course("2", "Art")));
+
+        assertEquals(2, backend.count());
+        assertEquals(2, backend.search(categoryRequest("Art")).getTotal());
+    }
+
+    @Test
+    void cursorWalkReadsOneSnapshot() {
+        backend.indexAll(List.of(course("1", "Math"), course("2", "Math"), course("3", "Math")));
+
+        SearchRequest request = categoryRequest("Math");
+        request.setSize(2);
+        request.setCursor(SearchCursor.START);
+        SearchResponse first = backend.search(request);
+
+        // Written mid-walk, so not part of it
+        backend.indexAll(List.of(course("4", "Math")));
+
+        request.setCursor(first.getNextCursor());
+        SearchResponse second = backend.search(request);
+
+        List<String> ids = new ArrayList<>();
+        first.getCourses().forEach(course -> ids.add(course.getId()));
+        second.getCourses().forEach(course -> ids.add(course.getId()));
+        assertEquals(List.of("1", "2", "3"), ids);
+        assertEquals(3, second.getTotal());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void cursorIsBoundToItsQuery() {
+        backend.indexAll(List.of(course("1", "Math"), course("2", "Math")));
+
+        SearchRequest request = categoryRequest("Math");
+        request.setSize(1);
+        request.setCursor(SearchCursor.START);
+        String next = backend.search(request).getNextCursor();
+
+        SearchRequest other = categoryRequest("Art");
+        other.setCursor(next);
+        assertThrows(InvalidCursorException.class, () -> backend.search(other));
+    }
+
+    @Test
+    void cursorWithTheWrongShapeIsInvalid() {
+        backend.indexAll(List.of(course("1", "Math"), course("2", "Math")));
+        SearchRequest request = categoryRequest("Math");
+        request.setSize(1);
+        request.setCursor(SearchCursor.START);
+        String pointInTime = SearchCursor.decode(backend.search(request).getNextCursor(), request).pointInTime();
+
+        for (List<Object> searchAfter : List.<List<Object>>of(List.of(), List.of("0"), List.of(0.5), List.of(List.of(0)))) {
+            request.setCursor(SearchCursor.of(pointInTime, searchAfter, request).encode());
+            assertThrows(InvalidCursorException.class, () -> backend.search(request), searchAfter.toString());
+        }
+    }
+
+    @Test
+    void versionedWritesRejectStaleVersions() {
+        List<WriteResult> results = backend.write(List.of(
+                CourseWrite.upsert(course("1", "Math"), 5L),
+                CourseWrite.upsert(course("1", "Art"), 4L),
+                CourseWrite.upsert(course("2", "Art"), null)), RefreshMode.WAIT_FOR);
+
+        assertEquals(WriteResult.Result.CREATED, results.get(0).result());
+        assertEquals(WriteResult.Result.CONFLICT, results.get(1).result());
+        assertEquals(5L, results.get(1).version());
+        assertEquals(1L, results.get(2).version());
+        assertEquals(1, backend.search(categoryRequest("Math")).getTotal());
+
+        // A delete leaves its version behind, so an older upsert cannot bring the course back
+        assertEquals(WriteResult.Result.DELETED,
+                backend.write(List.of(CourseWrite.delete("1", 6L)), RefreshMode.WAIT_FOR).get(0).result());
+        assertEquals(WriteResult.Result.CONFLICT,
+                backend.write(List.of(CourseWrite.upsert(course("1", "Math"), 6L)), RefreshMode.WAIT_FOR).get(0).result());
+        assertEquals(0, backend.search(categoryRequest("Math")).getTotal());
+        assertEquals(1, backend.count());
+    }
+
+    @Test
+    void deletedVersionsAreDroppedAfterTheRetention() {
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getWrite().setTombstoneRetention(Duration.ZERO);
+        EmbeddedCourseSearchBackend backend = new EmbeddedCourseSearchBackend(indexGeneration, properties,
+                new SearchMetrics(new SimpleMeterRegistry(), properties));
+
+        backend.write(List.of(CourseWrite.upsert(course("1", "Math"), 5L)), RefreshMode.WAIT_FOR);
+        backend.write(List.of(CourseWrite.delete("1", 6L)), RefreshMode.WAIT_FOR);
+
+        // Past the retention the course is gone for good, so any version recreates it
+        WriteResult recreated = backend.write(List.of(CourseWrite.upsert(course("1", "Math"), 2L)), RefreshMode.WAIT_FOR).get(0);
+        assertEquals(WriteResult.Result.CREATED, recreated.result());
+        assertEquals(2L, recreated.version());
+        // A live course keeps its version
+        assertEquals(WriteResult.Result.CONFLICT,
+                backend.write(List.of(CourseWrite.upsert(course("1", "Art"), 2L)), RefreshMode.WAIT_FOR).get(0).result());
+    }
+
+    @Test
+    void retireRemovesCoursesWhoseSessionHasPassed() {
+        CourseDocument past = course("1", "Math");
+        past.setNextSessionDate(OffsetDateTime.now().minusDays(40));
+        CourseDocument undated = course("3", "Math");
+        undated.setNextSessionDate(null);
+        backend.indexAll(List.of(past, course("2", "Math"), undated));
+        long generation = indexGeneration.current();
+
+        assertEquals(1, backend.retire(Instant.now().minus(Duration.ofDays(30))));
+
+        assertEquals(2, backend.count());
+        assertEquals(2, backend.search(categoryRequest("Math")).getTotal());
+        assertEquals(generation + 1, indexGeneration.current());
+        assertEquals(0, backend.retire(Instant.now().minus(Duration.ofDays(30))));
+    }
+
+    @Test
+    void restartOpensTheSnapshotOfTheLastLoad(@TempDir Path dir) {
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getSnapshot().setPath(dir.resolve("courses.idx").toString());
+        CourseDocument sparse = new CourseDocument("3", "Ünïcode course", null, null, null, null, "K-2", null, null, null,
+                OffsetDateTime.parse("2030-01-01T09:30:00.123456789+05:30"));
+        List<CourseDocument> courses = List.of(course("1", "Math"), course("2", "Art"), sparse);
+        new EmbeddedCourseSearchBackend(indexGeneration, properties, new SearchMetrics(new SimpleMeterRegistry(), properties))
+                .indexAll(courses);
+
+        EmbeddedCourseSearchBackend restarted =
+                new EmbeddedCourseSearchBackend(indexGeneration, properties, new SearchMetrics(new SimpleMeterRegistry(), properties));
+
+        assertEquals(3, restarted.count());
+        assertEquals(courses, restarted.streamAll().collect(Collectors.toList()));
+        SearchRequest request = categoryRequest("Math");
+        request.setQ("course");
+        assertEquals("1", restarted.search(request).getCourses().get(0).getId());
+
+        // Changes start from the catalog the snapshot holds, and are written back to it
+        restarted.write(List.of(CourseWrite.delete("2", null)), RefreshMode.WAIT_FOR);
+        assertEquals(2, restarted.count());
+        assertEquals(1, restarted.search(categoryRequest("Math")).getTotal());
+        restarted.retire(Instant.parse("2031-01-01T00:00:00Z"));
+        assertEquals(0, new EmbeddedCourseSearchBackend(indexGeneration, properties,
+                new SearchMetrics(new SimpleMeterRegistry(), properties)).count());
+    }
+
+    @Test
+    void restartLoadsAgainWhenTheSourceChanged(@TempDir Path dir) throws IOException {
+        Path source = dir.resolve("courses.json");
+        Files.writeString(source, "[]");
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getIngest().setSource(source.toUri().toString());
+        properties.getSnapshot().setPath(dir.resolve("courses.idx").toString());
+        new EmbeddedCourseSearchBackend(indexGeneration, properties, new SearchMetrics(new SimpleMeterRegistry(), properties))
+                .indexAll(List.of(course("1", "Math")));
+
+        assertEquals(1, new EmbeddedCourseSearchBackend(indexGeneration, properties,
+                new SearchMetrics(new SimpleMeterRegistry(), properties)).count());
+
+        Files.writeString(source, "[{\"id\":\"1\"}]");
+        // Starts empty, so the startup load reads the changed source
+        assertEquals(0, new EmbeddedCourseSearchBackend(indexGeneration, properties,
+                new SearchMetrics(new SimpleMeterRegistry(), properties)).count());
+    }
+
+    private static SearchRequest categoryRequest(String category) {
+        SearchRequest request = new SearchRequest();
+        request.setCategory(category);
+        return request;
+    }
+
+    private static CourseDocument course(String id, String category) {
+        return new CourseDocument(id, "Course " + id, List.of(), "Description " + id, category,
+                CourseDocument.CourseType.COURSE, null, 8, 12, 50.0, OffsetDateTime.now().plusDays(1));
+    }
+}
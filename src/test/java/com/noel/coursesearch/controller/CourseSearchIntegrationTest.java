@@ -14,6 +14,8 @@ import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
 import org.testcontainers.elasticsearch.ElasticsearchContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
@@ -22,6 +24,7 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.util.List;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -81,9 +84,19 @@ class CourseSearchIntegrationTest {
         }
     }
 
+    /**
+     * Searches run asynchronously, so the response is only written on the async dispatch.
+     */
+    private ResultActions search(String url) throws Exception {
+        MvcResult result = mockMvc.perform(get(url))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
     @Test
     void testSearchWithoutFilters() throws Exception {
-        mockMvc.perform(get("/api/search"))
+        search("/api/search")
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.total").value(3))
                 .andExpect(jsonPath("$.courses").isArray())
@@ -92,7 +105,7 @@ class CourseSearchIntegrationTest {
 
     @Test
     void testSearchWithTextQuery() throws Exception {
-        mockMvc.perform(get("/api/search?q=Java"))
+        search("/api/search?q=Java")
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.total").value(1))
                 .andExpect(jsonPath("$.courses[0].title").value("Java Programming"));
@@ -100,7 +113,7 @@ class CourseSearchIntegrationTest {
 
     @Test
     void testSearchWithCategoryFilter() throws Exception {
-        mockMvc.perform(get("/api/search?category=Art"))
+        search("/api/search?category=Art")
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.total").value(1))
                 .andExpect(jsonPath("$.courses[0].category").value("Art"));
@@ -108,14 +121,14 @@ class CourseSearchIntegrationTest {
 
     @Test
     void testSearchWithAgeFilter() throws Exception {
-        mockMvc.perform(get("/api/search?minAge=8&maxAge=10"))
+        search("/api/search?minAge=8&maxAge=10")
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.total").value(2)); // Art and Science courses
     }
 
     @Test
     void testSearchWithPriceFilter() throws Exception {
-        mockMvc.perform(get("/api/search?minPrice=20&maxPrice=30"))
+        search("/api/search?minPrice=20&maxPrice=30")
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.total").value(1))
                 .andExpect(jsonPath("$.courses[0].price").value(25.00));
@@ -123,7 +136,7 @@ class CourseSearchIntegrationTest {
 
     @Test
     void testSearchWithPagination() throws Exception {
-        mockMvc.perform(get("/api/search?page=0&size=2"))
+        search("/api/search?page=0&size=2")
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.total").value(3))
                 .andExpect(jsonPath("$.courses.length()").value(2))
@@ -132,7 +145,7 @@ class CourseSearchIntegrationTest {
 
     @Test
     void testSearchWithPriceSorting() throws Exception {
-        mockMvc.perform(get("/api/search?sort=priceAsc"))
+        search("/api/search?sort=priceAsc")
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.courses[0].price").value(15.00))
                 .andExpect(jsonPath("$.courses[1].price").value(25.00))
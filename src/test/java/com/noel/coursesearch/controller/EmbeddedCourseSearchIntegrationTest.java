@@ -0,0 +1,416 @@
+package com.noel.coursesearch.controller;
+
+import com.noel.coursesearch.backend.CourseSearchBackend;
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.service.DataInitializationService;
+import com.noel.coursesearch.service.SuggestService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "coursesearch.backend=embedded")
+@AutoConfigureMockMvc
+class EmbeddedCourseSearchIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CourseSearchBackend courseSearchBackend;
+
+    @Autowired
+    private SuggestService suggestService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Keep the sample catalog out of the index so assertions only see the test data
+    @MockBean
+    private DataInitializationService dataInitializationService;
+
+    @BeforeEach
+    void setUp() {
+        List<CourseDocument> testCourses = List.of(
+                new CourseDocument("1", "Java Programming", List.of("java","programming"),"Learn Java programming fundamentals",
+                        "Programming", CourseDocument.CourseType.COURSE, "6th-8th", 12, 15, 99.99,
+                        OffsetDateTime.now().plusDays(5)),
+                new CourseDocument("2", "Art for Kids",List.of("art","kids"), "Creative art sessions for children",
+                        "Art", CourseDocument.CourseType.ONE_TIME, "1st-3rd", 6, 9, 25.00,
+                        OffsetDateTime.now().plusDays(2)),
+                new CourseDocument("3", "Science Club",List.of("science","club"), "Weekly science experiments and discovery",
+                        "Science", CourseDocument.CourseType.CLUB, "4th-6th", 9, 12, 15.00,
+                        OffsetDateTime.now().plusDays(7))
+        );
+
+        courseSearchBackend.indexAll(testCourses);
+    }
+
+    /**
+     * Searches run asynchronously, so the response is only written on the async dispatch.
+     */
+    private ResultActions search(String url) throws Exception {
+        return dispatch(get(url));
+    }
+
+    private ResultActions dispatch(MockHttpServletRequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
+    @Test
+    void testSearchWithoutFilters() throws Exception {
+        search("/api/search")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(0));
+    }
+
+    @Test
+    void testSearchWithTextQuery() throws Exception {
+        search("/api/search?q=Java")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.courses[0].title").value("Java Programming"));
+    }
+
+    @Test
+    void testSearchToleratesTyposAndExpandsSynonyms() throws Exception {
+        search("/api/search?q=Jvaa")
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.courses[0].title").value("Java Programming"));
+        search("/api/search?q=sci")
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.courses[0].title").value("Science Club"));
+        search("/api/search?q=prog")
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.courses[0].title").value("Java Programming"));
+    }
+
+    @Test
+    void testSearchWithRelevanceSorting() throws Exception {
+        // Both terms hit one title each; the shorter title scores higher under BM25
+        search("/api/search?q=science art&sort=relevance")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(2))
+                .andExpect(jsonPath("$.courses[0].id").value("3"))
+                .andExpect(jsonPath("$.courses[1].id").value("2"));
+    }
+
+    @Test
+    void testSearchWithCategoryFilter() throws Exception {
+        search("/api/search?category=Art")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.courses[0].category").value("Art"));
+    }
+
+    @Test
+    void testSearchWithTypeFilter() throws Exception {
+        search("/api/search?type=CLUB")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.courses[0].title").value("Science Club"));
+    }
+
+    @Test
+    void testSearchWithAgeFilter() throws Exception {
+        search("/api/search?minAge=8&maxAge=10")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(2)); // Art and Science courses
+    }
+
+    @Test
+    void testSearchWithPriceFilter() throws Exception {
+        search("/api/search?minPrice=20&maxPrice=30")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.courses[0].price").value(25.00));
+    }
+
+    @Test
+    void testSearchWithPagination() throws Exception {
+        search("/api/search?maxPrice=1000&page=0&size=2")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.courses.length()").value(2))
+                .andExpect(jsonPath("$.totalPages").value(2));
+    }
+
+    @Test
+    void testSearchWithUpcomingSorting() throws Exception {
+        search("/api/search?maxPrice=1000")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.courses[0].id").value("2"))
+                .andExpect(jsonPath("$.courses[1].id").value("1"))
+                .andExpect(jsonPath("$.courses[2].id").value("3"));
+    }
+
+    @Test
+    void testCachedResultsAreInvalidatedByWrites() throws Exception {
+        search("/api/search?category=Music")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(0));
+
+        // Priced out of the other tests' ranges so it does not disturb their counts
+        courseSearchBackend.indexAll(List.of(
+                new CourseDocument("4", "Piano Lessons", List.of("piano"), "Private piano lessons",
+                        "Music", CourseDocument.CourseType.ONE_TIME, null, null, null, 5000.00,
+                        OffsetDateTime.now().plusDays(3))));
+
+        search("/api/search?category=Music")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.courses[0].title").value("Piano Lessons"));
+    }
+
+    @Test
+    void testRelevanceUpcomingDoesNotShareCachedTotals() throws Exception {
+        courseSearchBackend.indexAll(List.of(
+                new CourseDocument("5", "History Walk", List.of("history"), "Past history walk",
+                        "History", CourseDocument.CourseType.ONE_TIME, null, null, null, 6000.00,
+                        OffsetDateTime.now().minusDays(3)),
+                new CourseDocument("6", "History Talk", List.of("history"), "Upcoming history talk",
+                        "History", CourseDocument.CourseType.ONE_TIME, null, null, null, 6000.00,
+                        OffsetDateTime.now().plusDays(3))));
+
+        search("/api/search?q=history&category=History&facets=true")
+                .andExpect(jsonPath("$.total").value(2))
+                .andExpect(jsonPath("$.facets.category.History").value(2));
+        // Past sessions are left out when ranking by upcoming ones
+        search("/api/search?q=history&category=History&facets=true&sort=relevanceUpcoming")
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.facets.category.History").value(1))
+                .andExpect(jsonPath("$.courses[0].id").value("6"));
+        mockMvc.perform(get("/api/search/count?q=history&category=History"))
+                .andExpect(jsonPath("$.count").value(2));
+    }
+
+    @Test
+    void testSearchWithPriceSorting() throws Exception {
+        search("/api/search?maxPrice=1000&sort=priceAsc")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.courses[0].price").value(15.00))
+                .andExpect(jsonPath("$.courses[1].price").value(25.00))
+                .andExpect(jsonPath("$.courses[2].price").value(99.99));
+    }
+
+    @Test
+    void testSearchWithTotalHitsModes() throws Exception {
+        search("/api/search?maxPrice=1000&size=2")
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.totalRelation").value("eq"));
+
+        search("/api/search?maxPrice=1000&size=2&totalHits=1")
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.totalRelation").value("gte"))
+                .andExpect(jsonPath("$.courses.length()").value(2));
+
+        // Without tracking, only what the page proves: two hits, maybe more
+        search("/api/search?maxPrice=1000&size=2&totalHits=none")
+                .andExpect(jsonPath("$.total").value(2))
+                .andExpect(jsonPath("$.totalRelation").value("gte"));
+
+        search("/api/search?maxPrice=1000&size=2&page=1&totalHits=none")
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.totalRelation").value("eq"));
+
+        // A page past the end says nothing about the hits before it
+        search("/api/search?maxPrice=1000&size=2&page=5&totalHits=none")
+                .andExpect(jsonPath("$.total").value(0))
+                .andExpect(jsonPath("$.totalRelation").value("gte"));
+
+        search("/api/search?maxPrice=1000&totalHits=exact")
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.totalRelation").value("eq"));
+        search("/api/search?maxPrice=1000&totalHits=most")
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testSearchRejectsInvalidPages() throws Exception {
+        search("/api/search?maxPrice=1000&page=-1")
+                .andExpect(status().isBadRequest());
+        search("/api/search?maxPrice=1000&size=0")
+                .andExpect(status().isBadRequest());
+        search("/api/search?maxPrice=1000&size=101")
+                .andExpect(status().isBadRequest());
+
+        // The offset overflows an int, but the page is just past the end
+        search("/api/search?maxPrice=1000&size=100&page=" + Integer.MAX_VALUE)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.courses.length()").value(0));
+    }
+
+    @Test
+    void testCount() throws Exception {
+        mockMvc.perform(get("/api/search/count?minAge=8&maxAge=10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2));
+
+        mockMvc.perform(get("/api/search/count?q=java"))
+                .andExpect(jsonPath("$.count").value(1));
+    }
+
+    @Test
+    void testSearchWithFacets() throws Exception {
+        // The selected category keeps the counts of its siblings
+        search("/api/search?category=Art&maxPrice=1000&facets=true")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.facets.category.Art").value(1))
+                .andExpect(jsonPath("$.facets.category.Science").value(1))
+                .andExpect(jsonPath("$.facets.category.Programming").value(1))
+                .andExpect(jsonPath("$.facets.type.ONE_TIME").value(1))
+                .andExpect(jsonPath("$.facets.type.CLUB").doesNotExist())
+                .andExpect(jsonPath("$.facets.price[0].key").value("0-50"))
+                .andExpect(jsonPath("$.facets.price[0].count").value(1));
+    }
+
+    @Test
+    void testSearchWithFieldProjection() throws Exception {
+        search("/api/search?q=Java&fields=title,nextSessionDate")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.courses[0].id").value("1"))
+                .andExpect(jsonPath("$.courses[0].title").value("Java Programming"))
+                .andExpect(jsonPath("$.courses[0].nextSessionDate").isString())
+                .andExpect(jsonPath("$.courses[0].price").doesNotExist())
+                .andExpect(jsonPath("$.courses[0].description").doesNotExist());
+
+        search("/api/search?q=Java&fields=-description,-suggest")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.courses[0].price").value(99.99))
+                .andExpect(jsonPath("$.courses[0].description").doesNotExist())
+                .andExpect(jsonPath("$.courses[0].suggest").doesNotExist());
+    }
+
+    @Test
+    void testBatchSearch() throws Exception {
+        String body = """
+                [
+                  {"type": "CLUB"},
+                  {"maxPrice": 1000, "sort": "priceAsc", "size": 2},
+                  {},
+                  {"q": "java", "cursor": "not-a-cursor"}
+                ]
+                """;
+
+        // Entries answer in request order; a bad entry fails alone
+        dispatch(post("/api/search/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.responses.length()").value(4))
+                .andExpect(jsonPath("$.responses[0].status").value(200))
+                .andExpect(jsonPath("$.responses[0].response.courses[0].title").value("Science Club"))
+                .andExpect(jsonPath("$.responses[1].response.total").value(3))
+                .andExpect(jsonPath("$.responses[1].response.courses[0].price").value(15.00))
+                .andExpect(jsonPath("$.responses[2].response.total").value(0))
+                .andExpect(jsonPath("$.responses[3].status").value(400))
+                .andExpect(jsonPath("$.responses[3].error").isString());
+    }
+
+    @Test
+    void testSearchStagesAreTimed() throws Exception {
+        search("/api/search?q=java&category=Programming&sort=relevance")
+                .andExpect(status().isOk());
+        search("/api/search");
+
+        for (String stage : List.of("total", "build", "backend", "mapping", "serialization")) {
+            Timer timer = meterRegistry.find("search.stage.detail")
+                    .tags("stage", stage, "backend", "embedded", "sort", "relevance", "text", "true", "filters", "category")
+                    .timer();
+            assertNotNull(timer, stage);
+            assertTrue(timer.count() > 0, stage);
+            // The histogram timer carries only the stage and the backend
+            Timer summary = meterRegistry.get("search.stage").tags("stage", stage, "backend", "embedded").timer();
+            assertEquals(2, summary.getId().getTags().size(), stage);
+            assertTrue(summary.count() >= timer.count(), stage);
+        }
+        assertTrue(meterRegistry.get("search.requests.empty").counter().count() > 0);
+    }
+
+    @Test
+    void testSuggestCompletesPrefixes() throws Exception {
+        suggestService.awaitUpdates(Duration.ofSeconds(5));
+
+        // Titles outweigh suggest inputs
+        mockMvc.perform(get("/api/suggest?prefix=prog"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.suggestions[0].text").value("Java Programming"))
+                .andExpect(jsonPath("$.suggestions[1].text").value("programming"));
+
+        mockMvc.perform(get("/api/suggest?prefix=sceince&fuzzy=true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.suggestions[0].text").value("Science Club"));
+
+        mockMvc.perform(get("/api/suggest?prefix=club&category=Art"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.suggestions.length()").value(0));
+    }
+
+    @Test
+    void testCourseWritesAreSearchableWhenAnswered() throws Exception {
+        write(put("/api/courses/20?version=3").contentType(MediaType.APPLICATION_JSON).content(
+                "{\"title\":\"Robotics Workshop\",\"category\":\"Technology\",\"type\":\"COURSE\",\"price\":40.0}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.version").value(3));
+        search("/api/search?q=robotics")
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.courses[0].id").value("20"));
+
+        // Stale version
+        write(put("/api/courses/20?version=2").contentType(MediaType.APPLICATION_JSON).content(
+                "{\"title\":\"Old Robotics\",\"category\":\"Technology\"}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.result").value("CONFLICT"));
+
+        write(post("/api/courses/batch?refresh=immediate").contentType(MediaType.APPLICATION_JSON).content(
+                "[{\"version\":4,\"course\":{\"id\":\"20\",\"title\":\"Robotics Lab\",\"category\":\"Technology\"}},"
+                        + "{\"course\":{\"id\":\"21\",\"title\":\"Robotics Club\",\"category\":\"Technology\"}}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].result").value("UPDATED"))
+                .andExpect(jsonPath("$.results[1].result").value("CREATED"));
+        search("/api/search?q=robotics&category=Technology")
+                .andExpect(jsonPath("$.total").value(2));
+
+        write(delete("/api/courses/20?refresh=immediate"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result").value("DELETED"));
+        write(delete("/api/courses/20"))
+                .andExpect(status().isNotFound());
+        search("/api/search?q=robotics")
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.courses[0].id").value("21"));
+    }
+
+    private ResultActions write(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
@@ -0,0 +1,364 @@
+package com.noel.coursesearch.engine;
+
+import com.noel.coursesearch.backend.SortMode;
+import com.noel.coursesearch.backend.TotalHitsMode;
+import com.noel.coursesearch.document.CourseDocument;
+import com.noel.coursesearch.dto.SearchFacets;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CourseSearcherTest {
+
+    private static final String[] CATEGORIES = {"Math", "Science", "Art", "Music"};
+    private static final long BASE_MILLIS = Instant.parse("2025-06-01T00:00:00Z").toEpochMilli();
+    private static final TimeDecay DECAY = TimeDecay.gauss(BASE_MILLIS, Duration.ofDays(14), Duration.ZERO, 0.5);
+
+    @Test
+    void filterOnlySearchMatchesLinearScan() {
+        Random random = new Random(42);
+        List<CourseDocument> courses = randomCourses(random, 500);
+        CourseIndex index = CourseIndex.build(courses);
+        CourseSearcher searcher = new CourseSearcher(index);
+
+        for (int i = 0; i < 200; i++) {
+            CourseFilter filter = randomFilter(random);
+            for (SortMode sortMode : SortMode.values()) {
+                CourseHits hits = searcher.search(null, filter, sortMode, 0, courses.size());
+                int[] expected = expected(courses, filter, sortMode);
+
+                assertEquals(expected.length, hits.total(), filter + " " + sortMode);
+                assertArrayEquals(expected, hits.docs(), filter + " " + sortMode);
+            }
+        }
+    }
+
+    @Test
+    void filterOnlySearchWithoutExactTotalStopsAtItsLimit() {
+        Random random = new Random(3);
+        List<CourseDocument> courses = randomCourses(random, 500);
+        CourseSearcher searcher = new CourseSearcher(CourseIndex.build(courses));
+
+        for (int i = 0; i < 200; i++) {
+            CourseFilter filter = randomFilter(random);
+            TotalHitsMode totalHits = random.nextBoolean() ? TotalHitsMode.NONE : new TotalHitsMode(1 + random.nextInt(50));
+            int from = random.nextInt(30);
+            for (SortMode sortMode : new SortMode[]{SortMode.UPCOMING, SortMode.PRICE_ASC, SortMode.PRICE_DESC}) {
+                int[] expected = expected(courses, filter, sortMode);
+                CourseHits hits = searcher.search(null, filter, sortMode, from, 10, totalHits);
+
+                String message = filter + " " + sortMode + " " + totalHits;
+                assertArrayEquals(Arrays.copyOfRange(expected, Math.min(from, expected.length),
+                        Math.min(from + 10, expected.length)), hits.docs(), message);
+                if (expected.length <= Math.max(from + 10, totalHits.limit())) {
+                    assertEquals(expected.length, hits.total(), message);
+                } else {
+                    assertTrue(hits.total() > totalHits.limit() && hits.total() <= expected.length, message);
+                }
+            }
+        }
+
+        // Every course matches, but counting stops right past the limit
+        CourseFilter none = new CourseFilter(null, null, null, null, null, null, null);
+        assertEquals(6, searcher.search(null, none, SortMode.UPCOMING, 0, 3, new TotalHitsMode(5)).total());
+    }
+
+    @Test
+    void filterOnlyPagesAreConsecutiveSlices() {
+        Random random = new Random(7);
+        List<CourseDocument> courses = randomCourses(random, 300);
+        CourseSearcher searcher = new CourseSearcher(CourseIndex.build(courses));
+        CourseFilter filter = new CourseFilter(null, null, "Math", null, null, null, null);
+
+        int[] all = searcher.search(null, filter, SortMode.PRICE_DESC, 0, courses.size()).docs();
+        int[] page = searcher.search(null, filter, SortMode.PRICE_DESC, 10, 10).docs();
+
+        assertArrayEquals(Arrays.copyOfRange(all, 10, 20), page);
+    }
+
+    @Test
+    void searchAfterWalkMatchesOffsetPaging() {
+        Random random = new Random(11);
+        List<CourseDocument> courses = randomCourses(random, 400);
+        CourseSearcher searcher = new CourseSearcher(CourseIndex.build(courses), DECAY);
+
+        for (int i = 0; i < 50; i++) {
+            CourseFilter filter = randomFilter(random);
+            for (String text : new String[]{null, "course", "course 7 description 12"}) {
+                for (SortMode sortMode : SortMode.values()) {
+                    CourseHits all = searcher.search(text, filter, sortMode, 0, courses.size());
+
+                    List<Integer> walked = new ArrayList<>();
+                    long after = CourseSearcher.FIRST_PAGE;
+                    CourseHits page;
+                    do {
+                        page = searcher.searchAfter(text, filter, sortMode, after, 7);
+                        assertEquals(all.total(), page.total(), filter + " " + sortMode);
+                        Arrays.stream(page.docs()).forEach(walked::add);
+                        after = page.lastSortKey();
+                    } while (page.docs().length == 7);
+
+                    assertArrayEquals(all.docs(), walked.stream().mapToInt(Integer::intValue).toArray(),
+                            text + " " + filter + " " + sortMode);
+                }
+            }
+        }
+    }
+
+    @Test
+    void relevanceUpcomingDecaysScoresBySessionDate() {
+        List<CourseDocument> courses = List.of(
+                course("0", "Algebra", "Algebra and more algebra", 40),
+                course("1", "Algebra", "Algebra and more algebra", 2),
+                course("2", "Painting", "Some algebra for artists", 1),
+                course("3", "Algebra", "Algebra and more algebra", 10),
+                course("4", "Algebra", "Algebra and more algebra", -3));
+        CourseSearcher searcher = new CourseSearcher(CourseIndex.build(courses), DECAY);
+        CourseFilter upcoming = new CourseFilter(null, null, null, null, null, null, null).notBefore(BASE_MILLIS);
+
+        CourseHits hits = searcher.search("algebra", upcoming, SortMode.RELEVANCE_UPCOMING, 0, 10);
+
+        // Equal matches rank by how soon they start; a weak match starting sooner
+        // still loses to a strong one two weeks out, and past sessions are gone
+        assertArrayEquals(new int[]{1, 3, 2, 0}, hits.docs());
+        assertEquals(4, hits.total());
+        assertArrayEquals(new int[]{3, 2}, searcher.search("algebra", upcoming, SortMode.RELEVANCE_UPCOMING, 1, 2).docs());
+    }
+
+    @Test
+    void scoredPagesAreConsecutiveSlices() {
+        Random random = new Random(5);
+        List<CourseDocument> courses = randomCourses(random, 300);
+        CourseSearcher searcher = new CourseSearcher(CourseIndex.build(courses), DECAY);
+        CourseFilter filter = new CourseFilter(null, null, null, null, null, null, BASE_MILLIS);
+
+        for (SortMode sortMode : new SortMode[]{SortMode.RELEVANCE, SortMode.RELEVANCE_UPCOMING}) {
+            int[] all = searcher.search("course 3 description 12", filter, sortMode, 0, courses.size()).docs();
+            for (int from = 0; from < all.length; from += 9) {
+                int[] page = searcher.search("course 3 description 12", filter, sortMode, from, 9).docs();
+                assertArrayEquals(Arrays.copyOfRange(all, from, Math.min(all.length, from + 9)), page, sortMode + " " + from);
+            }
+        }
+    }
+
+    @Test
+    void expansionMatchesTyposSynonymsAndTitlePrefixes() {
+        List<CourseDocument> courses = List.of(
+                course("0", "Python Programming", "Write your first programs", 1),
+                course("1", "Mathematics Puzzle Club", "Puzzles and games", 1),
+                course("2", "Mat Weaving", "Rugs and baskets", 1),
+                course("3", "Math Basics", "Numbers for beginners", 1),
+                course("4", "Photography", "Cameras and light", 1));
+        CourseIndex index = CourseIndex.build(courses);
+        CourseFilter all = new CourseFilter(null, null, null, null, null, null, null);
+        CourseSearcher exact = new CourseSearcher(index);
+        CourseSearcher expanded = new CourseSearcher(index, null,
+                QueryExpansion.of(List.of("math, maths, mathematics"), "AUTO", 1, 50, true));
+
+        assertEquals(0, exact.search("pyhton", all, SortMode.RELEVANCE, 0, 10).total());
+        assertArrayEquals(new int[]{0}, expanded.search("pyhton", all, SortMode.RELEVANCE, 0, 10).docs());
+
+        // The synonym scores like the typed term; "mat" is one edit from "math"
+        // and weighs less than an exact match, "path" differs in its first letter
+        assertArrayEquals(new int[]{3, 1, 2}, expanded.search("math", all, SortMode.RELEVANCE, 0, 10).docs());
+        // Synonyms are fuzzy too
+        assertArrayEquals(new int[]{3, 1, 2}, expanded.search("maths", all, SortMode.RELEVANCE, 0, 10).docs());
+
+        // "photo" is a prefix of a title word only; the prefix must match exactly
+        assertArrayEquals(new int[]{4}, expanded.search("photo", all, SortMode.RELEVANCE, 0, 10).docs());
+        assertEquals(0, expanded.search("qath", all, SortMode.RELEVANCE, 0, 10).total());
+        assertEquals(0, exact.search("photo", all, SortMode.RELEVANCE, 0, 10).total());
+    }
+
+    @Test
+    void facetsExcludeTheirOwnFilter() {
+        Random random = new Random(3);
+        List<CourseDocument> courses = randomCourses(random, 300);
+        CourseSearcher searcher = new CourseSearcher(CourseIndex.build(courses));
+        FacetSpec spec = FacetSpec.of(20, 50, List.of("5-7", "8-10", "11-14"));
+
+        for (int i = 0; i < 50; i++) {
+            CourseFilter filter = randomFilter(random);
+            for (String text : new String[]{null, "course", "7 12 description"}) {
+                SearchFacets facets = searcher.facets(text, filter, spec);
+
+                Map<String, Long> categories = new TreeMap<>();
+                Map<String, Long> types = new TreeMap<>();
+                long[] ages = new long[3];
+                long pricedDocs = 0;
+                for (CourseDocument course : courses) {
+                    if (!matchesText(course, text)) {
+                        continue;
+                    }
+                    if (course.getCategory() != null && matches(course, filter.withoutCategory())) {
+                        categories.merge(course.getCategory(), 1L, Long::sum);
+                    }
+                    if (matches(course, filter.withoutType())) {
+                        types.merge(course.getType().name(), 1L, Long::sum);
+                    }
+                    if (course.getPrice() != null && matches(course, filter.withoutPrice())) {
+                        pricedDocs++;
+                    }
+                    if (course.getMinAge() != null && course.getMaxAge() != null && matches(course, filter.withoutAge())) {
+                        for (int band = 0; band < ages.length; band++) {
+                            if (course.getMaxAge() >= spec.ageBands().get(band).from()
+                                    && course.getMinAge() <= spec.ageBands().get(band).to()) {
+                                ages[band]++;
+                            }
+                        }
+                    }
+                }
+
+                assertEquals(categories, new TreeMap<>(facets.getCategory()), text + " " + filter);
+                assertEquals(types, new TreeMap<>(facets.getType()), text + " " + filter);
+                assertEquals(pricedDocs, facets.getPrice().stream().mapToLong(SearchFacets.Bucket::getCount).sum());
+                assertArrayEquals(ages, facets.getAge().stream().mapToLong(SearchFacets.Bucket::getCount).toArray());
+            }
+        }
+    }
+
+    private static boolean matchesText(CourseDocument course, String text) {
+        if (text == null) {
+            return true;
+        }
+        List<String> tokens = new ArrayList<>(TextAnalyzer.tokenize(course.getTitle()));
+        tokens.addAll(TextAnalyzer.tokenize(course.getDescription()));
+        return TextAnalyzer.tokenize(text).stream().anyMatch(tokens::contains);
+    }
+
+    private static int[] expected(List<CourseDocument> courses, CourseFilter filter, SortMode sortMode) {
+        List<Integer> docs = new ArrayList<>();
+        for (int doc = 0; doc < courses.size(); doc++) {
+            if (matches(courses.get(doc), filter)) {
+                docs.add(doc);
+            }
+        }
+        // Missing values sort last in both directions, ties by doc id
+        switch (sortMode) {
+            case PRICE_ASC -> docs.sort((a, b) -> compareNullsLast(courses.get(a).getPrice(), courses.get(b).getPrice(), false));
+            case PRICE_DESC -> docs.sort((a, b) -> compareNullsLast(courses.get(a).getPrice(), courses.get(b).getPrice(), true));
+            case UPCOMING, RELEVANCE_UPCOMING -> docs.sort((a, b) -> compareNullsLast(courses.get(a).getNextSessionDate(), courses.get(b).getNextSessionDate(), false));
+            case RELEVANCE -> {
+            }
+        }
+        return docs.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static <T extends Comparable<T>> int compareNullsLast(T a, T b, boolean descending) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : 1) : -1;
+        }
+        return descending ? b.compareTo(a) : a.compareTo(b);
+    }
+
+    private static boolean matches(CourseDocument course, CourseFilter filter) {
+        if (filter.minAge() != null && (course.getMaxAge() == null || course.getMaxAge() < filter.minAge())) {
+            return false;
+        }
+        if (filter.maxAge() != null && (course.getMinAge() == null || course.getMinAge() > filter.maxAge())) {
+            return false;
+        }
+        if (filter.category() != null && !filter.category().equals(course.getCategory())) {
+            return false;
+        }
+        if (filter.type() != null && (course.getType() == null || !filter.type().equals(course.getType().name()))) {
+            return false;
+        }
+        if (filter.minPrice() != null && (course.getPrice() == null || course.getPrice() < filter.minPrice())) {
+            return false;
+        }
+        if (filter.maxPrice() != null && (course.getPrice() == null || course.getPrice() > filter.maxPrice())) {
+            return false;
+        }
+        return filter.startDateMillis() == null || (course.getNextSessionDate() != null
+                && course.getNextSessionDate().toInstant().toEpochMilli() >= filter.startDateMillis());
+    }
+
+    @Test
+    void snapshotSearchesLikeTheIndexItWasWrittenFrom(@TempDir Path dir) throws IOException {
+        Random random = new Random(11);
+        List<CourseDocument> courses = randomCourses(random, 300);
+        CourseIndex built = CourseIndex.build(courses);
+        IndexSnapshot.write(built, IndexSnapshot.UNKNOWN_SOURCE, dir.resolve("courses.idx"));
+        CourseIndex opened = IndexSnapshot.open(dir.resolve("courses.idx"));
+        QueryExpansion expansion = QueryExpansion.of(List.of(), "AUTO", 1, 50, true);
+        CourseSearcher expected = new CourseSearcher(built, DECAY, expansion);
+        CourseSearcher actual = new CourseSearcher(opened, DECAY, expansion);
+        FacetSpec spec = FacetSpec.of(20, 50, List.of("5-7", "8-10", "11-14"));
+
+        assertEquals(courses, IntStream.range(0, opened.size()).mapToObj(opened::document).toList());
+        for (int i = 0; i < 50; i++) {
+            CourseFilter filter = randomFilter(random);
+            // "cuorse" only matches through the fuzzy walk of the term dictionary
+            for (String text : new String[]{null, "course", "cuorse 7", "descr"}) {
+                for (SortMode sortMode : SortMode.values()) {
+                    CourseHits want = expected.search(text, filter, sortMode, 0, courses.size());
+                    CourseHits got = actual.search(text, filter, sortMode, 0, courses.size());
+                    assertEquals(want.total(), got.total(), text + " " + filter + " " + sortMode);
+                    assertArrayEquals(want.docs(), got.docs(), text + " " + filter + " " + sortMode);
+                }
+                assertEquals(expected.facets(text, filter, spec), actual.facets(text, filter, spec));
+            }
+        }
+    }
+
+    private static List<CourseDocument> randomCourses(Random random, int count) {
+        List<CourseDocument> courses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int minAge = 5 + random.nextInt(10);
+            courses.add(new CourseDocument(
+                    String.valueOf(i),
+                    "Course " + i,
+                    List.of(),
+                    "Description " + i,
+                    random.nextInt(10) == 0 ? null : CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    CourseDocument.CourseType.values()[random.nextInt(3)],
+                    null,
+                    random.nextInt(20) == 0 ? null : minAge,
+                    random.nextInt(20) == 0 ? null : minAge + random.nextInt(6),
+                    random.nextInt(10) == 0 ? null : (double) random.nextInt(40) * 5,
+                    random.nextInt(10) == 0 ? null : OffsetDateTime.ofInstant(
+                            Instant.ofEpochMilli(BASE_MILLIS + random.nextInt(60) * 86_400_000L), ZoneOffset.UTC)));
+        }
+        return courses;
+    }
+
+    private static CourseDocument course(String id, String title, String description, int daysFromBase) {
+        CourseDocument course = new CourseDocument();
+        course.setId(id);
+        course.setTitle(title);
+        course.setDescription(description);
+        course.setType(CourseDocument.CourseType.COURSE);
+        course.setNextSessionDate(OffsetDateTime.ofInstant(
+                Instant.ofEpochMilli(BASE_MILLIS + daysFromBase * 86_400_000L), ZoneOffset.UTC));
+        return course;
+    }
+
+    private static CourseFilter randomFilter(Random random) {
+        return new CourseFilter(
+                random.nextBoolean() ? 5 + random.nextInt(15) : null,
+                random.nextBoolean() ? 5 + random.nextInt(15) : null,
+                random.nextInt(3) == 0 ? (random.nextInt(5) == 0 ? "Unknown" : CATEGORIES[random.nextInt(CATEGORIES.length)]) : null,
+                random.nextInt(3) == 0 ? CourseDocument.CourseType.values()[random.nextInt(3)].name() : null,
+                random.nextBoolean() ? (double) random.nextInt(40) * 5 : null,
+                random.nextBoolean() ? (double) random.nextInt(40) * 5 : null,
+                random.nextBoolean() ? BASE_MILLIS + random.nextInt(60) * 86_400_000L : null);
+    }
+}
@@ -0,0 +1,132 @@
+package com.noel.coursesearch.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LevenshteinAutomatonTest {
+
+    @Test
+    void acceptsExactlyTheStringsWithinMaxEdits() {
+        Random random = new Random(17);
+        for (int i = 0; i < 300; i++) {
+            String term = randomWord(random, 0, 8);
+            int maxEdits = random.nextInt(3);
+            LevenshteinAutomaton automaton = LevenshteinAutomaton.of(term, maxEdits);
+            for (int j = 0; j < 50; j++) {
+                String candidate = random.nextBoolean() ? mutate(random, term) : randomWord(random, 0, 10);
+                int distance = distance(term, candidate);
+                assertEquals(distance <= maxEdits ? distance : -1, run(automaton, candidate), term + " " + candidate);
+            }
+        }
+    }
+
+    @Test
+    void dictionaryWalkFindsEveryMatchingTerm() {
+        Random random = new Random(23);
+        String[] titles = new String[400];
+        Set<String> dictionary = new HashSet<>();
+        for (int doc = 0; doc < titles.length; doc++) {
+            titles[doc] = randomWord(random, 1, 7);
+            dictionary.add(titles[doc]);
+        }
+        TextField field = TextField.build(titles, 1.0f);
+
+        for (int i = 0; i < 200; i++) {
+            String term = randomWord(random, 1, 7);
+            int prefixLength = random.nextInt(3);
+            FuzzyTerm fuzzy = new FuzzyTerm(term, prefixLength, 2);
+
+            Set<String> expected = new HashSet<>();
+            for (String word : dictionary) {
+                if (word.startsWith(fuzzy.prefix())
+                        && distance(term.substring(fuzzy.prefix().length()), word.substring(fuzzy.prefix().length())) <= 2) {
+                    expected.add(word);
+                }
+            }
+            Set<String> found = new HashSet<>();
+            field.expand(List.of(fuzzy), Integer.MAX_VALUE).forEach(match -> found.add(field.term(match.term())));
+            assertEquals(expected, found, term + " prefix " + prefixLength);
+        }
+    }
+
+    private static int run(LevenshteinAutomaton automaton, String candidate) {
+        int state = automaton.start();
+        for (int i = 0; i < candidate.length(); i++) {
+            state = automaton.step(state, candidate.charAt(i));
+            if (state == LevenshteinAutomaton.DEAD) {
+                return -1;
+            }
+        }
+        return automaton.distance(state);
+    }
+
+    /**
+     * Optimal string alignment distance: Levenshtein plus swaps of adjacent characters.
+     */
+    private static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                    continue;
+                }
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static String mutate(Random random, String term) {
+        List<Character> chars = new ArrayList<>();
+        term.chars().forEach(c -> chars.add((char) c));
+        for (int edits = random.nextInt(4); edits > 0; edits--) {
+            int at = chars.isEmpty() ? 0 : random.nextInt(chars.size());
+            switch (random.nextInt(4)) {
+                case 0 -> chars.add(at, letter(random));
+                case 1 -> {
+                    if (!chars.isEmpty()) {
+                        chars.remove(at);
+                    }
+                }
+                case 2 -> {
+                    if (!chars.isEmpty()) {
+                        chars.set(at, letter(random));
+                    }
+                }
+                default -> {
+                    if (at + 1 < chars.size()) {
+                        chars.add(at, chars.remove(at + 1));
+                    }
+                }
+            }
+        }
+        StringBuilder builder = new StringBuilder();
+        chars.forEach(builder::append);
+        return builder.toString();
+    }
+
+    private static String randomWord(Random random, int minLength, int maxLength) {
+        StringBuilder builder = new StringBuilder();
+        for (int length = minLength + random.nextInt(maxLength - minLength + 1); length > 0; length--) {
+            builder.append(letter(random));
+        }
+        return builder.toString();
+    }
+
+    // A small alphabet, so near misses are common
+    private static char letter(Random random) {
+        return (char) ('a' + random.nextInt(5));
+    }
+}
@@ -0,0 +1,71 @@
+package com.noel.coursesearch.engine;
+
+import com.noel.coursesearch.document.CourseDocument;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestTrieTest {
+
+    private final SuggestTrie trie = SuggestTrie.build(List.of(
+            course("1", "Introduction to Algebra", "Math", "algebra", "math"),
+            course("2", "Advanced Algebra", "Math", "algebra"),
+            course("3", "Algae and Pond Life", "Science", "biology"),
+            course("4", "Algebra Club", "Math", "algebra")));
+
+    @Test
+    void completesTitlesFromAnyWordAndRanksByWeight() {
+        List<SuggestTrie.Suggestion> suggestions = trie.complete("alg", null, 10);
+
+        // "algebra" is a suggest input of three courses, each title weighs two
+        assertEquals(3 * SuggestTrie.SUGGEST_WEIGHT, suggestions.get(0).weight());
+        assertEquals(List.of("algebra", "Advanced Algebra", "Algae and Pond Life", "Algebra Club", "Introduction to Algebra"),
+                texts(suggestions));
+        assertEquals(List.of("algebra"), texts(trie.complete("alg", null, 1)));
+    }
+
+    @Test
+    void filtersByCategory() {
+        assertEquals(List.of("Algae and Pond Life"), texts(trie.complete("alg", "Science", 10)));
+        assertTrue(trie.complete("bio", "Math", 10).isEmpty());
+    }
+
+    @Test
+    void fuzzyToleratesTyposAndTranspositions() {
+        assertTrue(trie.complete("algabra", null, 10).isEmpty());
+        assertEquals("algebra", trie.completeFuzzy("algabra", null, 10).get(0).text());
+        assertEquals("algebra", trie.completeFuzzy("agle", null, 10).get(0).text());
+        // Too short for any edits
+        assertTrue(trie.completeFuzzy("ak", null, 10).isEmpty());
+    }
+
+    @Test
+    void upsertAndRemoveUpdateInPlace() {
+        trie.upsert(course("2", "Geometry Basics", "Math", "geometry"));
+        assertEquals(List.of("Algae and Pond Life", "algebra", "Algebra Club", "Introduction to Algebra"),
+                texts(trie.complete("alg", null, 10)));
+
+        trie.remove("1");
+        trie.remove("3");
+        trie.remove("4");
+        assertTrue(trie.complete("alg", null, 10).isEmpty());
+        assertEquals(List.of("Geometry Basics", "geometry"), texts(trie.complete("geo", null, 10)));
+        assertEquals(1, trie.courseCount());
+    }
+
+    private static List<String> texts(List<SuggestTrie.Suggestion> suggestions) {
+        return suggestions.stream().map(SuggestTrie.Suggestion::text).toList();
+    }
+
+    private static CourseDocument course(String id, String title, String category, String... suggest) {
+        CourseDocument course = new CourseDocument();
+        course.setId(id);
+        course.setTitle(title);
+        course.setCategory(category);
+        course.setSuggest(List.of(suggest));
+        return course;
+    }
+}
@@ -0,0 +1,163 @@
+package com.noel.coursesearch.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.noel.coursesearch.backend.BulkResult;
+import com.noel.coursesearch.backend.BulkSink;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.document.CourseDocument;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CourseIngestionPipelineTest {
+
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final CourseIngestionPipeline pipeline =
+            new CourseIngestionPipeline(null, objectMapper, new DefaultResourceLoader(), properties);
+
+    @Test
+    void streamsSampleCatalogInBoundedBatches() throws Exception {
+        properties.getIngest().setBatchSize(7);
+        RecordingSink sink = new RecordingSink(Set.of(), Set.of());
+
+        IngestionReport report;
+        try (InputStream in = new DefaultResourceLoader().getResource("classpath:sample-courses.json").getInputStream()) {
+            report = pipeline.ingest(in, sink);
+        }
+
+        long expected = objectMapper.readValue(
+                new DefaultResourceLoader().getResource("classpath:sample-courses.json").getInputStream(),
+                CourseDocument[].class).length;
+        assertEquals(expected, report.indexed());
+        assertEquals(0, report.failed());
+        assertEquals(expected, sink.written.size());
+        assertTrue(sink.batchSizes.stream().allMatch(size -> size <= 7));
+        assertTrue(sink.completed.get());
+    }
+
+    @Test
+    void retriesOnlyRejectedDocuments() throws Exception {
+        properties.getIngest().setBatchSize(2);
+        properties.getIngest().setRetryBackoff(Duration.ofMillis(1));
+        // "b" is rejected once for capacity, "c" is rejected as invalid
+        RecordingSink sink = new RecordingSink(Set.of("b"), Set.of("c"));
+
+        // The invalid document keeps the load from completing
+        IOException e = assertThrows(IOException.class, () -> pipeline.ingest(json("a", "b", "c", "d"), sink));
+
+        assertTrue(e.getMessage().startsWith("1 courses could not be indexed (3 were)"), e.getMessage());
+        assertEquals(Set.of("a", "b", "d"), Set.copyOf(sink.written));
+        assertTrue(sink.aborted.get());
+        assertFalse(sink.completed.get());
+    }
+
+    @Test
+    void abortsOnlyOnceInFlightBatchesAreWritten() {
+        properties.getIngest().setBatchSize(1);
+        properties.getIngest().setConcurrency(2);
+        RecordingSink sink = new RecordingSink(Set.of(), Set.of());
+        sink.writeDelayMillis = 200;
+        InputStream in = new ByteArrayInputStream("[{\"id\":\"a\"}, {\"id\":\"b\"}, oops]".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> pipeline.ingest(in, sink));
+
+        assertTrue(sink.aborted.get());
+        assertFalse(sink.writtenAfterAbort.get());
+        assertEquals(Set.of("a", "b"), Set.copyOf(sink.written));
+    }
+
+    @Test
+    void failsOnArrayElementsThatAreNotCourses() {
+        RecordingSink sink = new RecordingSink(Set.of(), Set.of());
+        InputStream in = new ByteArrayInputStream("[{\"id\":\"a\"},\n 42,\n {\"id\":\"b\"}]".getBytes(StandardCharsets.UTF_8));
+
+        IOException e = assertThrows(IOException.class, () -> pipeline.ingest(in, sink));
+
+        assertTrue(e.getMessage().contains("array position 1 (line 2"), e.getMessage());
+        assertTrue(sink.aborted.get());
+        assertFalse(sink.completed.get());
+    }
+
+    private static InputStream json(String... ids) {
+        List<String> objects = new ArrayList<>();
+        for (String id : ids) {
+            objects.add("{\"id\":\"" + id + "\",\"title\":\"Course " + id + "\"}");
+        }
+        return new ByteArrayInputStream(("[" + String.join(",", objects) + "]").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class RecordingSink implements BulkSink {
+        private final Set<String> rejectOnce;
+        private final Set<String> invalid;
+        private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+        private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final AtomicBoolean aborted = new AtomicBoolean();
+        private final AtomicBoolean writtenAfterAbort = new AtomicBoolean();
+        private volatile long writeDelayMillis;
+
+        private RecordingSink(Set<String> rejectOnce, Set<String> invalid) {
+            this.rejectOnce = rejectOnce;
+            this.invalid = invalid;
+        }
+
+        @Override
+        public BulkResult write(List<CourseDocument> batch) {
+            // Like a bulk request already on the wire, the write takes its time even when interrupted
+            long until = System.nanoTime() + writeDelayMillis * 1_000_000;
+            while (System.nanoTime() < until) {
+                try {
+                    Thread.sleep(Math.max(1, (until - System.nanoTime()) / 1_000_000));
+                } catch (InterruptedException e) {
+                    // keep waiting
+                }
+            }
+            writtenAfterAbort.compareAndSet(false, aborted.get());
+            batchSizes.add(batch.size());
+            List<BulkResult.Failure> failures = new ArrayList<>();
+            for (CourseDocument course : batch) {
+                if (invalid.contains(course.getId())) {
+                    failures.add(new BulkResult.Failure(course, 400, "mapper_parsing_exception"));
+                } else if (rejectOnce.contains(course.getId()) && rejected.add(course.getId())) {
+                    failures.add(new BulkResult.Failure(course, 429, "es_rejected_execution_exception"));
+                } else {
+                    written.add(course.getId());
+                }
+            }
+            return new BulkResult(batch.size() - failures.size(), failures);
+        }
+
+        @Override
+        public void complete() {
+            completed.set(true);
+        }
+
+        @Override
+        public void abort() {
+            aborted.set(true);
+        }
+    }
+}
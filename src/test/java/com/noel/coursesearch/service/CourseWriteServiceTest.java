@@ -0,0 +1,124 @@
+package com.noel.coursesearch.service;
+
+import com.noel.coursesearch.backend.CourseSearchBackend;
+import com.noel.coursesearch.backend.CourseWrite;
+import com.noel.coursesearch.backend.RefreshMode;
+import com.noel.coursesearch.backend.WriteResult;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.document.CourseDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CourseWriteServiceTest {
+
+    private final CourseSearchBackend backend = mock(CourseSearchBackend.class);
+    private final List<List<CourseWrite>> flushed = new CopyOnWriteArrayList<>();
+    private final List<RefreshMode> refreshes = new CopyOnWriteArrayList<>();
+    private CourseWriteService service;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        service.shutdown();
+    }
+
+    @Test
+    void coalescesWritesToTheSameCourse() {
+        service = service(Duration.ofHours(1));
+
+        CompletableFuture<WriteResult> first = service.upsert("1", course("1", "First"), 1L, "wait_for");
+        CompletableFuture<WriteResult> stale = service.upsert("1", course("1", "Stale"), 1L, "wait_for");
+        CompletableFuture<WriteResult> second = service.upsert("1", course("1", "Second"), 2L, "wait_for");
+        CompletableFuture<WriteResult> other = service.delete("2", null, "async");
+
+        assertEquals(WriteResult.Result.CONFLICT, stale.join().result());
+        assertEquals(WriteResult.Result.ACCEPTED, other.join().result());
+        service.flush();
+
+        assertEquals(1, flushed.size());
+        List<CourseWrite> writes = flushed.get(0);
+        assertEquals(List.of("1", "2"), writes.stream().map(CourseWrite::id).toList());
+        assertEquals("Second", writes.get(0).course().getTitle());
+        // The strictest mode in the batch wins
+        assertEquals(RefreshMode.WAIT_FOR, refreshes.get(0));
+        // The replaced write reports the outcome of the one that replaced it
+        assertEquals(2L, first.join().version());
+        assertEquals(2L, second.join().version());
+    }
+
+    @Test
+    void aReplacingWriteKeepsTheStricterRefreshMode() {
+        service = service(Duration.ofHours(1));
+
+        CompletableFuture<WriteResult> waiting = service.upsert("1", course("1", "First"), null, "wait_for");
+        service.upsert("1", course("1", "Second"), null, "async");
+        service.flush();
+
+        // The wait_for caller is answered by a flush that refreshed for it
+        assertEquals(List.of(RefreshMode.WAIT_FOR), refreshes);
+        assertEquals(WriteResult.Result.UPDATED, waiting.join().result());
+    }
+
+    @Test
+    void immediateWritesFlushWithoutWaitingForTheInterval() {
+        service = service(Duration.ofHours(1));
+
+        WriteResult result = service.upsert("1", course("1", "Now"), null, "immediate").join();
+
+        assertEquals(WriteResult.Result.UPDATED, result.result());
+        assertEquals(List.of(RefreshMode.IMMEDIATE), refreshes);
+    }
+
+    @Test
+    void immediateFlushesAreSpacedOut() {
+        service = service(Duration.ofHours(1), Duration.ofMillis(300));
+
+        service.upsert("1", course("1", "First"), null, "immediate").join();
+        long start = System.nanoTime();
+        CompletableFuture<WriteResult> second = service.upsert("2", course("2", "Second"), null, "immediate");
+        CompletableFuture<WriteResult> third = service.upsert("3", course("3", "Third"), null, "immediate");
+        second.join();
+        third.join();
+
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(200).toNanos());
+        // Both waited for the same spaced flush
+        assertEquals(2, flushed.size());
+        assertEquals(List.of("2", "3"), flushed.get(1).stream().map(CourseWrite::id).toList());
+    }
+
+    private CourseWriteService service(Duration flushInterval) {
+        return service(flushInterval, Duration.ZERO);
+    }
+
+    private CourseWriteService service(Duration flushInterval, Duration immediateFlushSpacing) {
+        when(backend.write(any(), any())).thenAnswer(invocation -> {
+            List<CourseWrite> writes = invocation.getArgument(0);
+            flushed.add(writes);
+            refreshes.add(invocation.getArgument(1));
+            return writes.stream()
+                    .map(write -> WriteResult.of(write.id(), WriteResult.Result.UPDATED, write.version()))
+                    .toList();
+        });
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getWrite().setFlushInterval(flushInterval);
+        properties.getWrite().setImmediateFlushSpacing(immediateFlushSpacing);
+        return new CourseWriteService(backend, properties);
+    }
+
+    private static CourseDocument course(String id, String title) {
+        CourseDocument course = new CourseDocument();
+        course.setId(id);
+        course.setTitle(title);
+        return course;
+    }
+}
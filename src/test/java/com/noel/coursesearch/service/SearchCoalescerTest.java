@@ -0,0 +1,143 @@
+package com.noel.coursesearch.service;
+
+import com.noel.coursesearch.backend.IndexGeneration;
+import com.noel.coursesearch.config.CourseSearchProperties;
+import com.noel.coursesearch.dto.SearchRequest;
+import com.noel.coursesearch.dto.SearchResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SearchCoalescerTest {
+
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+    private final IndexGeneration indexGeneration = new IndexGeneration(event -> {
+    });
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger backendCalls = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void identicalSearchesInFlightShareOneBackendCall() throws Exception {
+        SearchCoalescer coalescer = new SearchCoalescer(indexGeneration, properties, meterRegistry);
+
+        CompletableFuture<SearchResponse> leader = searchAsync(coalescer, request("Math"), this::blockUntilReleased);
+        started.await();
+        // Same search once normalized, and one that differs
+        CompletableFuture<SearchResponse> follower = searchAsync(coalescer, request(" math "), this::blockUntilReleased);
+        CompletableFuture<SearchResponse> other = searchAsync(coalescer, request("Art"), request -> {
+            backendCalls.incrementAndGet();
+            return SearchResponse.of(0, List.of(), 0, 10);
+        });
+        other.join();
+        awaitFollowers(1);
+        release.countDown();
+
+        assertEquals(7, leader.join().getTotal());
+        assertEquals(7, follower.join().getTotal());
+        assertNotSame(leader.join(), follower.join());
+        assertEquals(2, backendCalls.get());
+        assertEquals(2, meterRegistry.get("search.coalesce.requests").tag("role", "leader").counter().count());
+        assertEquals(1, meterRegistry.get("search.coalesce.requests").tag("role", "follower").counter().count());
+    }
+
+    @Test
+    void followersGetTheLeadersErrorAndNothingIsKept() throws Exception {
+        SearchCoalescer coalescer = new SearchCoalescer(indexGeneration, properties, meterRegistry);
+
+        CompletableFuture<SearchResponse> leader = searchAsync(coalescer, request("Math"), request -> {
+            blockUntilReleased(request);
+            throw new IllegalStateException("backend down");
+        });
+        started.await();
+        CompletableFuture<SearchResponse> follower = searchAsync(coalescer, request("Math"), this::blockUntilReleased);
+        awaitFollowers(1);
+        release.countDown();
+
+        assertEquals("backend down", assertInstanceOf(IllegalStateException.class, failure(leader)).getMessage());
+        assertEquals("backend down", assertInstanceOf(IllegalStateException.class, failure(follower)).getMessage());
+        // The failed flight is gone, so the next search tries again
+        assertEquals(7, coalescer.search(request("Math"), this::blockUntilReleased).getTotal());
+    }
+
+    @Test
+    void followersWaitOnlyUpToMaxWait() throws Exception {
+        properties.getCoalesce().setMaxWait(Duration.ofMillis(50));
+        SearchCoalescer coalescer = new SearchCoalescer(indexGeneration, properties, meterRegistry);
+
+        searchAsync(coalescer, request("Math"), this::blockUntilReleased);
+        started.await();
+
+        assertThrows(SearchUnavailableException.class, () -> coalescer.search(request("Math"), this::blockUntilReleased));
+        assertEquals(1, meterRegistry.get("search.coalesce.timeouts").counter().count());
+    }
+
+    @Test
+    void searchesAfterAWriteDoNotJoinEarlierOnes() throws Exception {
+        SearchCoalescer coalescer = new SearchCoalescer(indexGeneration, properties, meterRegistry);
+
+        CompletableFuture<SearchResponse> before = searchAsync(coalescer, request("Math"), this::blockUntilReleased);
+        started.await();
+        indexGeneration.increment();
+
+        assertEquals(0, coalescer.search(request("Math"), request -> SearchResponse.of(0, List.of(), 0, 10)).getTotal());
+        release.countDown();
+        assertEquals(7, before.join().getTotal());
+    }
+
+    private CompletableFuture<SearchResponse> searchAsync(SearchCoalescer coalescer, SearchRequest request,
+                                                          Function<SearchRequest, SearchResponse> search) {
+        return CompletableFuture.supplyAsync(() -> coalescer.search(request, search), callers);
+    }
+
+    private SearchResponse blockUntilReleased(SearchRequest request) {
+        backendCalls.incrementAndGet();
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return SearchResponse.of(7, List.of(), 0, 10);
+    }
+
+    private void awaitFollowers(int count) throws InterruptedException {
+        while (meterRegistry.get("search.coalesce.requests").tag("role", "follower").counter().count() < count) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static SearchRequest request(String text) {
+        SearchRequest request = new SearchRequest();
+        request.setQ(text);
+        return request;
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) {
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        return e.getCause();
+    }
+}
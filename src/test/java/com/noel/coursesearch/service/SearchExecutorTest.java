@@ -0,0 +1,89 @@
+package com.noel.coursesearch.service;
+
+import com.noel.coursesearch.config.CourseSearchProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SearchExecutorTest {
+
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SearchExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void rejectsSearchesBeyondTheConcurrencyLimit() {
+        properties.getExecution().setMaxConcurrency(1);
+        executor = new SearchExecutor(properties);
+
+        CompletableFuture<String> running = executor.submit(this::blockUntilReleased);
+        CompletableFuture<String> rejected = executor.submit(() -> "second");
+
+        assertInstanceOf(SearchUnavailableException.class, failure(rejected));
+        release.countDown();
+        assertEquals("first", running.join());
+        // The permit is back once the first search returned
+        assertEquals("third", executor.submit(() -> "third").join());
+    }
+
+    @Test
+    void batchesTakeAPermitPerSearch() {
+        properties.getExecution().setMaxConcurrency(3);
+        executor = new SearchExecutor(properties);
+
+        CompletableFuture<String> running = executor.submit(2, this::blockUntilReleased);
+
+        assertInstanceOf(SearchUnavailableException.class, failure(executor.submit(2, () -> "batch")));
+        assertEquals("single", executor.submit(() -> "single").join());
+        release.countDown();
+        assertEquals("first", running.join());
+        // Larger than the whole limit, so it takes every permit
+        assertEquals("large", executor.submit(10, () -> "large").join());
+    }
+
+    @Test
+    void failsSearchesPastTheDeadline() {
+        properties.getExecution().setDeadline(Duration.ofMillis(50));
+        executor = new SearchExecutor(properties);
+
+        assertInstanceOf(SearchUnavailableException.class, failure(executor.submit(this::blockUntilReleased)));
+    }
+
+    @Test
+    void searchesThatFinishInTimeCancelTheirDeadline() {
+        executor = new SearchExecutor(properties);
+
+        for (int i = 0; i < 100; i++) {
+            executor.submit(() -> "done").join();
+        }
+
+        assertEquals(0, executor.pendingDeadlines());
+    }
+
+    private String blockUntilReleased() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "first";
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) {
+        return assertThrows(CompletionException.class, future::join).getCause();
+    }
+}